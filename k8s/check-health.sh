@@ -42,8 +42,8 @@ if [[ -z "${INGRESS_HOST:-}" ]]; then
 fi
 
 # 4. Выполняем проверку через curl и jq
-info "📡 curl: Actuator Health (форматированный JSON) ($APP_URL/actuator/health, Host: $INGRESS_HOST)"
-health_output=$(curl -L --fail -s --connect-timeout 10 -H "Host: $INGRESS_HOST" "$APP_URL/actuator/health")
+info "📡 curl: Readiness (форматированный JSON) ($APP_URL/readyz, Host: $INGRESS_HOST)"
+health_output=$(curl -L --fail -s --connect-timeout 10 -H "Host: $INGRESS_HOST" "$APP_URL/readyz")
 curl_exit_code=$?
 
 # Проверяем результат curl и валидность JSON
@@ -51,7 +51,7 @@ if [[ $curl_exit_code -eq 0 ]] && echo "$health_output" | jq '.' > /dev/null 2>&
     # Успех: выводим отформатированный JSON
     echo "$health_output" | jq '.'
     echo ""
-    echo "✅ Actuator Health доступен через IP ноды (${NODE_IP}). Приложение '$APP_NAME' работает!"
+    echo "✅ Readiness доступен через IP ноды (${NODE_IP}). Приложение '$APP_NAME' работает!"
     # Не выходим с exit 0, чтобы родительский скрипт мог продолжить
 else
     # Ошибка
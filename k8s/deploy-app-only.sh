@@ -187,10 +187,11 @@ echo "🚀 Запуск быстрого деплоя ТОЛЬКО прилож
 echo "=========================================="
 echo ""
 
-# 🧹 1. Cleanup ONLY application resources (Deployment and Service)
+# 🧹 1. Cleanup ONLY application resources (StatefulSet and Service)
 # We don't delete the Ingress object itself, just the backend pods
-info "🧹 Удаление старого Deployment и Service приложения '$APP_NAME'..."
-kdelete_ns deployment $APP_NAME
+info "🧹 Удаление старого StatefulSet и Service приложения '$APP_NAME'..."
+kdelete_ns deployment $APP_NAME # Прежний вариант манифеста
+kdelete_ns statefulset $APP_NAME # PVC журнала outbox не удаляется: неотправленные сообщения досылаются после деплоя
 kdelete_ns svc $APP_NAME # Optional: delete service if it might change, usually safe to keep
 
 # 🐳 2. Build and Load Docker Image
@@ -204,7 +204,8 @@ echo ""
 
 # 🧹 1. Cleanup old resources
 info "🧹 Удаление старых ресурсов приложения..."
-kdelete_ns deployment $APP_NAME
+kdelete_ns deployment $APP_NAME # Прежний вариант манифеста
+kdelete_ns statefulset $APP_NAME # PVC журнала outbox не удаляется: неотправленные сообщения досылаются после деплоя
 kdelete_ns svc $APP_NAME
 kdelete_ns statefulset kafka
 kdelete_ns svc kafka
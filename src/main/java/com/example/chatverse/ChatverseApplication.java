@@ -5,9 +5,11 @@ import io.swagger.v3.oas.annotations.servers.Server;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableCaching
+@EnableScheduling
 @OpenAPIDefinition(servers = {
 		@Server(url = "http://chatverse.local:8888", description = "Development server (via port-forward/NodePort)"),
 		// Можно добавить другие серверы, например, для продакшена
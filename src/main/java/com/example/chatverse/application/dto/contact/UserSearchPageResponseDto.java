@@ -0,0 +1,15 @@
+package com.example.chatverse.application.dto.contact;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UserSearchPageResponseDto {
+    private List<UserSearchResultDto> items;
+    // Курсор для следующей страницы (null, если страниц больше нет)
+    private Float nextAfterRank;
+    private Long nextAfterId;
+}
@@ -0,0 +1,14 @@
+package com.example.chatverse.application.dto.contact;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserSearchResultDto {
+    private Long userId;
+    private String username;
+    private String name;
+    private String miniAvatar; // URL миниатюры аватара или null
+    private Float rank;
+}
@@ -0,0 +1,16 @@
+package com.example.chatverse.application.dto.conversation;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+public class ConversationPageResponseDto {
+    private List<ConversationResponseDto> items;
+    // Курсор для следующей страницы (null, если страниц больше нет)
+    private Instant nextBeforeTimestamp;
+    private Long nextBeforeId;
+}
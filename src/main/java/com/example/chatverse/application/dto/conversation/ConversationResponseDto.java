@@ -0,0 +1,19 @@
+package com.example.chatverse.application.dto.conversation;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class ConversationResponseDto {
+    private Long conversationId;
+    private String roomId;
+    private Long peerId; // Собеседник
+    private String lastMessageId;
+    private Long lastSenderId;
+    private String lastMessageSnippet;
+    private Instant lastMessageAt;
+    private int unreadCount;
+}
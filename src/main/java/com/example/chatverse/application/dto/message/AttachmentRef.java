@@ -0,0 +1,21 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ссылка на вложение сообщения: только метаданные, содержимое скачивается по url.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentRef {
+    private String id; // SHA-256 содержимого (см. /api/v1/attachments)
+    private String name;
+    private String contentType;
+    private Long size;
+    private String url;
+}
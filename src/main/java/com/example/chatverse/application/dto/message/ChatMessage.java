@@ -23,8 +23,21 @@ public class ChatMessage {
     private Long senderId;
     private Long recipientId;
     private String roomId;
+    // Для IMAGE и FILE — подпись (может быть пустой); длинный текст обрезается до превью, полный текст во вложении
     private String content;
 
+    @Builder.Default
+    private MessageType type = MessageType.TEXT;
+
+    // Ссылка на вложение; сами байты через Kafka и chat_messages не проходят
+    private AttachmentRef attachment;
+
     @Builder.Default
     private Instant timestamp = Instant.now();
+
+    /**
+     * Порядковый номер в комнате; назначается при сохранении, у еще не сохраненных сообщений — null.
+     * Клиент запоминает последний увиденный номер и передает его при переподключении.
+     */
+    private Long roomSeq;
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Эфемерное событие, рассылаемое подписчикам /topic/events/{roomId}.
+ * Клиент показывает индикатор ttlMs миллисекунд, если событие не повторится раньше.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EphemeralEventDto {
+    private EphemeralEventType type;
+    private String roomId;
+    private Long userId;
+    private long ttlMs;
+}
@@ -0,0 +1,11 @@
+package com.example.chatverse.application.dto.message;
+
+/**
+ * Типы эфемерных событий комнаты: не сохраняются и не проходят через Kafka.
+ */
+public enum EphemeralEventType {
+    TYPING,
+    RECORDING,
+    // Пользователь перестал печатать или записывать; индикатор гасится сразу, не дожидаясь TTL
+    STOPPED
+}
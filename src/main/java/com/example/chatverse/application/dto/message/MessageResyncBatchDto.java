@@ -0,0 +1,21 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Пачка пропущенных сообщений комнаты, отправляемая в /user/queue/resync после переподключения.
+ */
+@Data
+@Builder
+public class MessageResyncBatchDto {
+    private String roomId;
+    // Сообщения по возрастанию roomSeq
+    private List<ChatMessage> messages;
+    // Последняя пачка догрузки по комнате
+    private boolean complete;
+    // Пропуск больше лимита догрузки: остальное клиент загружает через историю сообщений
+    private boolean truncated;
+}
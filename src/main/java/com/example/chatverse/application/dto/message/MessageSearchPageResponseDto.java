@@ -0,0 +1,15 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class MessageSearchPageResponseDto {
+    private List<MessageSearchResultDto> items;
+    // Курсор для следующей страницы (null, если страниц больше нет)
+    private Float nextAfterRank;
+    private String nextAfterMessageId;
+}
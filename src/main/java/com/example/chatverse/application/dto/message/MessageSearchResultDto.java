@@ -0,0 +1,18 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class MessageSearchResultDto {
+    private String messageId;
+    private String roomId;
+    private Long senderId;
+    private Long recipientId;
+    private Instant timestamp;
+    private String snippet; // Фрагмент с подсветкой совпадений (<mark>...</mark>)
+    private float rank;
+}
@@ -0,0 +1,11 @@
+package com.example.chatverse.application.dto.message;
+
+/**
+ * Тип содержимого сообщения. Для IMAGE и FILE само содержимое лежит во вложении,
+ * а в сообщении (и в Kafka) передается только ссылка на него.
+ */
+public enum MessageType {
+    TEXT,
+    IMAGE,
+    FILE
+}
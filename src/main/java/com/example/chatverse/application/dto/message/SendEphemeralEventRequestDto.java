@@ -0,0 +1,9 @@
+package com.example.chatverse.application.dto.message;
+
+import lombok.Data;
+
+@Data
+public class SendEphemeralEventRequestDto {
+    private Long recipientId; // Комната определяется так же, как для сообщения
+    private EphemeralEventType type;
+}
@@ -5,6 +5,9 @@ import lombok.Data;
 @Data
 public class SendMessageRequestDto {
     private Long recipientId; // Обязательно для приватного сообщения
-    private String content;
+    private String content; // Для IMAGE и FILE — необязательная подпись
+    private MessageType type; // По умолчанию TEXT
+    private String attachmentId; // Идентификатор загруженного вложения (POST /api/v1/attachments)
+    private String attachmentName; // Имя файла для отображения
     // Можно добавить другие поля, если нужны для создания сообщения, но не roomId
 }
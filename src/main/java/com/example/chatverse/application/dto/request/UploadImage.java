@@ -7,6 +7,7 @@ import lombok.Data;
 public class UploadImage {
     @Schema(description = "Имя файла изображения")
     private String filename;
-    @Schema(description = "Base64-кодированное содержимое изображения")
+    @Schema(description = "Base64-кодированное содержимое изображения (устарело: загружайте файл через PUT /api/v1/users/me/avatar)",
+            deprecated = true)
     private String base_64;
 }
@@ -0,0 +1,22 @@
+package com.example.chatverse.application.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AttachmentResponse {
+    @Schema(description = "Идентификатор вложения (SHA-256 содержимого)")
+    private String id;
+    @Schema(description = "MIME-тип содержимого")
+    private String contentType;
+    @Schema(description = "Размер в байтах")
+    private long size;
+    @Schema(description = "URL для скачивания")
+    private String url;
+}
@@ -0,0 +1,14 @@
+package com.example.chatverse.application.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+@Data
+@Builder
+public class DltReplayResponse {
+    @Schema(description = "Топик, из которого переиграны записи")
+    private String sourceTopic;
+
+    @Schema(description = "Количество записей, возвращенных в основной топик")
+    private int replayed;
+}
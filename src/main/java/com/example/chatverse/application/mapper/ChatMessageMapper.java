@@ -1,7 +1,9 @@
 package com.example.chatverse.application.mapper;
 
+import com.example.chatverse.application.dto.message.AttachmentRef;
 import com.example.chatverse.application.dto.message.ChatMessage;
 import com.example.chatverse.domain.entity.ChatMessageEntity;
+import com.example.chatverse.domain.service.AttachmentService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
@@ -14,9 +16,30 @@ public interface ChatMessageMapper {
     ChatMessageMapper INSTANCE = Mappers.getMapper(ChatMessageMapper.class);
 
     @Mapping(target = "id", ignore = true) // ID генерируется базой данных
+    @Mapping(target = "roomSeq", ignore = true) // Номер выдает consumer при сохранении
+    @Mapping(target = "messageType", source = "type")
+    @Mapping(target = "attachmentId", source = "attachment.id")
+    @Mapping(target = "attachmentName", source = "attachment.name")
+    @Mapping(target = "attachmentContentType", source = "attachment.contentType")
+    @Mapping(target = "attachmentSize", source = "attachment.size")
     ChatMessageEntity toEntity(ChatMessage dto);
 
+    @Mapping(target = "type", source = "messageType")
+    @Mapping(target = "attachment", expression = "java(toAttachmentRef(entity))")
     ChatMessage toDto(ChatMessageEntity entity);
 
+    default AttachmentRef toAttachmentRef(ChatMessageEntity entity) {
+        if (entity.getAttachmentId() == null) {
+            return null;
+        }
+        return AttachmentRef.builder()
+                .id(entity.getAttachmentId())
+                .name(entity.getAttachmentName())
+                .contentType(entity.getAttachmentContentType())
+                .size(entity.getAttachmentSize())
+                .url(AttachmentService.urlOf(entity.getAttachmentId()))
+                .build();
+    }
+
     List<ChatMessage> toDtoList(List<ChatMessageEntity> entities);
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.example.chatverse.application.mapper;
+
+import com.example.chatverse.application.dto.conversation.ConversationResponseDto;
+import com.example.chatverse.domain.entity.Conversation;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(componentModel = "spring")
+public interface ConversationMapper {
+
+    @Mapping(source = "id", target = "conversationId")
+    ConversationResponseDto toDto(Conversation entity);
+
+    List<ConversationResponseDto> toDtoList(List<Conversation> entities);
+}
@@ -4,11 +4,13 @@ import com.example.chatverse.application.dto.request.RegisterIn;
 import com.example.chatverse.application.dto.request.UserUpdateRequest;
 import com.example.chatverse.application.service.UsernameGenerator;
 import com.example.chatverse.domain.entity.PlatformUser;
+import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+@Slf4j
 public class UserMapper {
 
     public static PlatformUser registerInToEntity(RegisterIn request) {
@@ -27,9 +29,8 @@ public class UserMapper {
         String username = "";
         try {
             username = UsernameGenerator.generateUsernameFromPhone(phone);
-            System.out.println("username: " + username);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to generate username from phone: {}", e.getMessage(), e);
         }
         PlatformUser platformUser = PlatformUser.builder()
                 .name("name")
@@ -40,7 +41,6 @@ public class UserMapper {
                 .completedTask(0)
                 .active(true)
                 .build();
-        System.out.println("platformUser: " + platformUser);
         return platformUser;
     }
 
@@ -61,8 +61,10 @@ public class UserMapper {
                 .completedTask(user.getCompletedTask())
                 .role(user.getRole() != null ? user.getRole() : "user")
                 .active(user.isActive())
+                .avatarHash(user.getAvatarHash())
+                .avatarBigHash(user.getAvatarBigHash())
+                .avatarMiniHash(user.getAvatarMiniHash())
                 .build();
-        System.out.println("platformUser: " + platformUser);
         return platformUser;
     }
 }
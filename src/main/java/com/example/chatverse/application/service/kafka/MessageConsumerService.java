@@ -3,7 +3,11 @@ package com.example.chatverse.application.service.kafka;
 import com.example.chatverse.application.dto.message.ChatMessage;
 import com.example.chatverse.application.mapper.ChatMessageMapper;
 import com.example.chatverse.domain.entity.ChatMessageEntity;
-import com.example.chatverse.domain.repository.ChatMessageRepository;
+import com.example.chatverse.domain.service.ConversationService;
+import com.example.chatverse.infrastructure.datasource.ShardedChatMessageStore;
+import com.example.chatverse.infrastructure.kafka.KeyOrderedExecutor;
+import com.example.chatverse.infrastructure.logging.LogSampler;
+import com.example.chatverse.infrastructure.resync.RecentRoomMessagesCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -12,83 +16,97 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Component responsible for consuming messages from Kafka topics.
+ * Поток consumer'а только раздает записи по полосам {@link KeyOrderedExecutor}: запись в БД и push
+ * в WebSocket идут параллельно для разных комнат и по порядку внутри комнаты. Listener возвращает
+ * CompletableFuture, поэтому смещение подтверждается после завершения обработки (out-of-order commit),
+ * а ошибка обработки передается обработчику ошибок контейнера (повторы и DLT, см. KafkaRetryConfig).
+ * Сохраненное сообщение получает номер в комнате (roomSeq) и попадает в кэш последних сообщений для догрузки.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageConsumerService {
 
-    private final ChatMessageRepository chatMessageRepository;
+    private static final String LEGACY_ROOM_TOPIC_PREFIX = "/topic/room/";
+
+    private final ShardedChatMessageStore chatMessageStore;
     private final ChatMessageMapper chatMessageMapper;
     private final SimpMessagingTemplate messagingTemplate;
-
-    // Простая вспомогательная функция для сокращения длинных сообщений в логах
-    private String getContentSnippet(String content, int maxLength) {
-        if (content == null) {
-            return "null";
-        }
-        if (content.length() <= maxLength) {
-            return content;
-        }
-        return content.substring(0, maxLength - 3) + "...";
-    }
+    private final ConversationService conversationService;
+    private final LogSampler logSampler;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final RecentRoomMessagesCache recentMessagesCache;
 
     @KafkaListener(topics = "${app.kafka.topic.chat-messages:chat-messages}",
-            groupId = "${spring.kafka.consumer.group-id}")
-    @Transactional
-    public void listenChatMessages(
+            groupId = "${spring.kafka.consumer.group-id}",
+            concurrency = "${app.kafka.consumer.concurrency:3}")
+    public CompletableFuture<Void> listenChatMessages(
             @Payload ChatMessage incomingMessageDto,
             @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
             @Header(KafkaHeaders.OFFSET) long offset,
             @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
             @Header(name = KafkaHeaders.RECEIVED_KEY, required = false) String key
     ) {
-        log.info("Received Kafka message: ID=[{}], Key=[{}], Partition=[{}], Offset=[{}], Topic=[{}], Payload=[{}]",
-                incomingMessageDto.getMessageId(), key, partition, offset, topic, incomingMessageDto);
+        log.atDebug()
+                .addKeyValue("messageId", incomingMessageDto.getMessageId())
+                .addKeyValue("key", key)
+                .addKeyValue("partition", partition)
+                .addKeyValue("offset", offset)
+                .log("Received Kafka message");
+
+        return keyOrderedExecutor.submit(key != null ? key : incomingMessageDto.getRoomId(),
+                () -> process(incomingMessageDto, partition, offset, key));
+    }
 
+    private void process(ChatMessage incomingMessageDto, int partition, long offset, String key) {
         try {
             ChatMessageEntity messageEntity = chatMessageMapper.toEntity(incomingMessageDto);
-            ChatMessageEntity savedEntity = chatMessageRepository.save(messageEntity);
-            log.info("Message ID=[{}] (DB ID: [{}]) saved to database. Saved entity: {}",
-                    incomingMessageDto.getMessageId(), savedEntity.getId(), savedEntity);
+            // Сохранение идет в шард комнаты в собственной транзакции; повторная доставка не создает дубль
+            boolean stored = chatMessageStore.save(messageEntity);
+            if (!stored) {
+                log.atInfo().addKeyValue("messageId", incomingMessageDto.getMessageId())
+                        .log("Message already stored");
+            }
+            // Сводки обновляются и при повторной доставке: предыдущая попытка могла упасть после записи в шард.
+            // Повторный учет исключает сам ConversationService (идемпотентность по messageId)
+            conversationService.onMessagePersisted(messageEntity);
 
-            ChatMessage messageToSendViaWebSocket = chatMessageMapper.toDto(savedEntity);
-            String contentSnippet = getContentSnippet(messageToSendViaWebSocket.getContent(), 50); // Ограничим до 50 символов
+            ChatMessage messageToSendViaWebSocket = chatMessageMapper.toDto(messageEntity);
+            if (stored) {
+                // В кэш до push'а: клиент, получивший номер живой доставкой, уже может его догружать
+                recentMessagesCache.append(messageToSendViaWebSocket);
+            }
 
             if (messageToSendViaWebSocket.getRoomId() != null) {
                 String roomTopic = "/topic/messages/" + messageToSendViaWebSocket.getRoomId();
                 messagingTemplate.convertAndSend(roomTopic, messageToSendViaWebSocket);
-                // Усиленное логирование для отправки в комнату
-                log.info("Sent to room topic: MessageID=[{}], RoomTopic=[{}], SenderID=[{}], RecipientID=[{}], ContentSnippet='{}'",
-                        messageToSendViaWebSocket.getMessageId(),
-                        roomTopic,
-                        messageToSendViaWebSocket.getSenderId(),
-                        messageToSendViaWebSocket.getRecipientId(), // Может быть null для комнат, но полезно видеть
-                        contentSnippet);
+                // Старые клиенты подписаны на /topic/room/{roomId}
+                messagingTemplate.convertAndSend(LEGACY_ROOM_TOPIC_PREFIX + messageToSendViaWebSocket.getRoomId(),
+                        messageToSendViaWebSocket);
             } else {
                 log.warn("Message ID=[{}] has no roomId. Cannot send to WebSocket room topic.", messageToSendViaWebSocket.getMessageId());
             }
 
             if (messageToSendViaWebSocket.getRecipientId() != null) {
-                String recipientUser = messageToSendViaWebSocket.getRecipientId().toString();
-                String privateQueueSuffix = "/queue/messages";
-                messagingTemplate.convertAndSendToUser(recipientUser, privateQueueSuffix, messageToSendViaWebSocket);
-                // Усиленное логирование для персональной отправки
-                log.info("Sent private notification: MessageID=[{}], RecipientUserID=[{}], Destination=[/user/{}{}], SenderID=[{}], ContentSnippet='{}'",
-                        messageToSendViaWebSocket.getMessageId(),
-                        recipientUser,
-                        recipientUser, // для формирования полного пути в логе
-                        privateQueueSuffix,
-                        messageToSendViaWebSocket.getSenderId(),
-                        contentSnippet);
+                messagingTemplate.convertAndSendToUser(messageToSendViaWebSocket.getRecipientId().toString(),
+                        "/queue/messages", messageToSendViaWebSocket);
             }
 
-            // Для еще более детального логирования, можно добавить на уровне DEBUG:
-            // log.debug("Full message DTO sent via WebSocket: {}", messageToSendViaWebSocket);
+            // Содержимое сообщения в лог не пишем; на INFO попадает только выборка
+            (logSampler.sample() ? log.atInfo() : log.atDebug())
+                    .addKeyValue("messageId", messageToSendViaWebSocket.getMessageId())
+                    .addKeyValue("roomId", messageToSendViaWebSocket.getRoomId())
+                    .addKeyValue("senderId", messageToSendViaWebSocket.getSenderId())
+                    .addKeyValue("recipientId", messageToSendViaWebSocket.getRecipientId())
+                    .addKeyValue("partition", partition)
+                    .addKeyValue("offset", offset)
+                    .addKeyValue("stored", stored)
+                    .log("Chat message processed");
 
         } catch (Exception e) {
             log.error("Error processing received Kafka message: ID=[{}], Key=[{}], Error: {}",
@@ -1,6 +1,12 @@
 package com.example.chatverse.application.service.kafka;
 
 import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.infrastructure.exception.ServiceUnavailableException;
+import com.example.chatverse.infrastructure.kafka.DurableMessageLog;
+import com.example.chatverse.infrastructure.kafka.MessageOutbox;
+import com.example.chatverse.infrastructure.kafka.ProducerCircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +16,24 @@ import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Отправка сообщений в Kafka. Потоки приема только кладут сообщение в {@link MessageOutbox},
+ * а в Kafka его передает отдельный поток-диспетчер: если брокер тормозит и producer упирается
+ * в buffer.memory / max.block.ms, блокируется диспетчер, а не входящий поток STOMP.
+ * Пока circuit breaker открыт, буфер переполнен, а также если отправка не удалась, сообщение
+ * сохраняется в локальный {@link DurableMessageLog}, откуда его позже
+ * перенесет в Kafka {@code DurableOutboxRelay}.
+ * <p>
+ * Порядок сообщений комнаты: пока в журнале есть сообщения ключа, новые сообщения этого ключа тоже
+ * идут в журнал — это проверяется и при приеме, и повторно перед отправкой диспетчером, т.к. пока
+ * сообщение лежало в буфере, более раннее могло упасть и попасть в журнал. Для уже отправленных
+ * (in-flight) сообщений порядок обеспечивает идемпотентный producer (enable.idempotence, acks=all,
+ * max.in.flight.requests.per.connection &lt;= 5): ретраи не переставляют пачки партиции, а если пачка
+ * окончательно не отправлена, следующие за ней пачки той же партиции тоже завершаются ошибкой,
+ * и их callback'и вызываются по порядку — в журнал они попадают в исходной последовательности.
+ */
 @Service
 public class MessageProducerService {
 
@@ -20,12 +43,43 @@ public class MessageProducerService {
     private String chatTopicName;
 
     private final KafkaTemplate<String, ChatMessage> kafkaTemplate;
+    private final MessageOutbox outbox;
+    private final ProducerCircuitBreaker circuitBreaker;
+    private final DurableMessageLog durableLog;
+    private Thread dispatcher;
+    private volatile boolean running;
 
     @Autowired
-    public MessageProducerService(KafkaTemplate<String, ChatMessage> kafkaTemplate) {
+    public MessageProducerService(KafkaTemplate<String, ChatMessage> kafkaTemplate, MessageOutbox outbox,
+                                  ProducerCircuitBreaker circuitBreaker, DurableMessageLog durableLog) {
         this.kafkaTemplate = kafkaTemplate;
+        this.outbox = outbox;
+        this.circuitBreaker = circuitBreaker;
+        this.durableLog = durableLog;
     }
 
+    @PostConstruct
+    void startDispatcher() {
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "kafka-outbox-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    void stopDispatcher() throws InterruptedException {
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        if (outbox.size() > 0) {
+            log.warn("Kafka outbox stopped with {} unacknowledged message(s)", outbox.size());
+        }
+    }
+
+    /**
+     * Принимает сообщение к отправке.
+     * @throws ServiceUnavailableException если буфер отправки переполнен, либо Kafka недоступна
+     * и локальный журнал тоже заполнен.
+     */
     public void sendMessage(ChatMessage message) {
         if (message == null || chatTopicName == null) {
             log.error("Cannot send null message or topic name is not configured.");
@@ -46,20 +100,85 @@ public class MessageProducerService {
             return;
         }
 
-        log.debug("Attempting to send message with key [{}]: {}", key, message);
+        // Пока в журнале есть сообщения комнаты, новые идут следом за ними, чтобы не нарушить порядок
+        if (durableLog.hasPending(key) || !circuitBreaker.allowRequest()) {
+            if (durableLog.append(key, message)) {
+                log.debug("Stored message=[{}] in the local outbox until Kafka recovers", message.getMessageId());
+                return;
+            }
+            outbox.recordRejected();
+            throw new ServiceUnavailableException("Messaging is temporarily unavailable. Please retry later.");
+        }
+        if (!outbox.offer(key, message)) {
+            // Сообщения ключа, уже стоящие в буфере, отправятся раньше, а следующие пойдут за этим через журнал
+            if (durableLog.append(key, message)) {
+                log.debug("Kafka outbox is full, stored message=[{}] in the local outbox", message.getMessageId());
+                return;
+            }
+            log.warn("Kafka outbox is full ({} messages), rejecting message {}", outbox.getCapacity(), message.getMessageId());
+            throw new ServiceUnavailableException("Messaging is overloaded. Please retry later.");
+        }
+        log.debug("Queued message=[{}] with key [{}]", message.getMessageId(), key);
+    }
 
-        CompletableFuture<SendResult<String, ChatMessage>> future = kafkaTemplate.send(chatTopicName, key, message);
+    private void dispatchLoop() {
+        while (running || outbox.size() > 0) {
+            MessageOutbox.Entry entry;
+            try {
+                entry = outbox.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry != null) {
+                publish(entry);
+            } else if (!running) {
+                return;
+            }
+        }
+    }
+
+    private void publish(MessageOutbox.Entry entry) {
+        ChatMessage message = entry.message();
+        // Пока сообщение ждало в буфере, более раннее сообщение комнаты могло не отправиться и уйти в журнал
+        if (durableLog.hasPending(entry.key()) && durableLog.append(entry.key(), message)) {
+            outbox.release();
+            log.debug("Stored message=[{}] in the local outbox behind earlier messages of key [{}]",
+                    message.getMessageId(), entry.key());
+            return;
+        }
+        CompletableFuture<SendResult<String, ChatMessage>> future;
+        try {
+            future = kafkaTemplate.send(chatTopicName, entry.key(), message);
+        } catch (Exception e) {
+            // max.block.ms истек (нет метаданных или переполнен buffer.memory)
+            onSendFailure(entry, e);
+            return;
+        }
 
         future.whenComplete((result, ex) -> {
             if (ex == null) {
-                log.info("Sent message=[{}] with offset=[{}] to topic=[{}] partition=[{}]",
+                outbox.release();
+                circuitBreaker.recordSuccess();
+                log.debug("Sent message=[{}] with offset=[{}] to topic=[{}] partition=[{}]",
                         message.getMessageId(),
                         result.getRecordMetadata().offset(),
                         result.getRecordMetadata().topic(),
                         result.getRecordMetadata().partition());
             } else {
-                log.error("Unable to send message=[{}] due to : {}", message.getMessageId(), ex.getMessage(), ex);
+                onSendFailure(entry, ex);
             }
         });
     }
-}
\ No newline at end of file
+
+    private void onSendFailure(MessageOutbox.Entry entry, Throwable ex) {
+        outbox.release();
+        circuitBreaker.recordFailure();
+        ChatMessage message = entry.message();
+        if (durableLog.append(entry.key(), message)) {
+            log.warn("Unable to send message=[{}], stored in the local outbox: {}", message.getMessageId(), ex.getMessage());
+        } else {
+            log.error("Unable to send message=[{}] due to : {}", message.getMessageId(), ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chatverse.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Метаданные вложения. Содержимое лежит в ContentAddressedFileStore под именем hash (SHA-256).
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "attachments")
+public class Attachment {
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    // Кто загрузил первым; повторная загрузка того же содержимого запись не меняет
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(name = "created", nullable = false)
+    private LocalDateTime created;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.Instant;
+import java.util.List;
 
 @Entity
 @Table(name = "chat_messages")
@@ -15,11 +16,20 @@ import java.time.Instant;
 @ToString
 public class ChatMessageEntity {
 
+    /**
+     * Все хранимые колонки chat_messages, кроме вычисляемой search_vector. По этому списку партиции
+     * выгружаются в архив перед удалением, поэтому новая колонка сущности должна попасть и сюда.
+     */
+    public static final List<String> COLUMNS = List.of(
+            "id", "message_id", "sender_id", "recipient_id", "room_id", "timestamp", "content", "room_seq",
+            "message_type", "attachment_id", "attachment_name", "attachment_content_type", "attachment_size");
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "message_id", nullable = false, unique = true)
+    // Уникальность обеспечивается ограничением (message_id, timestamp) в партиционированной таблице (см. V3)
+    @Column(name = "message_id", nullable = false)
     private String messageId; // UUID сообщения, совпадает с DTO
 
     @Column(name = "sender_id", nullable = false)
@@ -36,4 +46,25 @@ public class ChatMessageEntity {
 
     @Column(name = "timestamp", nullable = false)
     private Instant timestamp; // Время отправки
+
+    // Номер сообщения в комнате, выдается consumer'ом при сохранении (см. V4); растет монотонно
+    @Column(name = "room_seq")
+    private Long roomSeq;
+
+    // Тип и ссылка на вложение (V6); содержимое вложения хранится вне таблицы
+    @Column(name = "message_type", nullable = false, length = 16)
+    @Builder.Default
+    private String messageType = "TEXT";
+
+    @Column(name = "attachment_id", length = 64)
+    private String attachmentId;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Column(name = "attachment_content_type", length = 127)
+    private String attachmentContentType;
+
+    @Column(name = "attachment_size")
+    private Long attachmentSize;
 }
\ No newline at end of file
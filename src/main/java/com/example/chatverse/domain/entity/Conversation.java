@@ -0,0 +1,56 @@
+package com.example.chatverse.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Материализованная сводка по комнате для конкретного пользователя ("мои чаты").
+ * Поддерживается консьюмером Kafka инкрементально при сохранении каждого сообщения,
+ * поэтому список чатов читается без обращения к истории сообщений.
+ */
+@Entity
+@Table(name = "conversations",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_conversations_user_room", columnNames = {"user_id", "room_id"})
+        },
+        indexes = {
+                @Index(name = "idx_conversations_user_recency", columnList = "user_id, last_message_at DESC, id DESC")
+        })
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class Conversation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // Владелец записи
+
+    @Column(name = "room_id", nullable = false)
+    private String roomId;
+
+    @Column(name = "peer_id", nullable = false)
+    private Long peerId; // Собеседник в комнате
+
+    @Column(name = "last_message_id", nullable = false)
+    private String lastMessageId;
+
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+
+    @Column(name = "last_message_snippet", nullable = false, length = 200)
+    private String lastMessageSnippet;
+
+    @Column(name = "last_message_at", nullable = false)
+    private Instant lastMessageAt;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+}
@@ -61,4 +61,14 @@ public class PlatformUser {
 
     @Column(name = "active", nullable = false)
     private boolean active;
+
+    // Идентификаторы вложений (SHA-256); миниатюры заполняются асинхронно после загрузки аватара
+    @Column(name = "avatar_hash", length = 64)
+    private String avatarHash;
+
+    @Column(name = "avatar_big_hash", length = 64)
+    private String avatarBigHash;
+
+    @Column(name = "avatar_mini_hash", length = 64)
+    private String avatarMiniHash;
 }
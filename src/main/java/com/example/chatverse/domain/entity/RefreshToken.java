@@ -11,7 +11,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "refresh_tokens")
+// Устаревшее хранилище: новые токены выдаются через RefreshTokenStore (Redis), таблица читается
+// только для токенов, выданных до перехода, и очищается RefreshTokenCleanupJob
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_expiry_date", columnList = "expiry_date")
+})
 public class RefreshToken {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
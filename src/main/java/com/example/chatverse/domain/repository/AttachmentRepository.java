@@ -0,0 +1,71 @@
+package com.example.chatverse.domain.repository;
+
+import com.example.chatverse.domain.entity.Attachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AttachmentRepository extends JpaRepository<Attachment, String> {
+
+    /**
+     * Условие «вложение не используется как аватар и давно никем не загружалось».
+     */
+    String UNUSED_CONDITION = """
+            a.created < :before
+            AND NOT EXISTS (SELECT 1 FROM attachment_owners o WHERE o.hash = a.hash AND o.created >= :before)
+            AND NOT EXISTS (SELECT 1 FROM platform_users u WHERE u.avatar_hash = a.hash)
+            AND NOT EXISTS (SELECT 1 FROM platform_users u WHERE u.avatar_big_hash = a.hash)
+            AND NOT EXISTS (SELECT 1 FROM platform_users u WHERE u.avatar_mini_hash = a.hash)
+            """;
+
+    // Повторная загрузка того же содержимого обновляет created: вложение снова «свежее» для очистки
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO attachment_owners (hash, owner_id) VALUES (:hash, :ownerId) " +
+            "ON CONFLICT (hash, owner_id) DO UPDATE SET created = NOW()", nativeQuery = true)
+    int addOwner(@Param("hash") String hash, @Param("ownerId") Long ownerId);
+
+    // Отправка вложения в сообщении: проверяет, что пользователь его загружал, и защищает от очистки,
+    // пока сообщение идет через Kafka в шард
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE attachment_owners SET created = NOW() WHERE hash = :hash AND owner_id = :ownerId",
+            nativeQuery = true)
+    int touchOwner(@Param("hash") String hash, @Param("ownerId") Long ownerId);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM attachment_owners WHERE hash = :hash AND owner_id = :ownerId)",
+            nativeQuery = true)
+    boolean isOwner(@Param("hash") String hash, @Param("ownerId") Long ownerId);
+
+    @Query(value = """
+            SELECT EXISTS (SELECT 1 FROM platform_users WHERE avatar_hash = :hash)
+                OR EXISTS (SELECT 1 FROM platform_users WHERE avatar_big_hash = :hash)
+                OR EXISTS (SELECT 1 FROM platform_users WHERE avatar_mini_hash = :hash)
+            """, nativeQuery = true)
+    boolean isAvatar(@Param("hash") String hash);
+
+    /**
+     * Кандидаты на удаление по порядку hash: ссылки из сообщений (в шардах) проверяет вызывающий.
+     */
+    @Query(value = "SELECT a.hash FROM attachments a WHERE a.hash > :afterHash AND " + UNUSED_CONDITION +
+            " ORDER BY a.hash LIMIT :limit", nativeQuery = true)
+    List<String> findUnusedCandidates(@Param("afterHash") String afterHash, @Param("before") LocalDateTime before,
+                                      @Param("limit") int limit);
+
+    /**
+     * Удаляет вложения, повторно проверяя условие: за время проверки шардов вложение могли загрузить снова
+     * или поставить аватаром.
+     * Не @Modifying: DELETE ... RETURNING выполняется как запрос и возвращает строки.
+     * @return Идентификаторы удаленных записей.
+     */
+    @Query(value = "DELETE FROM attachments a WHERE a.hash IN (:hashes) AND " + UNUSED_CONDITION + " RETURNING a.hash",
+            nativeQuery = true)
+    List<String> deleteUnused(@Param("hashes") List<String> hashes, @Param("before") LocalDateTime before);
+}
@@ -2,13 +2,50 @@ package com.example.chatverse.domain.repository;
 
 import com.example.chatverse.domain.entity.ChatMessageEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity, Long> {
 
+    /**
+     * Общая часть поискового запроса: совпадения в сообщениях, где пользователь отправитель или получатель.
+     * Две ветки UNION ALL используют составные GIN-индексы (sender_id, search_vector)
+     * и (recipient_id, search_vector) вместо фильтрации по OR после сканирования.
+     */
+    String SEARCH_HITS_CTE = """
+            WITH q AS (SELECT websearch_to_tsquery('simple', :query) AS query),
+            hits AS (
+                SELECT m.id, m.message_id, m.timestamp, ts_rank_cd(m.search_vector, q.query) AS rank
+                FROM chat_messages m, q
+                WHERE m.sender_id = :userId AND m.search_vector @@ q.query
+                UNION ALL
+                SELECT m.id, m.message_id, m.timestamp, ts_rank_cd(m.search_vector, q.query) AS rank
+                FROM chat_messages m, q
+                WHERE m.recipient_id = :userId AND m.search_vector @@ q.query
+            )
+            """;
+
+    /**
+     * Выборка страницы: подсветка (ts_headline) считается только для строк, попавших в страницу.
+     */
+    String SEARCH_PAGE_SELECT = """
+            SELECT m.id AS "id", m.message_id AS "messageId", m.room_id AS "roomId",
+                   m.sender_id AS "senderId", m.recipient_id AS "recipientId", m.timestamp AS "timestamp",
+                   p.rank AS "rank",
+                   ts_headline('simple', m.content, q.query,
+                               'StartSel=<mark>, StopSel=</mark>, MaxWords=20, MinWords=5, MaxFragments=2') AS "snippet"
+            FROM page p
+            JOIN chat_messages m ON m.id = p.id AND m.timestamp = p.timestamp
+            CROSS JOIN q
+            ORDER BY p.rank DESC, p.message_id DESC
+            """;
+
     /**
      * Находит все сообщения для указанной комнаты чата, отсортированные по времени.
      * @param roomId Идентификатор комнаты чата.
@@ -16,5 +53,57 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity,
      */
     List<ChatMessageEntity> findByRoomIdOrderByTimestampAsc(String roomId);
 
-    // Можно добавить другие методы поиска, например, по отправителю, получателю, дате и т.д.
-}
\ No newline at end of file
+    /**
+     * Находит сообщения комнаты начиная с указанного момента, отсортированные по времени.
+     * Условие по timestamp позволяет планировщику отсечь партиции вне окна.
+     * @param roomId Идентификатор комнаты чата.
+     * @param since Нижняя граница времени (включительно).
+     * @return Список сообщений.
+     */
+    List<ChatMessageEntity> findByRoomIdAndTimestampGreaterThanEqualOrderByTimestampAsc(String roomId, Instant since);
+
+    /**
+     * Сообщения комнаты с номером больше указанного, по возрастанию номера (догрузка после переподключения).
+     * @param roomId Идентификатор комнаты чата.
+     * @param afterSeq Последний номер, который уже есть у клиента.
+     * @param limit Размер пачки.
+     * @return Список сообщений.
+     */
+    List<ChatMessageEntity> findByRoomIdAndRoomSeqGreaterThanOrderByRoomSeqAsc(String roomId, Long afterSeq, Limit limit);
+
+    /**
+     * Полнотекстовый поиск по сообщениям комнат пользователя (первая страница).
+     * @param userId ID пользователя, в чьих комнатах ищем.
+     * @param query Поисковый запрос в синтаксисе websearch_to_tsquery.
+     * @param limit Размер страницы.
+     * @return Найденные сообщения по убыванию релевантности.
+     */
+    @Query(value = SEARCH_HITS_CTE + """
+            , page AS (
+                SELECT id, message_id, timestamp, rank FROM hits
+                ORDER BY rank DESC, message_id DESC
+                LIMIT :limit
+            )
+            """ + SEARCH_PAGE_SELECT, nativeQuery = true)
+    List<MessageSearchHit> searchFirstPage(@Param("userId") Long userId,
+                                           @Param("query") String query,
+                                           @Param("limit") int limit);
+
+    /**
+     * Следующая страница полнотекстового поиска по курсору (rank, messageId) последнего найденного сообщения.
+     * messageId уникален во всех шардах, поэтому курсор однозначен и при слиянии результатов.
+     */
+    @Query(value = SEARCH_HITS_CTE + """
+            , page AS (
+                SELECT id, message_id, timestamp, rank FROM hits
+                WHERE (rank, message_id) < (:afterRank, :afterMessageId)
+                ORDER BY rank DESC, message_id DESC
+                LIMIT :limit
+            )
+            """ + SEARCH_PAGE_SELECT, nativeQuery = true)
+    List<MessageSearchHit> searchPageAfter(@Param("userId") Long userId,
+                                           @Param("query") String query,
+                                           @Param("afterRank") float afterRank,
+                                           @Param("afterMessageId") String afterMessageId,
+                                           @Param("limit") int limit);
+}
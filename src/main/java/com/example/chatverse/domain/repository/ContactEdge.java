@@ -0,0 +1,10 @@
+package com.example.chatverse.domain.repository;
+
+/**
+ * Проекция связи контакта с точки зрения одного пользователя: собеседник, статус и инициатор.
+ */
+public interface ContactEdge {
+    Long getPeerId();
+    String getStatus(); // Имя ContactStatus
+    Long getActionUserId();
+}
@@ -2,7 +2,6 @@ package com.example.chatverse.domain.repository;
 
 import com.example.chatverse.domain.entity.Contact;
 import com.example.chatverse.domain.entity.ContactStatus;
-import com.example.chatverse.domain.entity.PlatformUser;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,34 +10,89 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Все запросы идут по ID, а не по сущностям. Пара пользователей хранится в каноническом порядке
+ * (userOne — меньший ID), поэтому связь между двумя пользователями ищется одним условием по уникальному индексу.
+ * Выборки "все контакты пользователя" разбиты на две ветки UNION ALL — пользователь как userOne и как userTwo —
+ * чтобы каждая шла по своему индексу (user_one_id, status) / (user_two_id, status) вместо OR по двум колонкам.
+ * Ветки не пересекаются: user_one_id &lt; user_two_id для всех строк проверяет ограничение
+ * chk_contacts_canonical_order (добавлено в V8, старые строки проверены в V12).
+ */
 @Repository
 public interface ContactRepository extends JpaRepository<Contact, Long> {
 
+    @Query("SELECT c FROM Contact c WHERE c.userOne.id = :userOneId AND c.userTwo.id = :userTwoId")
+    Optional<Contact> findByCanonicalPair(@Param("userOneId") Long userOneId, @Param("userTwoId") Long userTwoId);
+
     /**
-     * Находит существующую связь между двумя пользователями, независимо от того, кто userOne, а кто userTwo.
+     * Находит существующую связь между двумя пользователями, независимо от порядка аргументов.
      */
-    @Query("SELECT c FROM Contact c WHERE (c.userOne = :userA AND c.userTwo = :userB) OR (c.userOne = :userB AND c.userTwo = :userA)")
-    Optional<Contact> findContactBetweenUsers(@Param("userA") PlatformUser userA, @Param("userB") PlatformUser userB);
+    default Optional<Contact> findContactBetweenUsers(Long userA, Long userB) {
+        return userA < userB ? findByCanonicalPair(userA, userB) : findByCanonicalPair(userB, userA);
+    }
+
+    @Query(value = """
+            SELECT c.* FROM contacts c WHERE c.user_one_id = :userId AND c.status = :status
+            UNION ALL
+            SELECT c.* FROM contacts c WHERE c.user_two_id = :userId AND c.status = :status
+            """, nativeQuery = true)
+    List<Contact> findAllByUserIdAndStatus(@Param("userId") Long userId, @Param("status") String status);
 
     /**
      * Находит все контакты пользователя с определенным статусом.
      * Учитывает случаи, когда пользователь может быть как userOne, так и userTwo.
      */
-    @Query("SELECT c FROM Contact c WHERE (c.userOne = :user OR c.userTwo = :user) AND c.status = :status")
-    List<Contact> findAllByUserAndStatus(@Param("user") PlatformUser user, @Param("status") ContactStatus status);
+    default List<Contact> findAllByUserAndStatus(Long userId, ContactStatus status) {
+        return findAllByUserIdAndStatus(userId, status.name());
+    }
+
+    @Query(value = """
+            SELECT c.* FROM contacts c
+            WHERE c.user_one_id = :userId AND c.status = :status AND c.action_user_id = c.user_two_id
+            UNION ALL
+            SELECT c.* FROM contacts c
+            WHERE c.user_two_id = :userId AND c.status = :status AND c.action_user_id = c.user_one_id
+            """, nativeQuery = true)
+    List<Contact> findIncomingByUserIdAndStatus(@Param("userId") Long userId, @Param("status") String status);
 
     /**
-     * Находит все входящие запросы для пользователя (где он userTwo, а запрос PENDING и инициирован другим).
-     * Или где он userOne, а запрос PENDING и инициирован другим (если actionUser не совпадает с user).
-     * Более точный запрос: Находит PENDING запросы, где actionUser не является текущим пользователем.
+     * Находит все входящие запросы для пользователя: PENDING, где инициатор — другой участник пары.
      */
-    @Query("SELECT c FROM Contact c WHERE ((c.userOne = :user AND c.actionUser = c.userTwo) OR (c.userTwo = :user AND c.actionUser = c.userOne)) AND c.status = :status")
-    List<Contact> findPendingIncomingRequestsForUser(@Param("user") PlatformUser user, @Param("status") ContactStatus status);
+    default List<Contact> findPendingIncomingRequestsForUser(Long userId) {
+        return findIncomingByUserIdAndStatus(userId, ContactStatus.PENDING.name());
+    }
 
+    /**
+     * Инициатор всегда один из участников пары, поэтому условие по action_user_id дополняется
+     * условием по колонке участника — и запрос идет по тем же индексам, без отдельного индекса по action_user_id.
+     */
+    @Query(value = """
+            SELECT c.* FROM contacts c
+            WHERE c.user_one_id = :userId AND c.status = :status AND c.action_user_id = :userId
+            UNION ALL
+            SELECT c.* FROM contacts c
+            WHERE c.user_two_id = :userId AND c.status = :status AND c.action_user_id = :userId
+            """, nativeQuery = true)
+    List<Contact> findInitiatedByUserIdAndStatus(@Param("userId") Long userId, @Param("status") String status);
 
     /**
      * Находит все исходящие PENDING запросы от пользователя (где он является actionUser).
      */
-    List<Contact> findAllByActionUserAndStatus(PlatformUser actionUser, ContactStatus status);
+    default List<Contact> findPendingOutgoingRequestsForUser(Long userId) {
+        return findInitiatedByUserIdAndStatus(userId, ContactStatus.PENDING.name());
+    }
+
+    /**
+     * Все связи пользователя без загрузки сущностей: для графа контактов в памяти.
+     * Обе ветки читают только колонки покрывающих индексов (index-only scan).
+     */
+    @Query(value = """
+            SELECT c.user_two_id AS "peerId", c.status AS "status", c.action_user_id AS "actionUserId"
+            FROM contacts c WHERE c.user_one_id = :userId
+            UNION ALL
+            SELECT c.user_one_id AS "peerId", c.status AS "status", c.action_user_id AS "actionUserId"
+            FROM contacts c WHERE c.user_two_id = :userId
+            """, nativeQuery = true)
+    List<ContactEdge> findEdgesOfUser(@Param("userId") Long userId);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package com.example.chatverse.domain.repository;
+
+import com.example.chatverse.domain.entity.Conversation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+
+    /**
+     * Атомарно создает или обновляет сводку по комнате.
+     * Последнее сообщение перезаписывается только более новым (сообщения одной комнаты
+     * могут прийти с повтором), счетчик непрочитанных увеличивается всегда.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO conversations (user_id, room_id, peer_id, last_message_id, last_sender_id,
+                                       last_message_snippet, last_message_at, unread_count)
+            VALUES (:userId, :roomId, :peerId, :messageId, :senderId, :snippet, :timestamp, :unreadIncrement)
+            ON CONFLICT (user_id, room_id) DO UPDATE SET
+                last_message_id = CASE WHEN conversations.last_message_at <= EXCLUDED.last_message_at
+                                       THEN EXCLUDED.last_message_id ELSE conversations.last_message_id END,
+                last_sender_id = CASE WHEN conversations.last_message_at <= EXCLUDED.last_message_at
+                                      THEN EXCLUDED.last_sender_id ELSE conversations.last_sender_id END,
+                last_message_snippet = CASE WHEN conversations.last_message_at <= EXCLUDED.last_message_at
+                                            THEN EXCLUDED.last_message_snippet ELSE conversations.last_message_snippet END,
+                last_message_at = GREATEST(conversations.last_message_at, EXCLUDED.last_message_at),
+                unread_count = conversations.unread_count + EXCLUDED.unread_count
+            """, nativeQuery = true)
+    void upsertLastMessage(@Param("userId") Long userId,
+                           @Param("roomId") String roomId,
+                           @Param("peerId") Long peerId,
+                           @Param("messageId") String messageId,
+                           @Param("senderId") Long senderId,
+                           @Param("snippet") String snippet,
+                           @Param("timestamp") Instant timestamp,
+                           @Param("unreadIncrement") int unreadIncrement);
+
+    /**
+     * Отмечает сообщение как учтенное в сводках. Возвращает 0, если оно уже было учтено
+     * (повторная доставка): тогда сводки и счетчики не трогаем.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO conversation_applied_messages (message_id) VALUES (:messageId) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int markMessageApplied(@Param("messageId") String messageId);
+
+    /**
+     * Удаляет порцию отметок старше заданного момента: повторная доставка настолько старых сообщений не ожидается.
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM conversation_applied_messages
+            WHERE message_id IN (SELECT message_id FROM conversation_applied_messages WHERE applied_at < :before LIMIT :batchSize)
+            """, nativeQuery = true)
+    int deleteAppliedBefore(@Param("before") Instant before, @Param("batchSize") int batchSize);
+
+    /**
+     * Первая страница списка чатов пользователя, от самых свежих к старым.
+     */
+    @Query("SELECT c FROM Conversation c WHERE c.userId = :userId ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<Conversation> findFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Следующая страница по курсору (lastMessageAt, id) последнего элемента предыдущей страницы.
+     * Keyset-пагинация: стоимость зависит только от размера страницы, а не от ее номера.
+     */
+    @Query("SELECT c FROM Conversation c WHERE c.userId = :userId " +
+            "AND (c.lastMessageAt < :beforeTimestamp OR (c.lastMessageAt = :beforeTimestamp AND c.id < :beforeId)) " +
+            "ORDER BY c.lastMessageAt DESC, c.id DESC")
+    List<Conversation> findPageBefore(@Param("userId") Long userId,
+                                      @Param("beforeTimestamp") Instant beforeTimestamp,
+                                      @Param("beforeId") Long beforeId,
+                                      Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.unreadCount = 0 WHERE c.userId = :userId AND c.roomId = :roomId")
+    int resetUnreadCount(@Param("userId") Long userId, @Param("roomId") String roomId);
+}
@@ -0,0 +1,17 @@
+package com.example.chatverse.domain.repository;
+
+import java.time.Instant;
+
+/**
+ * Проекция результата полнотекстового поиска по сообщениям.
+ */
+public interface MessageSearchHit {
+    Long getId();
+    String getMessageId();
+    String getRoomId();
+    Long getSenderId();
+    Long getRecipientId();
+    Instant getTimestamp();
+    Float getRank();
+    String getSnippet(); // Фрагмент текста с подсветкой совпадений (<mark>...</mark>)
+}
@@ -2,8 +2,12 @@ package com.example.chatverse.domain.repository;
 
 import com.example.chatverse.domain.entity.RefreshToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +15,16 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     Optional<RefreshToken> findByToken(String token);
 
     void deleteByToken(String token);
+
+    /**
+     * Удаляет порцию истекших токенов (новые токены хранятся в Redis, таблица только убывает).
+     * Порции ограничены, чтобы не держать долгую транзакцию и блокировки на большой таблице.
+     * @return Количество удаленных строк.
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM refresh_tokens
+            WHERE id IN (SELECT id FROM refresh_tokens WHERE expiry_date < :now LIMIT :batchSize)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
 }
@@ -2,7 +2,11 @@ package com.example.chatverse.domain.repository;
 
 import com.example.chatverse.domain.entity.PlatformUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -10,6 +14,96 @@ import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<PlatformUser, Long> {
+
+    /**
+     * Кандидаты поиска по триграммам (запрос от трех символов): первые :candidates username с этим началом
+     * (по btree-индексу) и первые :candidates по id среди совпадений в любом месте. Частая триграмма
+     * («ann») совпадает с сотнями тысяч строк, поэтому ранжируются не все совпадения, а только эти
+     * кандидаты — совпадения с началом username в них попадают всегда.
+     * Ранг: точное совпадение username, затем начало username, начало имени, и внутри групп — триграммная похожесть.
+     * Строка поиска lower(username || ' ' || coalesce(name, '')) должна совпадать с выражением
+     * триграммного индекса из V7, иначе индекс не используется.
+     * Параметры: :query — запрос в нижнем регистре, :prefix и :contains — шаблоны LIKE с экранированием.
+     */
+    String SEARCH_TRGM_CTE = """
+            WITH prefix_hits AS (
+                SELECT u.id, u.username, u.name, u.avatar_hash, u.avatar_mini_hash
+                FROM platform_users u
+                WHERE lower(u.username) COLLATE "C" LIKE :prefix ESCAPE '\\' AND u.active AND u.id <> :userId
+                ORDER BY lower(u.username) COLLATE "C"
+                LIMIT :candidates
+            ), contains_hits AS (
+                SELECT u.id, u.username, u.name, u.avatar_hash, u.avatar_mini_hash
+                FROM platform_users u
+                WHERE lower(u.username || ' ' || coalesce(u.name, '')) LIKE :contains ESCAPE '\\' AND u.active AND u.id <> :userId
+                ORDER BY u.id
+                LIMIT :candidates
+            ), hits AS (
+                SELECT u.id, u.username, u.name, u.avatar_hash, u.avatar_mini_hash,
+                       CAST(CASE WHEN lower(u.username) = :query THEN 3
+                                 WHEN lower(u.username) LIKE :prefix ESCAPE '\\' THEN 2
+                                 WHEN lower(u.name) LIKE :prefix ESCAPE '\\' THEN 1
+                                 ELSE 0 END + similarity(lower(u.username || ' ' || coalesce(u.name, '')), :query)
+                       AS real) AS rank
+                FROM (SELECT * FROM prefix_hits UNION SELECT * FROM contains_hits) u
+            )
+            """;
+
+    /**
+     * Кандидаты для коротких запросов: первые :candidates username с этим началом (в порядке индекса).
+     */
+    String SEARCH_PREFIX_CTE = """
+            WITH hits AS (
+                SELECT c.id, c.username, c.name, c.avatar_hash, c.avatar_mini_hash,
+                       CAST(CASE WHEN lower(c.username) = :query THEN 3 ELSE 2 END AS real) AS rank
+                FROM (
+                    SELECT u.id, u.username, u.name, u.avatar_hash, u.avatar_mini_hash
+                    FROM platform_users u
+                    WHERE lower(u.username) COLLATE "C" LIKE :prefix ESCAPE '\\' AND u.active AND u.id <> :userId
+                    ORDER BY lower(u.username) COLLATE "C"
+                    LIMIT :candidates
+                ) c
+            )
+            """;
+
+    String SEARCH_SELECT = """
+            SELECT id AS "id", username AS "username", name AS "name",
+                   avatar_hash AS "avatarHash", avatar_mini_hash AS "avatarMiniHash", rank AS "rank"
+            FROM hits
+            """;
+
+    String SEARCH_ORDER = """
+            ORDER BY rank DESC, id ASC
+            LIMIT :limit
+            """;
+
+    // Курсор (rank, id) последнего результата предыдущей страницы
+    String SEARCH_AFTER = """
+            WHERE rank < :afterRank OR (rank = :afterRank AND id > :afterId)
+            """;
+
+    @Query(value = SEARCH_TRGM_CTE + SEARCH_SELECT + SEARCH_ORDER, nativeQuery = true)
+    List<UserSearchHit> searchFirstPage(@Param("userId") Long userId, @Param("query") String query,
+                                        @Param("prefix") String prefix, @Param("contains") String contains,
+                                        @Param("candidates") int candidates, @Param("limit") int limit);
+
+    @Query(value = SEARCH_TRGM_CTE + SEARCH_SELECT + SEARCH_AFTER + SEARCH_ORDER, nativeQuery = true)
+    List<UserSearchHit> searchPageAfter(@Param("userId") Long userId, @Param("query") String query,
+                                        @Param("prefix") String prefix, @Param("contains") String contains,
+                                        @Param("candidates") int candidates, @Param("afterRank") float afterRank,
+                                        @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query(value = SEARCH_PREFIX_CTE + SEARCH_SELECT + SEARCH_ORDER, nativeQuery = true)
+    List<UserSearchHit> searchByPrefixFirstPage(@Param("userId") Long userId, @Param("query") String query,
+                                                @Param("prefix") String prefix, @Param("candidates") int candidates,
+                                                @Param("limit") int limit);
+
+    @Query(value = SEARCH_PREFIX_CTE + SEARCH_SELECT + SEARCH_AFTER + SEARCH_ORDER, nativeQuery = true)
+    List<UserSearchHit> searchByPrefixPageAfter(@Param("userId") Long userId, @Param("query") String query,
+                                                @Param("prefix") String prefix, @Param("candidates") int candidates,
+                                                @Param("afterRank") float afterRank, @Param("afterId") Long afterId,
+                                                @Param("limit") int limit);
+
     Optional<PlatformUser> findByPhone(String phone);
     Optional<PlatformUser> findByUsername(String username);
 
@@ -28,7 +122,8 @@ public interface UserRepository extends JpaRepository<PlatformUser, Long> {
     // Получение списка пользователей по роли
     List<PlatformUser> findAllByRole(String role);
 
-    // Поиск пользователей, у которых имя пользователя содержит определённую строку
+    // Поиск пользователей, у которых имя пользователя содержит определённую строку.
+    // Полный просмотр таблицы (LIKE '%x%' с lower()); для поиска пользователей — searchFirstPage/searchPageAfter
     List<PlatformUser> findByUsernameContainingIgnoreCase(String usernameFragment);
 
     // Поиск пользователей, зарегистрированных после определённой даты
@@ -39,5 +134,20 @@ public interface UserRepository extends JpaRepository<PlatformUser, Long> {
 
     // Поиск всех неактивных пользователей
     List<PlatformUser> findByActiveFalse();
+
+    // Новый аватар: миниатюры прежнего сбрасываются до генерации новых
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlatformUser u SET u.avatarHash = :avatarHash, u.avatarBigHash = null, u.avatarMiniHash = null " +
+            "WHERE u.id = :userId")
+    int updateAvatar(@Param("userId") Long userId, @Param("avatarHash") String avatarHash);
+
+    // Миниатюры записываются, только если аватар не сменился, пока они генерировались
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlatformUser u SET u.avatarBigHash = :bigHash, u.avatarMiniHash = :miniHash " +
+            "WHERE u.id = :userId AND u.avatarHash = :avatarHash")
+    int updateAvatarThumbnails(@Param("userId") Long userId, @Param("avatarHash") String avatarHash,
+                               @Param("bigHash") String bigHash, @Param("miniHash") String miniHash);
 }
 
@@ -0,0 +1,13 @@
+package com.example.chatverse.domain.repository;
+
+/**
+ * Проекция результата поиска пользователей.
+ */
+public interface UserSearchHit {
+    Long getId();
+    String getUsername();
+    String getName();
+    String getAvatarHash();
+    String getAvatarMiniHash();
+    Float getRank(); // Совпадение с началом username выше совпадения в середине имени
+}
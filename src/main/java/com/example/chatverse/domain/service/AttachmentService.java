@@ -0,0 +1,158 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.response.AttachmentResponse;
+import com.example.chatverse.domain.entity.Attachment;
+import com.example.chatverse.domain.repository.AttachmentRepository;
+import com.example.chatverse.infrastructure.datasource.ShardedChatMessageStore;
+import com.example.chatverse.infrastructure.exception.ResourceNotFoundException;
+import com.example.chatverse.infrastructure.storage.ContentAddressedFileStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * Загрузка и выдача вложений. Содержимое пишется потоком в {@link ContentAddressedFileStore},
+ * в БД сохраняются только метаданные. Файл пишется до обращения к БД, а метаданные — короткими
+ * отдельными транзакциями, поэтому соединение не удерживается, пока клиент передает файл.
+ * Скачать вложение может тот, кто его загружал, участник переписки, где оно отправлено, а аватары — любой
+ * пользователь; для остальных вложение не существует (404).
+ */
+@Service
+@Slf4j
+public class AttachmentService {
+
+    public static final String DOWNLOAD_PATH = "/api/v1/attachments/";
+
+    /**
+     * Вложение, готовое к отдаче.
+     */
+    public record StoredAttachment(Attachment attachment, Path path) {
+    }
+
+    private final ContentAddressedFileStore fileStore;
+    private final AttachmentRepository attachmentRepository;
+    private final ShardedChatMessageStore chatMessageStore;
+    private final long maxUploadBytes;
+
+    public AttachmentService(ContentAddressedFileStore fileStore,
+                             AttachmentRepository attachmentRepository,
+                             ShardedChatMessageStore chatMessageStore,
+                             @Value("${app.storage.max-upload-size:10MB}") DataSize maxUploadSize) {
+        this.fileStore = fileStore;
+        this.attachmentRepository = attachmentRepository;
+        this.chatMessageStore = chatMessageStore;
+        this.maxUploadBytes = maxUploadSize.toBytes();
+    }
+
+    /**
+     * Сохраняет поток как вложение. Поток не закрывается.
+     * @param contentType MIME-тип от клиента; если не указан — application/octet-stream.
+     */
+    public AttachmentResponse upload(Long ownerId, String contentType, InputStream content) {
+        try {
+            return toResponse(register(ownerId, contentType, fileStore.store(content, maxUploadBytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store attachment", e);
+        }
+    }
+
+    /**
+     * Сохраняет небольшое содержимое из памяти (сгенерированные миниатюры).
+     */
+    public Attachment upload(Long ownerId, String contentType, byte[] content) throws IOException {
+        return register(ownerId, contentType, fileStore.store(content));
+    }
+
+    /**
+     * Метаданные вложения без обращения к файлу.
+     */
+    public Attachment describe(String id) {
+        return attachmentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Attachment not found: " + id));
+    }
+
+    /**
+     * Вложение для скачивания пользователем.
+     * @throws ResourceNotFoundException если вложения нет или у пользователя нет к нему доступа.
+     */
+    public StoredAttachment open(String id, Long userId) {
+        StoredAttachment stored = open(id);
+        if (!attachmentRepository.isOwner(id, userId) && !attachmentRepository.isAvatar(id)
+                && !chatMessageStore.isAttachmentSharedWith(id, userId)) {
+            log.debug("User {} has no access to attachment {}", userId, id);
+            throw new ResourceNotFoundException("Attachment not found: " + id);
+        }
+        return stored;
+    }
+
+    /**
+     * Метаданные вложения, которое пользователь загружал сам (одинаковое содержимое может загрузить
+     * несколько пользователей): отправить в сообщении чужой файл нельзя.
+     * @throws ResourceNotFoundException если вложения нет или пользователь его не загружал.
+     */
+    public Attachment describeOwned(String id, Long ownerId) {
+        if (ownerId == null || attachmentRepository.touchOwner(id, ownerId) == 0) {
+            throw new ResourceNotFoundException("Attachment not found: " + id);
+        }
+        return describe(id);
+    }
+
+    /**
+     * Вложение без проверки доступа — для внутренних задач (миниатюры).
+     */
+    public StoredAttachment open(String id) {
+        Path path = fileStore.find(id);
+        Attachment attachment = path != null ? attachmentRepository.findById(id).orElse(null) : null;
+        if (attachment == null) {
+            throw new ResourceNotFoundException("Attachment not found: " + id);
+        }
+        return new StoredAttachment(attachment, path);
+    }
+
+    public static String urlOf(String id) {
+        return id != null ? DOWNLOAD_PATH + id : null;
+    }
+
+    private Attachment register(Long ownerId, String contentType, ContentAddressedFileStore.StoredObject stored) {
+        // Одинаковое содержимое — одна запись; метаданные первой загрузки сохраняются, а загрузивший добавляется во владельцы
+        Attachment attachment = attachmentRepository.findById(stored.hash()).orElseGet(() -> {
+            log.debug("Stored attachment {} ({} bytes) for user {}", stored.hash(), stored.size(), ownerId);
+            return attachmentRepository.save(Attachment.builder()
+                    .hash(stored.hash())
+                    .contentType(normalize(contentType))
+                    .sizeBytes(stored.size())
+                    .ownerId(ownerId)
+                    .created(LocalDateTime.now())
+                    .build());
+        });
+        if (ownerId != null) {
+            attachmentRepository.addOwner(attachment.getHash(), ownerId);
+        }
+        return attachment;
+    }
+
+    private static AttachmentResponse toResponse(Attachment attachment) {
+        return AttachmentResponse.builder()
+                .id(attachment.getHash())
+                .contentType(attachment.getContentType())
+                .size(attachment.getSizeBytes())
+                .url(urlOf(attachment.getHash()))
+                .build();
+    }
+
+    private static String normalize(String contentType) {
+        try {
+            return contentType != null ? MediaType.parseMediaType(contentType).toString() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+}
@@ -7,15 +7,23 @@ import com.example.chatverse.domain.entity.PlatformUser;
 import com.example.chatverse.domain.entity.RefreshToken;
 import com.example.chatverse.domain.repository.RefreshTokenRepository;
 import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.infrastructure.auth.AttemptRateLimiter;
+import com.example.chatverse.infrastructure.auth.AuthCodeStore;
+import com.example.chatverse.infrastructure.auth.RefreshTokenStore;
+import com.example.chatverse.infrastructure.exception.TooManyRequestsException;
 import com.example.chatverse.infrastructure.security.JwtUtils;
+import com.example.chatverse.infrastructure.users.UserIdIndex;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -26,31 +34,53 @@ public class AuthService {
     private static final Logger log = LoggerFactory.getLogger(AuthService.class);
     private static final long ACCESS_TOKEN_EXPIRATION = 1000 * 60 * 15; // 15 минут
     private static final long REFRESH_TOKEN_EXPIRATION = 1000 * 60 * 60 * 24 * 7; // 7 дней
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
     private final JwtUtils jwtUtils;
+    private final AuthCodeStore authCodeStore;
+    private final AttemptRateLimiter attemptRateLimiter;
+    private final RefreshTokenStore refreshTokenStore;
+    private final UserIdIndex userIdIndex;
 
-    /**
-     *TODO Хранилище для кодов авторизации (заглушка)
-     */
-    private final Map<String, String> authCodes = new HashMap<>();
+    @Value("${app.auth.code-ttl:5m}")
+    private Duration authCodeTtl;
+
+    @Value("${app.auth.rate-limit.window:10m}")
+    private Duration rateLimitWindow;
+
+    @Value("${app.auth.rate-limit.send-attempts:3}")
+    private int maxSendAttempts;
 
-    public AuthService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository, JwtUtils jwtUtils) {
+    @Value("${app.auth.rate-limit.check-attempts:5}")
+    private int maxCheckAttempts;
+
+    public AuthService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository, JwtUtils jwtUtils,
+                       AuthCodeStore authCodeStore, AttemptRateLimiter attemptRateLimiter,
+                       RefreshTokenStore refreshTokenStore, UserIdIndex userIdIndex) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
         this.jwtUtils = jwtUtils;
+        this.authCodeStore = authCodeStore;
+        this.attemptRateLimiter = attemptRateLimiter;
+        this.refreshTokenStore = refreshTokenStore;
+        this.userIdIndex = userIdIndex;
     }
 
     /**
      * Отправка кода авторизации на указанный телефон
      */
     public boolean sendAuthCode(String phone) {
-        String authCode = String.format("%04d", new Random().nextInt(10000));
+        if (!attemptRateLimiter.tryAcquire("send:" + phone, maxSendAttempts, rateLimitWindow)) {
+            log.warn("Auth code send rate limit exceeded for phone: {}", phone);
+            throw new TooManyRequestsException("Too many auth code requests. Please try again later.");
+        }
+        String authCode = String.format("%04d", SECURE_RANDOM.nextInt(10000));
+        authCodeStore.save(phone, authCode, authCodeTtl);
 
         //TODO Логика отправки SMS (заглушка)
-        log.info("Sending auth code: {} to phone: {}", authCode, phone);
-
-        authCodes.put(phone, authCode);
+        log.info("Sending auth code to phone: {}", phone);
+        log.debug("Auth code for phone {}: {}", phone, authCode);
 
         return true;
     }
@@ -59,17 +89,18 @@ public class AuthService {
      * Проверка кода авторизации
      */
     public LoginResponse checkAuthCode(String phone, String code) {
-
-        if (!authCodes.containsKey(phone)) {
-            throw new IllegalArgumentException("No auth code sent for this phone");
+        // Ограничение на проверки не дает перебрать 4-значный код
+        if (!attemptRateLimiter.tryAcquire("check:" + phone, maxCheckAttempts, rateLimitWindow)) {
+            log.warn("Auth code check rate limit exceeded for phone: {}", phone);
+            throw new TooManyRequestsException("Too many auth code attempts. Please try again later.");
         }
 
-        String expectedCode = authCodes.get(phone);
-        if (!expectedCode.equals(code)) {
-            throw new IllegalArgumentException("Invalid auth code");
+        switch (authCodeStore.consume(phone, code)) {
+            case MISSING -> throw new IllegalArgumentException("No auth code sent for this phone");
+            case MISMATCH -> throw new IllegalArgumentException("Invalid auth code");
+            case MATCHED -> log.debug("Auth code accepted for phone: {}", phone);
         }
 
-        authCodes.remove(phone);
         boolean isUserExists = userRepository.existsByPhone(phone);
         PlatformUser user;
 
@@ -77,14 +108,13 @@ public class AuthService {
             user = userRepository.findByPhone(phone).get();
         } else {
             user = UserMapper.phoneToEntity(phone);
-            System.out.println("checkAuthCode user: " + user);
             user = userRepository.save(user);
-            System.out.println("checkAuthCode user save: " + user);
+            userIdIndex.onUserCreated(user.getId());
+            log.info("Created user {} on first login", user.getId());
         }
-        String accessToken = generateToken(user.getId().toString(), ACCESS_TOKEN_EXPIRATION);
-        System.out.println("accessToken: " + accessToken);
+        // Токены в лог не пишем
+        String accessToken = generateToken(user.getId().toString(), user.getRole(), ACCESS_TOKEN_EXPIRATION);
         String refreshToken = generateRefreshToken(user.getId());
-        System.out.println("refreshToken" + refreshToken);
 
         return LoginResponse.builder()
                 .refreshToken(refreshToken)
@@ -98,7 +128,9 @@ public class AuthService {
      * Генерация токенов для пользователя
      */
     public TokenResponse generateTokens(Long userId) {
-        String accessToken = generateToken(userId.toString(), ACCESS_TOKEN_EXPIRATION);
+        // Роль могла измениться с момента входа, поэтому берем актуальную
+        String role = userRepository.findById(userId).map(PlatformUser::getRole).orElse(null);
+        String accessToken = generateToken(userId.toString(), role, ACCESS_TOKEN_EXPIRATION);
         String refreshToken = generateRefreshToken(userId);
 
         return TokenResponse.builder()
@@ -109,43 +141,49 @@ public class AuthService {
     }
 
     /**
-     * Обновление токенов по refresh токену
+     * Обновление токенов по refresh токену. Токен одноразовый: взамен выдается новый (ротация).
      */
     public TokenResponse refreshToken(String token) {
+        Long userId = refreshTokenStore.consume(token)
+                .orElseGet(() -> consumeLegacyRefreshToken(token));
+        return generateTokens(userId);
+    }
+
+    /**
+     * Токены, выданные до перехода на RefreshTokenStore, еще лежат в таблице refresh_tokens.
+     * Принимаем их один раз (со ротацией в новое хранилище), пока они не истекут.
+     */
+    private Long consumeLegacyRefreshToken(String token) {
         RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid refresh token"));
+        refreshTokenRepository.deleteByToken(token);
 
         if (refreshToken.getExpiryDate().isBefore(LocalDateTime.now())) {
-            refreshTokenRepository.deleteByToken(token);
             throw new IllegalArgumentException("Refresh token expired");
         }
-
-        return generateTokens(refreshToken.getUserId());
+        return refreshToken.getUserId();
     }
 
     /**
      * Генерация нового refresh токена
      */
     private String generateRefreshToken(Long userId) {
-        String token = UUID.randomUUID().toString();
-        RefreshToken refreshToken = RefreshToken.builder()
-                .token(token)
-                .userId(userId)
-                .expiryDate(LocalDateTime.now().plusSeconds(REFRESH_TOKEN_EXPIRATION / 1000))
-                .build();
-        refreshTokenRepository.save(refreshToken);
+        byte[] bytes = new byte[32];
+        SECURE_RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenStore.save(token, userId, Duration.ofMillis(REFRESH_TOKEN_EXPIRATION));
         return token;
     }
 
     /**
      * Генерация JWT
      */
-    private String generateToken(String userId, long expirationTime) {
+    private String generateToken(String userId, String role, long expirationTime) {
         try {
-            System.out.println("generateToken userId: " + userId + " expirationTime: " + expirationTime);
-            return jwtUtils.generateToken(userId, expirationTime);
+            log.debug("Generating token for userId: {} (expiration {} ms)", userId, expirationTime);
+            return jwtUtils.generateToken(userId, role, expirationTime);
         } catch (Exception e) {
-            System.err.println("Error generating token: " + e.getMessage());
+            log.error("Error generating token for userId {}: {}", userId, e.getMessage());
             throw new RuntimeException("Error generating token", e);
         }
     }
@@ -0,0 +1,212 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.response.Avatars;
+import com.example.chatverse.domain.entity.Attachment;
+import com.example.chatverse.domain.entity.PlatformUser;
+import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.infrastructure.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Аватары пользователей. Исходное изображение сохраняется как вложение сразу, миниатюры
+ * (bigAvatar, miniAvatar) генерируются в фоне на ограниченном пуле. Пока миниатюр нет,
+ * вместо них отдается исходное изображение. Файл пишется в хранилище без открытой транзакции:
+ * загрузка идет со скоростью клиента и не должна держать соединение из пула. Замененные аватары
+ * удаляет AttachmentCleanupJob.
+ */
+@Service
+@Slf4j
+public class AvatarService {
+
+    private static final String DEFAULT_AVATAR = "default-avatar.png";
+    private static final String DEFAULT_BIG_AVATAR = "default-big-avatar.png";
+    private static final String DEFAULT_MINI_AVATAR = "default-mini-avatar.png";
+    private static final String USERS_CACHE = "users";
+    private static final long MAX_SOURCE_PIXELS = 40_000_000L;
+
+    private final AttachmentService attachmentService;
+    private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+    private final int bigSize;
+    private final int miniSize;
+    private final ThreadPoolExecutor thumbnailExecutor;
+
+    public AvatarService(AttachmentService attachmentService,
+                         UserRepository userRepository,
+                         CacheManager cacheManager,
+                         @Value("${app.storage.avatar.big-size:512}") int bigSize,
+                         @Value("${app.storage.avatar.mini-size:64}") int miniSize,
+                         @Value("${app.storage.avatar.thumbnail-workers:2}") int workers,
+                         @Value("${app.storage.avatar.thumbnail-queue-capacity:100}") int queueCapacity) {
+        this.attachmentService = attachmentService;
+        this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+        this.bigSize = bigSize;
+        this.miniSize = miniSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.thumbnailExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "avatar-thumbnail-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Сохраняет новый аватар пользователя и ставит генерацию миниатюр в очередь.
+     * @param contentType MIME-тип изображения (image/*).
+     * @param content Поток изображения; не закрывается.
+     */
+    public Avatars updateAvatar(Long userId, String contentType, InputStream content) {
+        if (contentType == null || !MediaType.parseMediaType(contentType).getType().equals("image")) {
+            throw new IllegalArgumentException("Avatar must be an image");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
+        }
+        String avatarHash = attachmentService.upload(userId, contentType, content).getId();
+
+        if (userRepository.updateAvatar(userId, avatarHash) == 0) {
+            // Пользователя удалили, пока шла загрузка; файл уберет очистка вложений
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
+        }
+        evictUser(userId);
+        log.info("Avatar updated for userId: {}", userId);
+
+        // Обновление уже закоммичено, миниатюры увидят новый avatar_hash
+        scheduleThumbnails(userId, avatarHash);
+        String avatar = AttachmentService.urlOf(avatarHash);
+        return Avatars.builder()
+                .avatar(avatar)
+                .bigAvatar(avatar)
+                .miniAvatar(avatar)
+                .build();
+    }
+
+    /**
+     * Ссылки на аватары пользователя; отсутствующие миниатюры заменяются исходным изображением.
+     */
+    public Avatars avatarsOf(PlatformUser user) {
+        if (user.getAvatarHash() == null) {
+            return Avatars.builder()
+                    .avatar(DEFAULT_AVATAR)
+                    .bigAvatar(DEFAULT_BIG_AVATAR)
+                    .miniAvatar(DEFAULT_MINI_AVATAR)
+                    .build();
+        }
+        String avatar = AttachmentService.urlOf(user.getAvatarHash());
+        return Avatars.builder()
+                .avatar(avatar)
+                .bigAvatar(user.getAvatarBigHash() != null ? AttachmentService.urlOf(user.getAvatarBigHash()) : avatar)
+                .miniAvatar(user.getAvatarMiniHash() != null ? AttachmentService.urlOf(user.getAvatarMiniHash()) : avatar)
+                .build();
+    }
+
+    private void scheduleThumbnails(Long userId, String avatarHash) {
+        try {
+            thumbnailExecutor.execute(() -> generateThumbnails(userId, avatarHash));
+        } catch (RejectedExecutionException e) {
+            // Очередь переполнена: пользователь останется с исходным изображением вместо миниатюр
+            log.warn("Thumbnail queue is full, skipping thumbnails for avatar {} of user {}", avatarHash, userId);
+        }
+    }
+
+    private void generateThumbnails(Long userId, String avatarHash) {
+        try {
+            BufferedImage source = readImage(attachmentService.open(avatarHash).path());
+            if (source == null) {
+                log.warn("Avatar {} of user {} is not a readable image, thumbnails skipped", avatarHash, userId);
+                return;
+            }
+            Attachment big = attachmentService.upload(userId, MediaType.IMAGE_PNG_VALUE, scale(source, bigSize));
+            Attachment mini = attachmentService.upload(userId, MediaType.IMAGE_PNG_VALUE, scale(source, miniSize));
+            if (userRepository.updateAvatarThumbnails(userId, avatarHash, big.getHash(), mini.getHash()) > 0) {
+                evictUser(userId);
+                log.debug("Thumbnails generated for avatar {} of user {}", avatarHash, userId);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to generate thumbnails for avatar {} of user {}: {}", avatarHash, userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Декодирует изображение, предварительно проверив размеры по заголовку: маленький файл
+     * с огромными размерами не должен занять всю память при декодировании.
+     */
+    private static BufferedImage readImage(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    log.warn("Avatar image {} is too large to decode: {}x{}", path.getFileName(), reader.getWidth(0), reader.getHeight(0));
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Вписывает изображение в квадрат size x size с сохранением пропорций; меньшие не увеличиваются.
+     */
+    private static byte[] scale(BufferedImage source, int size) throws IOException {
+        double ratio = Math.min(1.0, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(target, "png", out);
+        return out.toByteArray();
+    }
+
+    private void evictUser(Long userId) {
+        Cache cache = cacheManager.getCache(USERS_CACHE);
+        if (cache != null) {
+            cache.evict(userId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailExecutor.shutdownNow();
+    }
+}
@@ -1,22 +1,32 @@
 package com.example.chatverse.domain.service;
 
+import com.example.chatverse.application.dto.conversation.ConversationPageResponseDto;
 import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.MessageSearchPageResponseDto;
+import com.example.chatverse.application.dto.message.MessageSearchResultDto;
 import com.example.chatverse.application.dto.message.SendMessageRequestDto;
 import com.example.chatverse.application.mapper.ChatMessageMapper;
 import com.example.chatverse.application.service.kafka.MessageProducerService;
 import com.example.chatverse.domain.entity.ChatMessageEntity;
-import com.example.chatverse.domain.repository.ChatMessageRepository;
-import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.domain.repository.MessageSearchHit;
+import com.example.chatverse.infrastructure.contacts.ContactGraph;
+import com.example.chatverse.infrastructure.datasource.ReadYourWritesTracker;
+import com.example.chatverse.infrastructure.datasource.ShardedChatMessageStore;
+import com.example.chatverse.infrastructure.exception.TooManyRequestsException;
 import com.example.chatverse.infrastructure.exception.UserNotFoundException;
+import com.example.chatverse.infrastructure.ratelimit.MessageRateLimiter;
+import com.example.chatverse.infrastructure.users.UserIdIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -28,10 +38,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatService {
 
+    private static final int MAX_SEARCH_QUERY_LENGTH = 200;
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
     private final MessageProducerService messageProducerService;
-    private final ChatMessageRepository chatMessageRepository;
-    private final UserRepository userRepository;
+    private final ShardedChatMessageStore chatMessageStore;
     private final ChatMessageMapper chatMessageMapper;
+    private final ConversationService conversationService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final MessageRateLimiter messageRateLimiter;
+    private final MessagePayloadService messagePayloadService;
+    private final UserIdIndex userIdIndex;
+    private final ContactGraph contactGraph;
+
+    // Сообщения старше срока хранения уже отсоединены от chat_messages (см. ChatMessagePartitionManager)
+    @Value("${app.chat.partitions.retention-months:12}")
+    private int retentionMonths;
 
     /**
      * Извлекает ID отправителя из объекта Authentication.
@@ -79,14 +101,25 @@ public class ChatService {
             return;
         }
 
-        log.info("Sending WebSocket-originated message via MessageProducerService: messageId={}, roomId={}, senderId={}",
+        // Проверка по индексу ID в памяти: неизвестный получатель не попадает в Kafka
+        if (chatMessage.getRecipientId() != null && !userIdIndex.exists(chatMessage.getRecipientId())) {
+            throw new UserNotFoundException("Recipient user with ID " + chatMessage.getRecipientId() + " not found.");
+        }
+        if (chatMessage.getRecipientId() != null) {
+            checkNotBlocked(chatMessage.getSenderId(), chatMessage.getRecipientId());
+        }
+
+        checkRoomRateLimit(chatMessage.getRoomId());
+
+        log.debug("Sending WebSocket-originated message via MessageProducerService: messageId={}, roomId={}, senderId={}",
                 chatMessage.getMessageId(), chatMessage.getRoomId(), chatMessage.getSenderId());
         messageProducerService.sendMessage(chatMessage);
+        readYourWritesTracker.recordWrite(String.valueOf(chatMessage.getSenderId()));
     }
 
     /**
      * Подготавливает и отправляет сообщение через MessageProducerService.
-     * @param requestDto DTO с данными для нового сообщения (ожидается recipientId и content).
+     * @param requestDto DTO с данными для нового сообщения (ожидается recipientId и content или вложение).
      * @param authentication Информация об аутентифицированном пользователе.
      */
     public void sendMessage(SendMessageRequestDto requestDto, Authentication authentication) {
@@ -97,12 +130,14 @@ public class ChatService {
             log.error("Recipient ID is null for message content: {}", requestDto.getContent());
             throw new IllegalArgumentException("Recipient ID cannot be null for a private message.");
         }
-        if (!userRepository.existsById(recipientId)) {
+        if (!userIdIndex.exists(recipientId)) {
             throw new UserNotFoundException("Recipient user with ID " + recipientId + " not found.");
         }
+        checkNotBlocked(senderId, recipientId);
 
         // Генерируем ID комнаты
         String roomId = generateRoomId(senderId, recipientId);
+        checkRoomRateLimit(roomId);
 
         // Создаем полное ChatMessage DTO для отправки в Kafka
         ChatMessage kafkaMessage = ChatMessage.builder()
@@ -110,22 +145,50 @@ public class ChatService {
                 .senderId(senderId)
                 .recipientId(recipientId) // recipientId здесь нужен для информации и для WebSocket, если он будет его использовать
                 .roomId(roomId)           // Устанавливаем сгенерированный roomId
-                .content(requestDto.getContent())
                 .timestamp(Instant.now())
                 .build();
+        // Тип, текст и ссылка на вложение; байты вложений в Kafka не попадают
+        messagePayloadService.applyPayload(kafkaMessage, requestDto);
 
-        log.info("Prepared message, sending via MessageProducerService: {}", kafkaMessage);
+        log.atDebug()
+                .addKeyValue("messageId", kafkaMessage.getMessageId())
+                .addKeyValue("roomId", roomId)
+                .addKeyValue("senderId", senderId)
+                .log("Prepared message, sending via MessageProducerService");
         messageProducerService.sendMessage(kafkaMessage); // Отправляем полное DTO
+        // Сообщение запишет consumer, но ближайшие чтения отправителя (история, список чатов) пойдут в primary
+        readYourWritesTracker.recordWrite(String.valueOf(senderId));
+    }
+
+    /**
+     * Блокировка в любую сторону запрещает сообщения; проверка идет по графу контактов в памяти.
+     */
+    private void checkNotBlocked(Long senderId, Long recipientId) {
+        // Обе проверки читают смежность отправителя, она обычно уже в памяти
+        if (contactGraph.isBlockedEitherWay(senderId, recipientId)) {
+            throw new AccessDeniedException(contactGraph.hasBlocked(senderId, recipientId)
+                    ? "You have blocked this user. Unblock to send messages."
+                    : "This user has blocked you.");
+        }
+    }
+
+    /**
+     * Лимит на комнату ограничивает поток в один диалог, даже если его собеседники укладываются в свои лимиты.
+     */
+    private void checkRoomRateLimit(String roomId) {
+        if (!messageRateLimiter.tryAcquireForRoom(roomId)) {
+            throw new TooManyRequestsException("Message rate limit exceeded for this chat. Please slow down.");
+        }
     }
 
     /**
      * Получает историю сообщений для комнаты.
      * @param roomId ID комнаты чата.
+     * @param since Нижняя граница времени; если null, берется начало срока хранения сообщений.
      * @param authentication Информация об аутентифицированном пользователе.
      * @return Список DTO сообщений.
      */
-    @Transactional(readOnly = true)
-    public List<ChatMessage> getMessageHistory(String roomId, Authentication authentication) {
+    public List<ChatMessage> getMessageHistory(String roomId, Instant since, Authentication authentication) {
         Long currentUserId = extractSenderIdFromAuth(authentication);
 
         // Проверка доступа к комнате
@@ -143,11 +206,85 @@ public class ChatService {
             throw new AccessDeniedException("User does not have access to this chat room.");
         }
 
-        List<ChatMessageEntity> messageEntities = chatMessageRepository.findByRoomIdOrderByTimestampAsc(roomId);
-        log.info("Retrieved {} messages for room ID '{}' for user {}", messageEntities.size(), roomId, currentUserId);
+        Instant from = since != null ? since : retentionWindowStart();
+        List<ChatMessageEntity> messageEntities = chatMessageStore.findHistory(roomId, from);
+        log.debug("Retrieved {} messages for room ID '{}' for user {}", messageEntities.size(), roomId, currentUserId);
         return chatMessageMapper.toDtoList(messageEntities);
     }
 
+    /**
+     * Полнотекстовый поиск по сообщениям всех комнат текущего пользователя.
+     * @param query Поисковый запрос.
+     * @param afterRank Курсор: релевантность последнего результата предыдущей страницы (null для первой страницы).
+     * @param afterMessageId Курсор: messageId последнего результата предыдущей страницы.
+     * @param limit Размер страницы.
+     * @param authentication Информация об аутентифицированном пользователе.
+     * @return Страница результатов по убыванию релевантности.
+     */
+    public MessageSearchPageResponseDto searchMessages(String query, Float afterRank, String afterMessageId, int limit,
+                                                       Authentication authentication) {
+        Long currentUserId = extractSenderIdFromAuth(authentication);
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty.");
+        }
+        if (query.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query is too long (max " + MAX_SEARCH_QUERY_LENGTH + " characters).");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+
+        // Запрашиваем на один элемент больше, чтобы понять, есть ли следующая страница
+        List<MessageSearchHit> hits = chatMessageStore.search(currentUserId, query, afterRank, afterMessageId, pageSize + 1);
+
+        boolean hasMore = hits.size() > pageSize;
+        List<MessageSearchHit> page = hasMore ? hits.subList(0, pageSize) : hits;
+        List<MessageSearchResultDto> items = page.stream()
+                .map(hit -> MessageSearchResultDto.builder()
+                        .messageId(hit.getMessageId())
+                        .roomId(hit.getRoomId())
+                        .senderId(hit.getSenderId())
+                        .recipientId(hit.getRecipientId())
+                        .timestamp(hit.getTimestamp())
+                        .snippet(hit.getSnippet())
+                        .rank(hit.getRank())
+                        .build())
+                .collect(Collectors.toList());
+        log.debug("Search by user {} returned {} hits (hasMore={})", currentUserId, items.size(), hasMore);
+
+        MessageSearchPageResponseDto.MessageSearchPageResponseDtoBuilder response = MessageSearchPageResponseDto.builder().items(items);
+        if (hasMore) {
+            MessageSearchHit last = page.get(page.size() - 1);
+            response.nextAfterRank(last.getRank()).nextAfterMessageId(last.getMessageId());
+        }
+        return response.build();
+    }
+
+    /**
+     * Получает список чатов текущего пользователя с последним сообщением и счетчиком непрочитанных.
+     * @param beforeTimestamp Курсор пагинации (null для первой страницы).
+     * @param beforeId Курсор пагинации (null для первой страницы).
+     * @param limit Размер страницы.
+     * @param authentication Информация об аутентифицированном пользователе.
+     * @return Страница чатов.
+     */
+    public ConversationPageResponseDto getConversations(Instant beforeTimestamp, Long beforeId, int limit, Authentication authentication) {
+        Long currentUserId = extractSenderIdFromAuth(authentication);
+        return conversationService.getConversations(currentUserId, beforeTimestamp, beforeId, limit);
+    }
+
+    /**
+     * Отмечает все сообщения комнаты как прочитанные текущим пользователем.
+     * @param roomId ID комнаты чата.
+     * @param authentication Информация об аутентифицированном пользователе.
+     */
+    public void markRoomRead(String roomId, Authentication authentication) {
+        Long currentUserId = extractSenderIdFromAuth(authentication);
+        conversationService.markRoomRead(currentUserId, roomId);
+    }
+
+    private Instant retentionWindowStart() {
+        return YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
     /**
      * Генерирует уникальный и консистентный ID комнаты для двух пользователей.
      * @param userId1 ID первого пользователя.
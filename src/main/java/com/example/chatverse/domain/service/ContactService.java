@@ -2,26 +2,34 @@ package com.example.chatverse.domain.service;
 
 import com.example.chatverse.application.dto.contact.ContactResponseDto;
 import com.example.chatverse.application.dto.contact.PendingRequestResponseDto;
+import com.example.chatverse.application.dto.contact.UserSearchPageResponseDto;
+import com.example.chatverse.application.dto.contact.UserSearchResultDto;
 import com.example.chatverse.application.mapper.ContactMapper;
 import com.example.chatverse.domain.entity.Contact;
 import com.example.chatverse.domain.entity.ContactStatus;
 import com.example.chatverse.domain.entity.PlatformUser;
 import com.example.chatverse.domain.repository.ContactRepository;
 import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.domain.repository.UserSearchHit;
+import com.example.chatverse.infrastructure.contacts.ContactGraph;
 import com.example.chatverse.infrastructure.exception.ContactLogicException;
 import com.example.chatverse.infrastructure.exception.ContactNotFoundException;
 import com.example.chatverse.infrastructure.exception.UserNotFoundException;
+import com.example.chatverse.infrastructure.users.UserIdIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -30,11 +38,21 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ContactService {
 
+    private static final int MAX_USER_SEARCH_QUERY_LENGTH = 100;
+    private static final int MAX_USER_SEARCH_PAGE_SIZE = 50;
+    // Триграммный индекс помогает начиная с трех символов
+    private static final int TRIGRAM_MIN_QUERY_LENGTH = 3;
+    // Сколько кандидатов ранжируется: ограничивает время запроса для частых фрагментов, но и глубину листания
+    private static final int SEARCH_CANDIDATES = 1000;
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
     private final UserRepository userRepository;
     private final ContactRepository contactRepository;
     private final ContactMapper contactMapper;
     private final UserService userService; // Для получения статуса онлайн
     private final SimpMessagingTemplate messagingTemplate; // Для уведомлений
+    private final UserIdIndex userIdIndex;
+    private final ContactGraph contactGraph;
 
     private PlatformUser getUserFromAuth(Authentication authentication) {
         Long userId = Long.parseLong(authentication.getName());
@@ -42,9 +60,47 @@ public class ContactService {
                 .orElseThrow(() -> new UserNotFoundException("Authenticated user not found with ID: " + userId));
     }
 
+    /**
+     * Существование проверяется по {@link UserIdIndex}, а вместо загрузки строки берется ссылка:
+     * сервису нужны только ID и связи контакта, поля пользователя подгрузятся при первом обращении.
+     * В пределах транзакции ссылка — тот же экземпляр, что и у загруженных контактов, поэтому equals работает.
+     */
     private PlatformUser findUserById(Long userId) {
-        return userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException("User not found with ID: " + userId));
+        requireUserExists(userId);
+        return userRepository.getReferenceById(userId);
+    }
+
+    /**
+     * Сохраняет контакт с немедленным flush, чтобы нарушение внешнего ключа проявилось здесь, а не при коммите.
+     * Пользователь, удаленный на другом узле, остается в {@link UserIdIndex} до перестройки карты:
+     * такой запрос отвечается 404, а ID убираются из карты и при следующей проверке сверяются с БД.
+     */
+    private void saveContact(Contact contact, Long firstUserId, Long secondUserId) {
+        try {
+            contactRepository.saveAndFlush(contact);
+        } catch (DataIntegrityViolationException e) {
+            if (!isForeignKeyViolation(e)) {
+                throw e;
+            }
+            userIdIndex.evict(firstUserId);
+            userIdIndex.evict(secondUserId);
+            throw new UserNotFoundException("User not found with ID: " + firstUserId + " or " + secondUserId);
+        }
+    }
+
+    private static boolean isForeignKeyViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && FOREIGN_KEY_VIOLATION.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void requireUserExists(Long userId) {
+        if (!userIdIndex.exists(userId)) {
+            throw new UserNotFoundException("User not found with ID: " + userId);
+        }
     }
 
     @Transactional
@@ -52,6 +108,16 @@ public class ContactService {
         if (requesterId.equals(targetUserId)) {
             throw new ContactLogicException("Cannot send a contact request to yourself.");
         }
+        // Частые отказы отвечаются по графу контактов, без запросов в БД
+        if (contactGraph.areContacts(requesterId, targetUserId)) {
+            throw new ContactLogicException("You are already contacts.");
+        }
+        if (contactGraph.hasBlocked(requesterId, targetUserId)) {
+            throw new AccessDeniedException("You have blocked this user. Unblock to send a request.");
+        }
+        if (contactGraph.isBlockedEitherWay(requesterId, targetUserId)) {
+            throw new AccessDeniedException("This user has blocked you.");
+        }
 
         PlatformUser requester = findUserById(requesterId);
         PlatformUser targetUser = findUserById(targetUserId);
@@ -59,7 +125,7 @@ public class ContactService {
         PlatformUser userOne = requester.getId() < targetUser.getId() ? requester : targetUser;
         PlatformUser userTwo = requester.getId() < targetUser.getId() ? targetUser : requester;
 
-        Optional<Contact> existingContactOpt = contactRepository.findContactBetweenUsers(userOne, userTwo);
+        Optional<Contact> existingContactOpt = contactRepository.findContactBetweenUsers(requesterId, targetUserId);
 
         if (existingContactOpt.isPresent()) {
             Contact existingContact = existingContactOpt.get();
@@ -85,7 +151,8 @@ public class ContactService {
                 existingContact.setActionUser(requester);
                 existingContact.setUserOne(userOne); // Убедимся, что userOne/userTwo правильные
                 existingContact.setUserTwo(userTwo);
-                contactRepository.save(existingContact);
+                saveContact(existingContact, requesterId, targetUserId);
+                contactGraph.onContactChanged(requesterId, targetUserId);
                 log.info("Re-sent contact request from user {} to user {}", requesterId, targetUserId);
                 // TODO: Send WebSocket notification to targetUser
                 return;
@@ -98,7 +165,8 @@ public class ContactService {
                 .actionUser(requester)
                 .status(ContactStatus.PENDING)
                 .build();
-        contactRepository.save(newContactRequest);
+        saveContact(newContactRequest, requesterId, targetUserId);
+        contactGraph.onContactChanged(requesterId, targetUserId);
         log.info("Contact request sent from user {} to user {}", requesterId, targetUserId);
 
         // TODO: Отправить WebSocket уведомление targetUser о новом запросе
@@ -114,12 +182,9 @@ public class ContactService {
         }
 
         PlatformUser currentUser = findUserById(currentUserId);
-        PlatformUser otherUser = findUserById(otherUserId);
-
-        PlatformUser userOne = currentUser.getId() < otherUser.getId() ? currentUser : otherUser;
-        PlatformUser userTwo = currentUser.getId() < otherUser.getId() ? otherUser : currentUser;
+        requireUserExists(otherUserId);
 
-        Contact contactRequest = contactRepository.findContactBetweenUsers(userOne, userTwo)
+        Contact contactRequest = contactRepository.findContactBetweenUsers(currentUserId, otherUserId)
                 .orElseThrow(() -> new ContactNotFoundException("Contact request not found between users " + currentUserId + " and " + otherUserId + "."));
 
         if (contactRequest.getStatus() != ContactStatus.PENDING) {
@@ -131,7 +196,8 @@ public class ContactService {
 
         contactRequest.setStatus(newStatus);
         contactRequest.setActionUser(currentUser);
-        contactRepository.save(contactRequest);
+        saveContact(contactRequest, currentUserId, otherUserId);
+        contactGraph.onContactChanged(currentUserId, otherUserId);
         log.info("User {} {} contact request from user {}. New status: {}", currentUserId, newStatus.name().toLowerCase(), otherUserId, newStatus);
 
         // TODO: Отправить WebSocket уведомление otherUser (инициатору запроса) об изменении статуса
@@ -140,13 +206,10 @@ public class ContactService {
 
     @Transactional
     public void removeContact(Long currentUserId, Long contactToRemoveId) {
-        PlatformUser currentUser = findUserById(currentUserId);
-        PlatformUser contactToRemove = findUserById(contactToRemoveId);
-
-        PlatformUser userOne = currentUser.getId() < contactToRemove.getId() ? currentUser : contactToRemove;
-        PlatformUser userTwo = currentUser.getId() < contactToRemove.getId() ? contactToRemove : currentUser;
+        requireUserExists(currentUserId);
+        requireUserExists(contactToRemoveId);
 
-        Contact contact = contactRepository.findContactBetweenUsers(userOne, userTwo)
+        Contact contact = contactRepository.findContactBetweenUsers(currentUserId, contactToRemoveId)
                 .orElseThrow(() -> new ContactNotFoundException("Contact not found between users " + currentUserId + " and " + contactToRemoveId + " to remove."));
 
         if (contact.getStatus() != ContactStatus.ACCEPTED) {
@@ -154,21 +217,22 @@ public class ContactService {
         }
 
         contactRepository.delete(contact);
+        contactGraph.onContactChanged(currentUserId, contactToRemoveId);
         log.info("User {} removed user {} from contacts.", currentUserId, contactToRemoveId);
         // TODO: Отправить WebSocket уведомление contactToRemoveId
     }
 
     @Transactional(readOnly = true)
     public List<ContactResponseDto> getContacts(Long userId) {
-        PlatformUser currentUser = findUserById(userId);
-        List<Contact> acceptedContacts = contactRepository.findAllByUserAndStatus(currentUser, ContactStatus.ACCEPTED);
+        requireUserExists(userId);
+        List<Contact> acceptedContacts = contactRepository.findAllByUserAndStatus(userId, ContactStatus.ACCEPTED);
 
         if (acceptedContacts.isEmpty()) {
             return Collections.emptyList();
         }
 
         return acceptedContacts.stream().map(contact -> {
-            PlatformUser otherUser = contact.getUserOne().equals(currentUser) ? contact.getUserTwo() : contact.getUserOne();
+            PlatformUser otherUser = contact.getUserOne().getId().equals(userId) ? contact.getUserTwo() : contact.getUserOne();
             boolean isOnline = userService.isUserOnline(otherUser.getId());
             LocalDateTime lastSeen = otherUser.isOnline() ? null : otherUser.getLastLogin();
 
@@ -178,13 +242,13 @@ public class ContactService {
 
     @Transactional(readOnly = true)
     public List<PendingRequestResponseDto> getPendingRequests(Long userId, boolean incoming) {
-        PlatformUser currentUser = findUserById(userId);
+        requireUserExists(userId);
         List<Contact> pendingContacts;
 
         if (incoming) {
-            pendingContacts = contactRepository.findPendingIncomingRequestsForUser(currentUser, ContactStatus.PENDING);
+            pendingContacts = contactRepository.findPendingIncomingRequestsForUser(userId);
         } else {
-            pendingContacts = contactRepository.findAllByActionUserAndStatus(currentUser, ContactStatus.PENDING);
+            pendingContacts = contactRepository.findPendingOutgoingRequestsForUser(userId);
         }
 
         if (pendingContacts.isEmpty()) {
@@ -198,7 +262,7 @@ public class ContactService {
                 otherUser = contact.getActionUser();
                 direction = "INCOMING";
             } else {
-                otherUser = contact.getUserOne().equals(currentUser) ? contact.getUserTwo() : contact.getUserOne();
+                otherUser = contact.getUserOne().getId().equals(userId) ? contact.getUserTwo() : contact.getUserOne();
                 direction = "OUTGOING";
             }
             PendingRequestResponseDto dto = contactMapper.toPendingRequestResponseDto(contact, otherUser);
@@ -212,5 +276,66 @@ public class ContactService {
     // public void unblockUser(Long currentUserId, Long userToUnblockId) { ... }
     // public List<ContactResponseDto> getBlockedUsers(Long currentUserId) { ... }
 
-    // TODO: Метод для поиска пользователей (searchUsers)
+    /**
+     * Поиск пользователей по username и имени для подсказок при вводе.
+     * Запрос от трех символов ищется по триграммному индексу (совпадение в любом месте),
+     * более короткий — только по началу username. Ранжируется не больше SEARCH_CANDIDATES кандидатов
+     * каждого вида, поэтому для частых фрагментов листание заканчивается раньше, чем совпадения.
+     * @param afterRank Курсор: rank последнего результата предыдущей страницы (null для первой страницы).
+     * @param afterId Курсор: ID последнего результата предыдущей страницы.
+     * @return Страница результатов по убыванию ранга.
+     */
+    @Transactional(readOnly = true)
+    public UserSearchPageResponseDto searchUsers(Long currentUserId, String query, Float afterRank, Long afterId, int limit) {
+        String normalized = query != null ? query.strip().toLowerCase(Locale.ROOT) : "";
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Search query cannot be empty.");
+        }
+        if (normalized.length() > MAX_USER_SEARCH_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query is too long (max " + MAX_USER_SEARCH_QUERY_LENGTH + " characters).");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_USER_SEARCH_PAGE_SIZE));
+        String escaped = escapeLike(normalized);
+        String prefix = escaped + "%";
+        boolean firstPage = afterRank == null || afterId == null;
+
+        // Запрашиваем на один элемент больше, чтобы понять, есть ли следующая страница
+        List<UserSearchHit> hits;
+        if (normalized.length() >= TRIGRAM_MIN_QUERY_LENGTH) {
+            String contains = "%" + escaped + "%";
+            hits = firstPage
+                    ? userRepository.searchFirstPage(currentUserId, normalized, prefix, contains, SEARCH_CANDIDATES, pageSize + 1)
+                    : userRepository.searchPageAfter(currentUserId, normalized, prefix, contains, SEARCH_CANDIDATES,
+                            afterRank, afterId, pageSize + 1);
+        } else {
+            hits = firstPage
+                    ? userRepository.searchByPrefixFirstPage(currentUserId, normalized, prefix, SEARCH_CANDIDATES, pageSize + 1)
+                    : userRepository.searchByPrefixPageAfter(currentUserId, normalized, prefix, SEARCH_CANDIDATES,
+                            afterRank, afterId, pageSize + 1);
+        }
+
+        boolean hasMore = hits.size() > pageSize;
+        List<UserSearchHit> page = hasMore ? hits.subList(0, pageSize) : hits;
+        List<UserSearchResultDto> items = page.stream()
+                .map(hit -> UserSearchResultDto.builder()
+                        .userId(hit.getId())
+                        .username(hit.getUsername())
+                        .name(hit.getName())
+                        .miniAvatar(AttachmentService.urlOf(hit.getAvatarMiniHash() != null ? hit.getAvatarMiniHash() : hit.getAvatarHash()))
+                        .rank(hit.getRank())
+                        .build())
+                .collect(Collectors.toList());
+        log.debug("User search by {} returned {} hits (hasMore={})", currentUserId, items.size(), hasMore);
+
+        UserSearchPageResponseDto.UserSearchPageResponseDtoBuilder response = UserSearchPageResponseDto.builder().items(items);
+        if (hasMore) {
+            UserSearchHit last = page.get(page.size() - 1);
+            response.nextAfterRank(last.getRank()).nextAfterId(last.getId());
+        }
+        return response.build();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.conversation.ConversationPageResponseDto;
+import com.example.chatverse.application.dto.conversation.ConversationResponseDto;
+import com.example.chatverse.application.mapper.ConversationMapper;
+import com.example.chatverse.domain.entity.ChatMessageEntity;
+import com.example.chatverse.domain.entity.Conversation;
+import com.example.chatverse.domain.repository.ConversationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Сервис списка чатов пользователя ("мои чаты") с последним сообщением и счетчиком непрочитанных.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationService {
+
+    private static final int SNIPPET_MAX_LENGTH = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationMapper conversationMapper;
+
+    /**
+     * Обновляет сводки отправителя и получателя после сохранения сообщения.
+     * Вызывается консьюмером Kafka; у получателя увеличивается счетчик непрочитанных.
+     * Идемпотентно по messageId: сообщение сохраняется в шард отдельной транзакцией, поэтому консьюмер
+     * вызывает метод и при повторной доставке уже сохраненного сообщения — иначе сбой здесь терял бы сводку навсегда.
+     * @param message Сохраненное сообщение.
+     * @return false, если сообщение уже было учтено.
+     */
+    @Transactional
+    public boolean onMessagePersisted(ChatMessageEntity message) {
+        if (conversationRepository.markMessageApplied(message.getMessageId()) == 0) {
+            log.debug("Conversation summaries already include message {}", message.getMessageId());
+            return false;
+        }
+
+        // У вложения без подписи в списке чатов показываем имя файла
+        String snippet = toSnippet(message.getAttachmentId() != null && (message.getContent() == null || message.getContent().isBlank())
+                ? message.getAttachmentName()
+                : message.getContent());
+
+        conversationRepository.upsertLastMessage(message.getSenderId(), message.getRoomId(), message.getRecipientId(),
+                message.getMessageId(), message.getSenderId(), snippet, message.getTimestamp(), 0);
+        conversationRepository.upsertLastMessage(message.getRecipientId(), message.getRoomId(), message.getSenderId(),
+                message.getMessageId(), message.getSenderId(), snippet, message.getTimestamp(), 1);
+
+        log.debug("Conversation summaries updated for room {} (message {})", message.getRoomId(), message.getMessageId());
+        return true;
+    }
+
+    /**
+     * Возвращает страницу чатов пользователя, упорядоченных по времени последнего сообщения.
+     * @param userId ID пользователя.
+     * @param beforeTimestamp Курсор: время последнего сообщения последнего элемента предыдущей страницы (null для первой страницы).
+     * @param beforeId Курсор: ID последнего элемента предыдущей страницы.
+     * @param limit Размер страницы.
+     * @return Страница чатов и курсор для следующей.
+     */
+    @Transactional(readOnly = true)
+    public ConversationPageResponseDto getConversations(Long userId, Instant beforeTimestamp, Long beforeId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Запрашиваем на один элемент больше, чтобы понять, есть ли следующая страница
+        Pageable pageable = PageRequest.ofSize(pageSize + 1);
+
+        List<Conversation> conversations;
+        if (beforeTimestamp == null || beforeId == null) {
+            conversations = conversationRepository.findFirstPage(userId, pageable);
+        } else {
+            conversations = conversationRepository.findPageBefore(userId, beforeTimestamp, beforeId, pageable);
+        }
+
+        boolean hasMore = conversations.size() > pageSize;
+        List<Conversation> page = hasMore ? conversations.subList(0, pageSize) : conversations;
+        List<ConversationResponseDto> items = conversationMapper.toDtoList(page);
+
+        ConversationPageResponseDto.ConversationPageResponseDtoBuilder response = ConversationPageResponseDto.builder().items(items);
+        if (hasMore) {
+            Conversation last = page.get(page.size() - 1);
+            response.nextBeforeTimestamp(last.getLastMessageAt()).nextBeforeId(last.getId());
+        }
+        return response.build();
+    }
+
+    /**
+     * Сбрасывает счетчик непрочитанных сообщений в комнате.
+     * @param userId ID пользователя.
+     * @param roomId ID комнаты.
+     */
+    @Transactional
+    public void markRoomRead(Long userId, String roomId) {
+        int updated = conversationRepository.resetUnreadCount(userId, roomId);
+        log.debug("User {} marked room {} as read (rows updated: {})", userId, roomId, updated);
+    }
+
+    private String toSnippet(String content) {
+        if (content == null) {
+            return "";
+        }
+        if (content.length() <= SNIPPET_MAX_LENGTH) {
+            return content;
+        }
+        return content.substring(0, SNIPPET_MAX_LENGTH - 3) + "...";
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.message.AttachmentRef;
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.MessageType;
+import com.example.chatverse.application.dto.message.SendMessageRequestDto;
+import com.example.chatverse.domain.entity.Attachment;
+import com.example.chatverse.infrastructure.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Заполняет содержимое сообщения с учетом размера. В Kafka и chat_messages попадают только
+ * текст до max-inline-content и ссылка на вложение: изображения и файлы загружаются заранее
+ * через /api/v1/attachments, а слишком длинный текст сохраняется вложением text/plain,
+ * в сообщении остается его начало.
+ */
+@Service
+@Slf4j
+public class MessagePayloadService {
+
+    private static final String LONG_TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+    private static final String LONG_TEXT_NAME = "message.txt";
+    private static final int MAX_ATTACHMENT_NAME_LENGTH = 255;
+
+    private final AttachmentService attachmentService;
+    private final int maxInlineBytes;
+    private final int previewLength;
+
+    public MessagePayloadService(AttachmentService attachmentService,
+                                 @Value("${app.chat.payload.max-inline-content:4KB}") DataSize maxInlineContent,
+                                 @Value("${app.chat.payload.preview-length:500}") int previewLength) {
+        this.attachmentService = attachmentService;
+        this.maxInlineBytes = (int) maxInlineContent.toBytes();
+        this.previewLength = previewLength;
+    }
+
+    /**
+     * Проверяет запрос и переносит в сообщение тип, текст и ссылку на вложение.
+     * Отправитель сообщения должен быть заполнен: сослаться можно только на вложение, которое он загружал сам.
+     * @throws IllegalArgumentException если содержимое не соответствует типу.
+     * @throws ResourceNotFoundException если вложения нет или его загружал другой пользователь.
+     */
+    public void applyPayload(ChatMessage message, SendMessageRequestDto request) {
+        MessageType type = request.getType() != null ? request.getType()
+                : request.getAttachmentId() != null ? MessageType.FILE : MessageType.TEXT;
+        String content = request.getContent() != null ? request.getContent() : "";
+        message.setType(type);
+
+        if (type == MessageType.TEXT) {
+            if (request.getAttachmentId() != null) {
+                throw new IllegalArgumentException("Text message cannot reference an attachment; use IMAGE or FILE type.");
+            }
+            if (content.isBlank()) {
+                throw new IllegalArgumentException("Message content cannot be empty.");
+            }
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= maxInlineBytes) {
+                message.setContent(content);
+                return;
+            }
+            // Длинный текст уходит во вложение, в сообщении остается превью
+            Attachment attachment = storeLongText(message.getSenderId(), bytes);
+            message.setAttachment(toRef(attachment, LONG_TEXT_NAME));
+            message.setContent(preview(content));
+            return;
+        }
+
+        if (request.getAttachmentId() == null) {
+            throw new IllegalArgumentException("Attachment ID is required for " + type + " messages.");
+        }
+        if (content.getBytes(StandardCharsets.UTF_8).length > maxInlineBytes) {
+            throw new IllegalArgumentException("Attachment caption is too long.");
+        }
+        Attachment attachment = attachmentService.describeOwned(request.getAttachmentId(), message.getSenderId());
+        if (type == MessageType.IMAGE && !attachment.getContentType().startsWith("image/")) {
+            throw new IllegalArgumentException("Attachment " + attachment.getHash() + " is not an image.");
+        }
+        message.setContent(content);
+        message.setAttachment(toRef(attachment, request.getAttachmentName()));
+    }
+
+    private Attachment storeLongText(Long senderId, byte[] bytes) {
+        try {
+            return attachmentService.upload(senderId, LONG_TEXT_CONTENT_TYPE, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store long message text", e);
+        }
+    }
+
+    private String preview(String content) {
+        if (content.length() <= previewLength) {
+            return content;
+        }
+        // Не разрываем суррогатную пару на границе превью
+        int end = Character.isHighSurrogate(content.charAt(previewLength - 1)) ? previewLength - 1 : previewLength;
+        return content.substring(0, end);
+    }
+
+    private static AttachmentRef toRef(Attachment attachment, String name) {
+        return AttachmentRef.builder()
+                .id(attachment.getHash())
+                .name(sanitizeName(name))
+                .contentType(attachment.getContentType())
+                .size(attachment.getSizeBytes())
+                .url(AttachmentService.urlOf(attachment.getHash()))
+                .build();
+    }
+
+    private static String sanitizeName(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        // Только имя файла, без пути клиента
+        String fileName = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1).strip();
+        return fileName.length() > MAX_ATTACHMENT_NAME_LENGTH ? fileName.substring(0, MAX_ATTACHMENT_NAME_LENGTH) : fileName;
+    }
+}
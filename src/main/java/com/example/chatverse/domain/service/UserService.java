@@ -2,6 +2,7 @@ package com.example.chatverse.domain.service;
 
 import com.example.chatverse.application.dto.UserStatusUpdateDto; // Импортируем наш DTO
 import com.example.chatverse.application.dto.request.RegisterIn;
+import com.example.chatverse.application.dto.request.UploadImage;
 import com.example.chatverse.application.dto.request.UserUpdateRequest;
 import com.example.chatverse.application.dto.response.Avatars;
 import com.example.chatverse.application.dto.response.TokenResponse;
@@ -10,15 +11,22 @@ import com.example.chatverse.application.dto.response.UserUpdateResponse;
 import com.example.chatverse.application.mapper.UserMapper;
 import com.example.chatverse.domain.entity.PlatformUser;
 import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.infrastructure.users.UserIdIndex;
 import lombok.extern.slf4j.Slf4j; // Добавляем для логирования
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.messaging.simp.SimpMessagingTemplate; // Импортируем SimpMessagingTemplate
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 
 @Service
 @Transactional
@@ -26,11 +34,16 @@ import java.time.format.DateTimeFormatter;
 public class UserService {
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate; // Добавляем зависимость
+    private final AvatarService avatarService;
+    private final UserIdIndex userIdIndex;
 
     // Обновляем конструктор для инъекции SimpMessagingTemplate
-    public UserService(UserRepository userRepository, SimpMessagingTemplate messagingTemplate) {
+    public UserService(UserRepository userRepository, SimpMessagingTemplate messagingTemplate, AvatarService avatarService,
+                       UserIdIndex userIdIndex) {
         this.userRepository = userRepository;
         this.messagingTemplate = messagingTemplate;
+        this.avatarService = avatarService;
+        this.userIdIndex = userIdIndex;
     }
 
     /**
@@ -52,6 +65,7 @@ public class UserService {
                 .build();
 
         userRepository.save(user);
+        userIdIndex.onUserCreated(user.getId());
         log.info("User registered: {}", user.getUsername());
 
         // Возвращаем токены (заглушка)
@@ -94,16 +108,13 @@ public class UserService {
      * Получение профиля текущего пользователя
      */
     @Cacheable(value = "users", key = "#userId")
+    @Transactional(readOnly = true)
     public UserProfileResponse getCurrentUser(Long userId) {
         log.debug("Fetching user profile for userId: {}", userId);
         PlatformUser user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
 
-        Avatars avatars = Avatars.builder()
-                .avatar("default-avatar.png")
-                .bigAvatar("default-big-avatar.png")
-                .miniAvatar("default-mini-avatar.png")
-                .build();
+        Avatars avatars = avatarService.avatarsOf(user);
 
         return UserProfileResponse.builder()
                 .id(user.getId())
@@ -130,21 +141,47 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
 
         user = UserMapper.updateEntityFromRequest(request, user); // Предполагается, что UserMapper существует и работает
-        userRepository.save(user);
+        user = userRepository.save(user);
         log.info("User profile updated for userId: {}", userId);
 
         // Здесь можно было бы обновить и статус, если он меняется, и отправить WebSocket уведомление
         // Например, если бы в UserUpdateRequest было поле online
 
-        Avatars avatars = Avatars.builder() // Заглушка для аватаров
-                .avatar("updated-avatar.png")
-                .bigAvatar("updated-big-avatar.png")
-                .miniAvatar("updated-mini-avatar.png")
-                .build();
+        UploadImage avatar = request.getAvatar();
+        Avatars avatars = avatar != null && avatar.getBase_64() != null && !avatar.getBase_64().isBlank()
+                ? updateAvatarFromBase64(userId, avatar)
+                : avatarService.avatarsOf(user);
 
         return new UserUpdateResponse(avatars);
     }
 
+    /**
+     * Аватар в JSON (устаревший способ, новый — PUT /api/v1/users/me/avatar): строка Base64
+     * декодируется потоком прямо в хранилище, без промежуточного массива байт.
+     */
+    private Avatars updateAvatarFromBase64(Long userId, UploadImage avatar) {
+        String base64 = avatar.getBase_64();
+        String contentType = null;
+        // Допускается data URL: "data:image/png;base64,...."
+        if (base64.startsWith("data:")) {
+            int comma = base64.indexOf(',');
+            int semicolon = base64.indexOf(';');
+            if (comma < 0) {
+                throw new IllegalArgumentException("Invalid avatar data URL");
+            }
+            contentType = base64.substring(5, semicolon > 0 && semicolon < comma ? semicolon : comma);
+            base64 = base64.substring(comma + 1);
+        }
+        if (contentType == null || contentType.isBlank()) {
+            contentType = MediaTypeFactory.getMediaType(avatar.getFilename())
+                    .map(MediaType::toString)
+                    .orElse(MediaType.IMAGE_PNG_VALUE);
+        }
+        InputStream decoded = Base64.getMimeDecoder()
+                .wrap(new ByteArrayInputStream(base64.getBytes(StandardCharsets.ISO_8859_1)));
+        return avatarService.updateAvatar(userId, contentType, decoded);
+    }
+
     /**
      * Удаление пользователя
      */
@@ -154,6 +191,7 @@ public class UserService {
             throw new IllegalArgumentException("User not found with ID: " + userId);
         }
         userRepository.deleteById(userId);
+        userIdIndex.onUserDeleted(userId);
         log.info("User deleted with ID: {}", userId);
         // Здесь можно было бы отправить уведомление о том, что пользователь удален, если это нужно
         // Например, UserStatusUpdateDto с каким-то специальным флагом или просто null
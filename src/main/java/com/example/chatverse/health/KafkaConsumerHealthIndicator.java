@@ -0,0 +1,37 @@
+package com.example.chatverse.health;
+
+import com.example.chatverse.infrastructure.kafka.ConsumerLagMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Лаг группы consumer'ов по данным {@link ConsumerLagMonitor}. По умолчанию только информирует;
+ * если задан app.kafka.health.max-consumer-lag, при превышении возвращает OUT_OF_SERVICE.
+ */
+@Component("kafkaConsumer")
+public class KafkaConsumerHealthIndicator implements HealthIndicator {
+
+    private final ConsumerLagMonitor lagMonitor;
+    private final long maxConsumerLag;
+
+    public KafkaConsumerHealthIndicator(ConsumerLagMonitor lagMonitor,
+                                        @Value("${app.kafka.health.max-consumer-lag:0}") long maxConsumerLag) {
+        this.lagMonitor = lagMonitor;
+        this.maxConsumerLag = maxConsumerLag;
+    }
+
+    @Override
+    public Health health() {
+        long lag = lagMonitor.getTotalLag();
+        boolean lagging = maxConsumerLag > 0 && lag > maxConsumerLag;
+        Health.Builder builder = Health.status(lagging ? Status.OUT_OF_SERVICE : Status.UP)
+                .withDetail("totalLag", lag);
+        if (lagMonitor.getLastUpdatedAt() > 0) {
+            builder.withDetail("lagMeasuredAgoMs", System.currentTimeMillis() - lagMonitor.getLastUpdatedAt());
+        }
+        return builder.build();
+    }
+}
@@ -1,67 +1,71 @@
-package com.example.chatverse.health; // Используй имя своего пакета
+package com.example.chatverse.health;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.DescribeClusterOptions;
 import org.apache.kafka.clients.admin.DescribeClusterResult;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
-import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.TimeUnit;
-// Можно добавить логгер, если нужно
-// import org.slf4j.Logger;
-// import org.slf4j.LoggerFactory;
 
+/**
+ * Доступность кластера Kafka. Проверка выполняется в фоне через общий AdminClient, а health()
+ * только возвращает последний результат, поэтому частые пробы k8s не создают клиентов и не ждут брокер.
+ * Результат старше трех интервалов проверки считается недостоверным (DOWN).
+ */
 @Component("kafka") // Регистрируем как бин и даем имя "kafka" для эндпоинта /actuator/health
+@Slf4j
 public class KafkaCustomHealthIndicator implements HealthIndicator {
 
-    // private static final Logger log = LoggerFactory.getLogger(KafkaCustomHealthIndicator.class);
+    private final AdminClient adminClient;
+    private final long requestTimeoutMs;
+    private final long staleAfterMs;
+    private volatile Health cachedHealth = Health.unknown().withDetail("reason", "Not checked yet").build();
+    private volatile long checkedAt;
 
-    private final KafkaAdmin kafkaAdmin;
-    private final long requestTimeoutMs = 5000; // Таймаут для запроса к Kafka (5 секунд)
-
-    // Внедряем KafkaAdmin через конструктор
-    public KafkaCustomHealthIndicator(KafkaAdmin kafkaAdmin) {
-        this.kafkaAdmin = kafkaAdmin;
+    public KafkaCustomHealthIndicator(AdminClient adminClient,
+                                      @Value("${app.kafka.health.request-timeout-ms:3000}") long requestTimeoutMs,
+                                      @Value("${app.kafka.health.refresh-interval-ms:5000}") long refreshIntervalMs) {
+        this.adminClient = adminClient;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.staleAfterMs = refreshIntervalMs * 3 + requestTimeoutMs * 2;
     }
 
     @Override
     public Health health() {
-        // Используем try-with-resources, чтобы AdminClient гарантированно закрылся
-        try (AdminClient client = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
-
-            // Устанавливаем опции для запроса, включая таймаут
-            DescribeClusterOptions options = new DescribeClusterOptions().timeoutMs((int) requestTimeoutMs);
-
-            // Отправляем запрос на получение информации о кластере
-            DescribeClusterResult result = client.describeCluster(options);
+        long checked = checkedAt;
+        if (checked > 0 && System.currentTimeMillis() - checked > staleAfterMs) {
+            return Health.down()
+                    .withDetail("error", "Health check result is stale")
+                    .withDetail("lastCheckedAgoMs", System.currentTimeMillis() - checked)
+                    .build();
+        }
+        return cachedHealth;
+    }
 
-            // Пытаемся получить ID кластера, ожидая не дольше таймаута
+    @Scheduled(fixedDelayString = "${app.kafka.health.refresh-interval-ms:5000}")
+    public void refresh() {
+        Health health;
+        try {
+            DescribeClusterResult result = adminClient.describeCluster(
+                    new DescribeClusterOptions().timeoutMs((int) requestTimeoutMs));
             String clusterId = result.clusterId().get(requestTimeoutMs, TimeUnit.MILLISECONDS);
-            // Можно также получить количество узлов для дополнительной информации
             int nodeCount = result.nodes().get(requestTimeoutMs, TimeUnit.MILLISECONDS).size();
-
-            // Проверяем, что ID кластера получен
-            if (clusterId != null && !clusterId.isEmpty()) {
-                // Если все хорошо, возвращаем статус UP с деталями
-                return Health.up()
-                        .withDetail("clusterId", clusterId)
-                        .withDetail("nodes", nodeCount)
-                        .build();
-            } else {
-                // Если ID не пришел (маловероятно при успешном запросе, но на всякий случай)
-                return Health.down().withDetail("error", "Cluster ID not available").build();
-            }
-
+            health = clusterId != null && !clusterId.isEmpty()
+                    ? Health.up().withDetail("clusterId", clusterId).withDetail("nodes", nodeCount).build()
+                    : Health.down().withDetail("error", "Cluster ID not available").build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         } catch (Exception e) {
-            // Если произошла любая ошибка (таймаут, недоступность Kafka и т.д.)
-            // log.warn("Kafka health check failed: {}", e.getMessage()); // Раскомментируй для логирования
-            // Возвращаем статус DOWN и добавляем исключение в детали
-            // (будет видно в /actuator/health, если включено show-details=always)
-            return Health.down()
-                    .withException(e)
-                    .build();
+            log.debug("Kafka health check failed: {}", e.getMessage());
+            health = Health.down().withException(e).build();
         }
+        cachedHealth = health;
+        checkedAt = System.currentTimeMillis();
     }
-}
\ No newline at end of file
+}
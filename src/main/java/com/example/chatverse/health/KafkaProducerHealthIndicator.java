@@ -0,0 +1,48 @@
+package com.example.chatverse.health;
+
+import com.example.chatverse.infrastructure.kafka.DurableMessageLog;
+import com.example.chatverse.infrastructure.kafka.MessageOutbox;
+import com.example.chatverse.infrastructure.kafka.ProducerCircuitBreaker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние буфера отправки в Kafka. Недоступность Kafka сама по себе под не выключает: она общая
+ * для всех подов, а сообщения до ее восстановления принимает локальный журнал. OUT_OF_SERVICE
+ * (readiness выводит под из балансировки) — только когда журнал почти заполнен, а без журнала —
+ * когда буфер почти полон или circuit breaker открыт.
+ * Считается из счетчиков в памяти, без обращения к брокеру.
+ */
+@Component("kafkaProducer")
+public class KafkaProducerHealthIndicator implements HealthIndicator {
+
+    private final MessageOutbox outbox;
+    private final ProducerCircuitBreaker circuitBreaker;
+    private final DurableMessageLog durableLog;
+    private final double outboxHighWatermark;
+
+    public KafkaProducerHealthIndicator(MessageOutbox outbox, ProducerCircuitBreaker circuitBreaker, DurableMessageLog durableLog,
+                                        @Value("${app.kafka.producer.outbox.readiness-high-watermark:0.9}") double outboxHighWatermark) {
+        this.outbox = outbox;
+        this.circuitBreaker = circuitBreaker;
+        this.durableLog = durableLog;
+        this.outboxHighWatermark = outboxHighWatermark;
+    }
+
+    @Override
+    public Health health() {
+        boolean accepting = durableLog.isEnabled()
+                ? !durableLog.isNearlyFull()
+                : circuitBreaker.getState() != ProducerCircuitBreaker.State.OPEN
+                        && outbox.size() < outbox.getCapacity() * outboxHighWatermark;
+        return Health.status(accepting ? Status.UP : Status.OUT_OF_SERVICE)
+                .withDetail("outboxSize", outbox.size())
+                .withDetail("outboxCapacity", outbox.getCapacity())
+                .withDetail("producerCircuit", circuitBreaker.getState())
+                .withDetail("durableOutboxPending", durableLog.getPendingCount())
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.chatverse.infrastructure.auth;
+
+import java.time.Duration;
+
+/**
+ * Ограничение числа попыток по ключу в скользящем окне.
+ */
+public interface AttemptRateLimiter {
+
+    /**
+     * Регистрирует попытку, если в последние window их было меньше limit.
+     * @return false, если лимит исчерпан (попытка не учитывается).
+     */
+    boolean tryAcquire(String key, int limit, Duration window);
+}
@@ -0,0 +1,27 @@
+package com.example.chatverse.infrastructure.auth;
+
+import java.time.Duration;
+
+/**
+ * Хранилище одноразовых кодов авторизации по номеру телефона.
+ * Реализация выбирается параметром app.auth.store-type (redis | memory).
+ */
+public interface AuthCodeStore {
+
+    /**
+     * Сохраняет код, заменяя ранее отправленный. Код живет не дольше ttl.
+     */
+    void save(String phone, String code, Duration ttl);
+
+    /**
+     * Атомарно проверяет код и при совпадении удаляет его: один код нельзя использовать дважды,
+     * даже если два запроса пришли одновременно на разные поды.
+     */
+    CheckResult consume(String phone, String code);
+
+    enum CheckResult {
+        MATCHED,
+        MISMATCH,
+        MISSING
+    }
+}
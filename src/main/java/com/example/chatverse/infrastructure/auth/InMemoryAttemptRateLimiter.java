@@ -0,0 +1,62 @@
+package com.example.chatverse.infrastructure.auth;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Скользящее окно в памяти: на ключ — кольцевой буфер из limit отметок времени.
+ * Попытка разрешена, если самая старая из последних limit попыток вышла за окно.
+ * Память на ключ фиксирована, на попытку ничего не аллоцируется.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "memory")
+public class InMemoryAttemptRateLimiter implements AttemptRateLimiter {
+
+    private static final long IDLE_EVICTION_NANOS = Duration.ofHours(1).toNanos();
+
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String key, int limit, Duration window) {
+        return windows.computeIfAbsent(key, k -> new Window(limit)).tryAcquire(System.nanoTime(), window.toNanos());
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        windows.values().removeIf(w -> w.idleFor(now) > IDLE_EVICTION_NANOS);
+    }
+
+    private static final class Window {
+        private final long[] attempts;
+        private int next;
+        private int size;
+
+        Window(int limit) {
+            this.attempts = new long[Math.max(1, limit)];
+        }
+
+        synchronized boolean tryAcquire(long now, long windowNanos) {
+            if (size == attempts.length && now - attempts[next] < windowNanos) {
+                return false;
+            }
+            attempts[next] = now;
+            next = (next + 1) % attempts.length;
+            size = Math.min(size + 1, attempts.length);
+            return true;
+        }
+
+        synchronized long idleFor(long now) {
+            if (size == 0) {
+                return Long.MAX_VALUE;
+            }
+            int last = (next - 1 + attempts.length) % attempts.length;
+            return now - attempts[last];
+        }
+    }
+}
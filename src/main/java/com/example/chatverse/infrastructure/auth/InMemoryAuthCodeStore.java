@@ -0,0 +1,53 @@
+package com.example.chatverse.infrastructure.auth;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Локальное хранилище кодов для одного узла и тестов. Без блокировок: проверка и удаление
+ * делаются через remove(key, value), так что код снимает ровно один из конкурирующих запросов.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "memory")
+public class InMemoryAuthCodeStore implements AuthCodeStore {
+
+    private final ConcurrentMap<String, Entry> codes = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(String phone, String code, Duration ttl) {
+        codes.put(phone, new Entry(code, System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public CheckResult consume(String phone, String code) {
+        Entry entry = codes.get(phone);
+        if (entry == null) {
+            return CheckResult.MISSING;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            codes.remove(phone, entry);
+            return CheckResult.MISSING;
+        }
+        if (!entry.code().equals(code)) {
+            return CheckResult.MISMATCH;
+        }
+        return codes.remove(phone, entry) ? CheckResult.MATCHED : CheckResult.MISSING;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        codes.entrySet().removeIf(e -> e.getValue().isExpired(now));
+    }
+
+    private record Entry(String code, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
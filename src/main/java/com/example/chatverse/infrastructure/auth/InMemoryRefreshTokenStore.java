@@ -0,0 +1,46 @@
+package com.example.chatverse.infrastructure.auth;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Refresh-токены в памяти для одного узла и тестов.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "memory")
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+
+    private final ConcurrentMap<String, Entry> tokens = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(String token, Long userId, Duration ttl) {
+        tokens.put(token, new Entry(userId, System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public Optional<Long> consume(String token) {
+        Entry entry = tokens.remove(token);
+        if (entry == null || entry.isExpired(System.nanoTime())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.userId());
+    }
+
+    @Scheduled(fixedDelay = 600_000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        tokens.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private record Entry(Long userId, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
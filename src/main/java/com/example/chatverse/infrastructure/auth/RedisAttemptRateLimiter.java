@@ -0,0 +1,47 @@
+package com.example.chatverse.infrastructure.auth;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Скользящее окно в Redis: отсортированное множество отметок времени на ключ.
+ * Очистка устаревших отметок, подсчет и добавление выполняются одним Lua-скриптом.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "redis", matchIfMissing = true)
+public class RedisAttemptRateLimiter implements AttemptRateLimiter {
+
+    private static final String KEY_PREFIX = "auth:attempts:";
+
+    private static final RedisScript<Long> SLIDING_WINDOW = RedisScript.of("""
+            local now = tonumber(ARGV[1])
+            local window = tonumber(ARGV[2])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+            if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], now, ARGV[4])
+            redis.call('PEXPIRE', KEYS[1], window)
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public boolean tryAcquire(String key, int limit, Duration window) {
+        long now = System.currentTimeMillis();
+        // Уникальный член множества: несколько попыток в одну миллисекунду не должны схлопываться
+        String member = now + "-" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        Long allowed = redisTemplate.execute(SLIDING_WINDOW, List.of(KEY_PREFIX + key),
+                Long.toString(now), Long.toString(window.toMillis()), Integer.toString(limit), member);
+        return allowed != null && allowed == 1L;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.chatverse.infrastructure.auth;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Коды в Redis с TTL: общие для всех подов, поэтому отправка и проверка кода могут попасть на разные реплики.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "redis", matchIfMissing = true)
+public class RedisAuthCodeStore implements AuthCodeStore {
+
+    private static final String KEY_PREFIX = "auth:code:";
+
+    // Сравнение и удаление одной командой: 0 — кода нет, 1 — совпал и удален, 2 — не совпал
+    private static final RedisScript<Long> COMPARE_AND_DELETE = RedisScript.of("""
+            local stored = redis.call('GET', KEYS[1])
+            if not stored then
+                return 0
+            end
+            if stored == ARGV[1] then
+                redis.call('DEL', KEYS[1])
+                return 1
+            end
+            return 2
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public void save(String phone, String code, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + phone, code, ttl);
+    }
+
+    @Override
+    public CheckResult consume(String phone, String code) {
+        Long result = redisTemplate.execute(COMPARE_AND_DELETE, List.of(KEY_PREFIX + phone), code);
+        if (result == null || result == 0L) {
+            return CheckResult.MISSING;
+        }
+        return result == 1L ? CheckResult.MATCHED : CheckResult.MISMATCH;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.chatverse.infrastructure.auth;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Refresh-токены в Redis: истекшие удаляет сам Redis, ротация — одна команда GETDEL.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.auth.store-type", havingValue = "redis", matchIfMissing = true)
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+
+    private static final String KEY_PREFIX = "auth:refresh:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public void save(String token, Long userId, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + token, userId.toString(), ttl);
+    }
+
+    @Override
+    public Optional<Long> consume(String token) {
+        String userId = redisTemplate.opsForValue().getAndDelete(KEY_PREFIX + token);
+        return Optional.ofNullable(userId).map(Long::valueOf);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.chatverse.infrastructure.auth;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Хранилище refresh-токенов с истечением по TTL. Реализация выбирается тем же
+ * параметром app.auth.store-type, что и для кодов авторизации.
+ */
+public interface RefreshTokenStore {
+
+    void save(String token, Long userId, Duration ttl);
+
+    /**
+     * Атомарно забирает токен: при ротации каждый refresh-токен можно предъявить только один раз.
+     * @return ID пользователя, если токен существует и не истек.
+     */
+    Optional<Long> consume(String token);
+}
@@ -1,16 +1,19 @@
 package com.example.chatverse.infrastructure.configuration;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@Slf4j
 public class AppContextLogger {
 
     public AppContextLogger(ApplicationContext context) {
-        for (String beanName : context.getBeanDefinitionNames()) {
-            System.out.println(beanName);
+        // Список бинов нужен только при отладке конфигурации
+        if (log.isDebugEnabled()) {
+            for (String beanName : context.getBeanDefinitionNames()) {
+                log.debug("Bean: {}", beanName);
+            }
         }
     }
 }
-
@@ -0,0 +1,195 @@
+package com.example.chatverse.infrastructure.configuration;
+
+import com.example.chatverse.infrastructure.datasource.ReadYourWritesTracker;
+import com.example.chatverse.infrastructure.datasource.ReplicaLagMonitor;
+import com.example.chatverse.infrastructure.datasource.ReplicaProperties;
+import com.example.chatverse.infrastructure.datasource.ReplicaRoutingDataSource;
+import com.example.chatverse.infrastructure.datasource.ShardRoutingDataSource;
+import com.example.chatverse.infrastructure.datasource.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конфигурация источников данных: основной пул (шард 0, запросы API), отдельный пул записи
+ * для Kafka consumer'ов и пулы дополнительных шардов сообщений за маршрутизирующим datasource. Если заданы реплики, шард 0 дополнительно разделяется на primary
+ * и реплики для read-only транзакций. Снаружи все обернуто в LazyConnectionDataSourceProxy, чтобы
+ * физическое соединение бралось при первом запросе, когда контекст маршрутизации уже известен.
+ */
+@Configuration
+@EnableConfigurationProperties({ShardingProperties.class, ReplicaProperties.class})
+public class DataSourceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Value("${spring.flyway.enabled:true}")
+    private boolean flywayEnabled;
+
+    @Value("${app.sharding.flyway-locations:classpath:db/migration/messages}")
+    private String[] shardFlywayLocations;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("chatverse-shard-0");
+        return dataSource;
+    }
+
+    /**
+     * Пул записи consumer'ов в основной шард. Отделен от пула API, чтобы всплеск входящих сообщений
+     * не выбирал соединения у пользовательских запросов и наоборот. Настройки драйвера
+     * (spring.datasource.hikari.data-source-properties) наследуются от основного пула.
+     */
+    @Bean
+    @ConfigurationProperties("app.datasource.writer-pool.hikari")
+    public HikariDataSource writerDataSource(DataSourceProperties properties,
+                                             @Qualifier("primaryDataSource") HikariDataSource primaryDataSource) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("chatverse-shard-0-writer");
+        dataSource.setDataSourceProperties(primaryDataSource.getDataSourceProperties());
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaProperties replicaProperties,
+                                               @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<String, HikariDataSource> replicaPools = new LinkedHashMap<>();
+        List<ReplicaProperties.Replica> replicas = replicaProperties.getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaProperties.Replica replica = replicas.get(i);
+            String name = "replica-" + (i + 1);
+            HikariDataSource pool = createPool(primaryDataSource, meterRegistry, "chatverse-" + name, replica.getUrl(),
+                    replica.getUsername(), replica.getPassword(), replica.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            replicaPools.put(name, pool);
+        }
+        return new ReplicaLagMonitor(replicaPools, replicaProperties.getMaxLag());
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                                         @Qualifier("writerDataSource") HikariDataSource writerDataSource,
+                                                         ShardingProperties shardingProperties,
+                                                         ReplicaLagMonitor replicaLagMonitor,
+                                                         ReadYourWritesTracker readYourWritesTracker,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(0, primaryShard(primaryDataSource, replicaLagMonitor, readYourWritesTracker));
+        targets.put(ShardRoutingDataSource.PRIMARY_WRITER, writerDataSource);
+
+        List<HikariDataSource> shardPools = new ArrayList<>();
+        List<ShardingProperties.Shard> shards = shardingProperties.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            int shardNumber = i + 1;
+            HikariDataSource shardPool = createShardPool(primaryDataSource, meterRegistry, shards.get(i), shardNumber);
+            migrateShard(shardPool, shardNumber);
+            shardPools.add(shardPool);
+            targets.put(shardNumber, shardPool);
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(shardPools);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.setLenientFallback(false);
+        log.info("Message storage configured with {} shard(s)", targets.size());
+        return routingDataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Шард 0 без реплик — просто primary; с репликами — маршрутизация read-only транзакций.
+     */
+    private DataSource primaryShard(HikariDataSource primaryDataSource, ReplicaLagMonitor replicaLagMonitor,
+                                    ReadYourWritesTracker readYourWritesTracker) {
+        if (!replicaLagMonitor.hasReplicas()) {
+            return primaryDataSource;
+        }
+        Map<Object, Object> targets = new HashMap<>(replicaLagMonitor.getReplicas());
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primaryDataSource);
+        ReplicaRoutingDataSource replicaRouting = new ReplicaRoutingDataSource(replicaLagMonitor, readYourWritesTracker);
+        replicaRouting.setTargetDataSources(targets);
+        replicaRouting.setDefaultTargetDataSource(primaryDataSource);
+        replicaRouting.setLenientFallback(false);
+        replicaRouting.afterPropertiesSet(); // не бин, инициализируем сами
+        log.info("Read-only transactions on the primary shard are routed to {} replica(s)", replicaLagMonitor.getReplicas().size());
+        return replicaRouting;
+    }
+
+    private HikariDataSource createShardPool(HikariDataSource template, ObjectProvider<MeterRegistry> meterRegistry,
+                                             ShardingProperties.Shard shard, int shardNumber) {
+        return createPool(template, meterRegistry, "chatverse-shard-" + shardNumber, shard.getUrl(), shard.getUsername(),
+                shard.getPassword(), shard.getMaximumPoolSize());
+    }
+
+    /**
+     * Пулы шардов и реплик создаются вручную, а не бинами, поэтому таймауты, настройки драйвера
+     * и метрики (их автоконфигурация вешает только на бины) берем от основного пула.
+     */
+    private HikariDataSource createPool(HikariDataSource template, ObjectProvider<MeterRegistry> meterRegistry, String poolName,
+                                        String url, String username, String password, int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        template.copyStateTo(dataSource);
+        dataSource.setPoolName(poolName);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMinimumIdle(Math.min(template.getMinimumIdle(), maximumPoolSize));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            MetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(registry);
+            dataSource.setMetricsTrackerFactory(metrics);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Flyway из автоконфигурации мигрирует только основной datasource (все миграции, включая подкаталог messages).
+     * Дополнительные шарды хранят только chat_messages, поэтому на них накатывается только каталог
+     * миграций сообщений: пользователи, вложения и контакты на шардах не создаются.
+     * Номера версий общие с основной базой, пропуски в нумерации на шардах ожидаемы.
+     */
+    private void migrateShard(DataSource shardDataSource, int shardNumber) {
+        if (!flywayEnabled) {
+            return;
+        }
+        Flyway.configure()
+                .dataSource(shardDataSource)
+                .locations(shardFlywayLocations)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                // Шарды, мигрированные раньше полным набором, содержат в истории версии, которых здесь нет
+                .ignoreMigrationPatterns("*:missing")
+                .load()
+                .migrate();
+        log.info("Flyway migrations applied to message shard {}", shardNumber);
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.chatverse.infrastructure.configuration;
 
 import com.example.chatverse.infrastructure.security.JwtUtils;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
@@ -15,6 +18,8 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -34,8 +39,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                String userId = jwtUtils.extractUserId(token); // Извлекаем userId из токена
-                Authentication authentication = new UsernamePasswordAuthenticationToken(userId, null, Collections.emptyList());
+                Claims claims = jwtUtils.parseClaims(token);
+                String userId = claims.getSubject(); // Извлекаем userId из токена
+                Authentication authentication = new UsernamePasswordAuthenticationToken(userId, null,
+                        authoritiesOf(claims.get(JwtUtils.ROLE_CLAIM, String.class)));
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             } catch (Exception e) {
                 logger.error("Invalid JWT token: {}", e); // Используем logger из OncePerRequestFilter
@@ -48,6 +55,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Токены, выданные до появления claim'а роли, не дают никаких ролей
+    private static List<GrantedAuthority> authoritiesOf(String role) {
+        if (role == null || role.isBlank()) {
+            return Collections.emptyList();
+        }
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.toUpperCase(Locale.ROOT)));
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
         // Исключаем пути WebSocket из фильтрации JWT
@@ -0,0 +1,25 @@
+package com.example.chatverse.infrastructure.configuration;
+
+import com.example.chatverse.infrastructure.kafka.ConsumerLagMonitor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+/**
+ * Настройка контейнеров listener'ов, создаваемых автоконфигурацией Spring Boot
+ * (в том числе для retry-топиков).
+ */
+@Configuration
+public class KafkaConsumerConfig {
+
+    /**
+     * Назначение и отзыв партиций передаются {@link ConsumerLagMonitor}: метрики лага публикуются
+     * только для партиций этого пода.
+     */
+    @Bean
+    public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>> lagMonitorRebalanceCustomizer(
+            ConsumerLagMonitor lagMonitor) {
+        return container -> container.getContainerProperties().setConsumerRebalanceListener(lagMonitor);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chatverse.infrastructure.configuration;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationSupport;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.List;
+
+/**
+ * Обработка ошибок consumer'ов chat-messages. Кратковременные сбои базы повторяются на месте
+ * (DefaultErrorHandler с экспоненциальной задержкой), остальные ошибки не блокируют партицию:
+ * запись уходит в retry-топики с нарастающей задержкой (chat-messages.retry-0, -1, ...),
+ * а после последней попытки — в chat-messages.DLT. Ошибки, которые повтор не исправит
+ * (десериализация, нарушение ограничений БД), сразу идут в DLT.
+ * Неблокирующий повтор нарушает порядок внутри комнаты: пока запись ждет в retry-топике, следующие
+ * сообщения комнаты уже сохраняются и получают меньшие roomSeq. Порядок для клиента задает roomSeq,
+ * а не время отправки.
+ */
+@Configuration
+public class KafkaRetryConfig extends RetryTopicConfigurationSupport {
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Value("${app.kafka.consumer.retry.attempts:4}")
+    private int attempts;
+
+    @Value("${app.kafka.consumer.retry.initial-delay-ms:1000}")
+    private long initialDelayMs;
+
+    @Value("${app.kafka.consumer.retry.multiplier:10}")
+    private double multiplier;
+
+    @Value("${app.kafka.consumer.retry.max-delay-ms:60000}")
+    private long maxDelayMs;
+
+    @Value("${app.kafka.consumer.retry.blocking-max-elapsed-ms:2000}")
+    private long blockingMaxElapsedMs;
+
+    @Bean
+    public RetryTopicConfiguration chatMessagesRetryTopic(KafkaTemplate<String, ChatMessage> kafkaTemplate) {
+        return RetryTopicConfigurationBuilder.newInstance()
+                .includeTopic(chatTopicName)
+                .maxAttempts(attempts)
+                .exponentialBackoff(initialDelayMs, multiplier, maxDelayMs)
+                .retryTopicSuffix(".retry")
+                .dltSuffix(".DLT")
+                .suffixTopicsWithIndexValues()
+                .notRetryOn(List.of(DataIntegrityViolationException.class))
+                .create(kafkaTemplate);
+    }
+
+    @Override
+    protected void configureBlockingRetries(BlockingRetriesConfigurer blockingRetries) {
+        ExponentialBackOff backOff = new ExponentialBackOff(100, 2.0);
+        backOff.setMaxElapsedTime(blockingMaxElapsedMs);
+        blockingRetries
+                .retryOn(TransientDataAccessException.class, RecoverableDataAccessException.class,
+                        CannotCreateTransactionException.class)
+                .backOff(backOff);
+    }
+}
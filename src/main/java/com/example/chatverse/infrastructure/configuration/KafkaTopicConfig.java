@@ -0,0 +1,56 @@
+package com.example.chatverse.infrastructure.configuration;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+/**
+ * Топик chat-messages и общий AdminClient. Партиция — единица параллелизма между consumer'ами группы:
+ * суммарная concurrency listener'ов всех подов не должна превышать число партиций, иначе
+ * лишние consumer'ы простаивают. Увеличить число партиций можно и на живом топике
+ * (KafkaAdmin досоздаст их при старте), но комнаты при этом переедут в другие партиции.
+ */
+@Configuration
+public class KafkaTopicConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaTopicConfig.class);
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Value("${app.kafka.topic.partitions:12}")
+    private int partitions;
+
+    @Value("${app.kafka.topic.replication-factor:1}")
+    private short replicationFactor;
+
+    @Value("${app.kafka.consumer.concurrency:3}")
+    private int concurrency;
+
+    @Bean
+    public NewTopic chatMessagesTopic() {
+        if (concurrency > partitions) {
+            log.warn("Listener concurrency {} exceeds {} partitions of {}: {} consumer(s) per pod will stay idle",
+                    concurrency, partitions, chatTopicName, concurrency - partitions);
+        }
+        return TopicBuilder.name(chatTopicName)
+                .partitions(partitions)
+                .replicas(replicationFactor)
+                .build();
+    }
+
+    /**
+     * Долгоживущий AdminClient для мониторинга (лаг consumer'ов, health): создавать клиента
+     * на каждую проверку — это новые сокеты и потоки.
+     */
+    @Bean(destroyMethod = "close")
+    public AdminClient kafkaAdminClient(KafkaAdmin kafkaAdmin) {
+        return AdminClient.create(kafkaAdmin.getConfigurationProperties());
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.chatverse.infrastructure.configuration;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.filter.CommonsRequestLoggingFilter;
 
+/**
+ * Подробный лог HTTP-запросов (заголовки и тело) для отладки. В prod выключен:
+ * app.logging.request-details.enabled=false.
+ */
 @Configuration
+@ConditionalOnProperty(name = "app.logging.request-details.enabled", havingValue = "true", matchIfMissing = true)
 public class RequestLoggingFilterConfig {
 
     @Bean
@@ -12,8 +18,10 @@ public class RequestLoggingFilterConfig {
         CommonsRequestLoggingFilter filter = new CommonsRequestLoggingFilter();
         filter.setIncludeQueryString(true);
         filter.setIncludePayload(true);
-        filter.setMaxPayloadLength(10000);
+        filter.setMaxPayloadLength(2000);
         filter.setIncludeHeaders(true);
+        // Токены и cookie в лог не попадают
+        filter.setHeaderPredicate(header -> !"Authorization".equalsIgnoreCase(header) && !"Cookie".equalsIgnoreCase(header));
         // Можно убрать или закомментировать префикс, если он не нужен без DEBUG логов
         // filter.setAfterMessagePrefix("REQUEST DATA: ");
         return filter;
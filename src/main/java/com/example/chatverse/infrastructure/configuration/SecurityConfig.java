@@ -1,14 +1,18 @@
 package com.example.chatverse.infrastructure.configuration;
 
 import com.example.chatverse.application.dto.response.ErrorResponse;
+import com.example.chatverse.infrastructure.ratelimit.MessageRateLimitFilter;
+import com.example.chatverse.infrastructure.ratelimit.MessageRateLimiter;
 import com.example.chatverse.infrastructure.security.JwtUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -21,6 +25,7 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.AccessDeniedHandler;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -36,13 +41,20 @@ import java.util.List;
 public class SecurityConfig {
 
     private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+    private static final IpAddressMatcher LOCALHOST = new IpAddressMatcher("127.0.0.1");
 
     private final JwtUtils jwtUtils;
     private final ObjectMapper objectMapper;
+    private final MessageRateLimiter messageRateLimiter;
 
-    public SecurityConfig(JwtUtils jwtUtils, ObjectMapper objectMapper) {
+    // В prod actuator вынесен на отдельный порт, который не публикуется через Service и ingress
+    @Value("${management.server.port:${server.port:8080}}")
+    private int managementPort;
+
+    public SecurityConfig(JwtUtils jwtUtils, ObjectMapper objectMapper, MessageRateLimiter messageRateLimiter) {
         this.jwtUtils = jwtUtils;
         this.objectMapper = objectMapper;
+        this.messageRateLimiter = messageRateLimiter;
     }
 
     @Bean
@@ -81,10 +93,24 @@ public class SecurityConfig {
                                 "/api/v1/users/check-auth-code",
                                 "/api/v1/users/refresh-token",
                                 "/actuator/health",
+                                "/actuator/health/liveness",
+                                "/actuator/health/readiness",
                                 "/actuator/info",
+                                "/livez",
+                                "/readyz",
                                 "/ws/**"
                         ).permitAll()
                         .requestMatchers("/test/**").permitAll() //TODO
+                        // Остановка пода вызывается preStop-хуком изнутри контейнера: только с localhost
+                        // и только на порт actuator'а, запрос через Service/ingress на основной порт не пройдет
+                        .requestMatchers(HttpMethod.POST, "/actuator/drain").access((authentication, context) ->
+                                new AuthorizationDecision(context.getRequest().getLocalPort() == managementPort
+                                        && LOCALHOST.matches(context.getRequest())))
+                        // Метрики для Prometheus отдаются только на порту actuator'а, наружу он не публикуется
+                        .requestMatchers(HttpMethod.GET, "/actuator/prometheus").access((authentication, context) ->
+                                new AuthorizationDecision(context.getRequest().getLocalPort() == managementPort))
+                        // Служебные операции (переигрывание DLT и т.п.) — только для роли ADMIN из JWT
+                        .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
                         // Запрещаем доступ ко всем остальным actuator эндпоинтам (можно настроить для роли ADMIN позже)
                         .requestMatchers("/actuator/**").denyAll() //TODO: Настроить доступ для ADMIN
                         // Все остальные запросы требуют аутентификации
@@ -98,7 +124,9 @@ public class SecurityConfig {
                         .authenticationEntryPoint(customAuthenticationEntryPoint()) // Обработчик для ошибки 401 Unauthorized
                 )
                 // Добавляем наш JWT фильтр перед стандартным фильтром аутентификации
-                .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
+                // Лимит отправки сообщений проверяем, когда пользователь уже известен
+                .addFilterAfter(new MessageRateLimitFilter(messageRateLimiter, objectMapper), JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -1,25 +1,20 @@
 package com.example.chatverse.infrastructure.configuration;
 
-import com.example.chatverse.infrastructure.security.JwtUtils;
+import com.example.chatverse.infrastructure.websocket.StompAuthChannelInterceptor;
+import com.example.chatverse.infrastructure.websocket.StompSessionRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.messaging.simp.stomp.StompCommand;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
-import org.springframework.messaging.support.ChannelInterceptor;
-import org.springframework.messaging.support.MessageHeaderAccessor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
-import org.springframework.security.core.Authentication;
-
-import java.util.Collections;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -27,7 +22,10 @@ import java.util.Collections;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Autowired
-    private JwtUtils jwtUtils;
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+
+    @Autowired
+    private StompSessionRegistry stompSessionRegistry;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -67,57 +65,25 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
-            @Override
-            public Message<?> preSend(Message<?> message, MessageChannel channel) {
-                StompHeaderAccessor accessor =
-                        MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
-
-                if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-                    String authorizationHeader = accessor.getFirstNativeHeader("Authorization");
-                    // Также можно проверить 'X-Authorization', если используется как альтернатива
-                    // String xAuthorizationHeader = accessor.getFirstNativeHeader("X-Authorization");
-
-                    String token = null;
-                    if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-                        token = authorizationHeader.substring(7);
-                    }
-                    // else if (xAuthorizationHeader != null && xAuthorizationHeader.startsWith("Bearer ")) {
-                    //     token = xAuthorizationHeader.substring(7);
-                    // }
-
+        // Токен проверяется один раз при CONNECT, доступ к комнате — при SUBSCRIBE
+        registration.interceptors(stompAuthChannelInterceptor);
+    }
 
-                    if (token != null) {
-                        try {
-                            String userId = jwtUtils.extractUserId(token); // Или extractUsername, если у тебя так
-                            // jwtUtils.isTokenValid(token, userDetails) // Полная валидация, если нужна
-                            // Для STOMP обычно достаточно проверки подписи и срока действия,
-                            // так как пользователь уже прошел HTTP аутентификацию.
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Реестр открытых сессий: через него закрываются сессии с истекшим токеном
+        registration.addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                stompSessionRegistry.register(session);
+                super.afterConnectionEstablished(session);
+            }
 
-                            // Устанавливаем Principal для WebSocket сессии
-                            Authentication authentication = new UsernamePasswordAuthenticationToken(
-                                    userId, // principal - обычно ID пользователя или username
-                                    null,   // credentials
-                                    Collections.emptyList() // authorities
-                            );
-                            accessor.setUser(authentication);
-                            System.out.println("STOMP CONNECT: Authenticated user " + userId + " for session " + accessor.getSessionId());
-                        } catch (Exception e) {
-                            System.err.println("STOMP CONNECT: Invalid JWT token in STOMP header. " + e.getMessage());
-                            // Можно здесь выбросить исключение, чтобы прервать соединение,
-                            // или вернуть null/сообщение об ошибке, чтобы клиент получил ERROR фрейм.
-                            // Например, throw new MessagingException("Invalid token");
-                            // Это приведет к закрытию WebSocket соединения.
-                            return null; // Или обработать ошибку более явно
-                        }
-                    } else {
-                        System.err.println("STOMP CONNECT: No token found in STOMP header for session " + accessor.getSessionId());
-                        // Можно также прервать соединение, если токен обязателен
-                        // return null;
-                    }
-                }
-                return message;
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                stompSessionRegistry.unregister(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
             }
         });
     }
-}
\ No newline at end of file
+}
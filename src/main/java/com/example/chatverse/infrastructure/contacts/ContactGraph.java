@@ -0,0 +1,267 @@
+package com.example.chatverse.infrastructure.contacts;
+
+import com.example.chatverse.domain.entity.ContactStatus;
+import com.example.chatverse.domain.repository.ContactEdge;
+import com.example.chatverse.domain.repository.ContactRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Граф контактов в памяти узла для проверок авторизации без запроса в БД
+ * ("A и B — контакты?", "B заблокировал A?").
+ * Смежность пользователя — отсортированный массив ID собеседников и массив однобайтовых кодов связи
+ * с точки зрения владельца; поиск собеседника — бинарный поиск по компактному массиву.
+ * Смежность загружается лениво при первом обращении к пользователю и хранится не дольше ttl.
+ * Изменение контакта сбрасывает смежность обоих пользователей после коммита на этом узле
+ * и на остальных узлах через Redis pub/sub; ttl ограничивает устаревание при потерянном сообщении.
+ * Загрузка, во время которой смежность этого же пользователя сбросили, в кэш не попадает; сбросы
+ * других пользователей на нее не влияют, поэтому частые изменения контактов не выключают кэш целиком.
+ */
+@Component
+@Slf4j
+public class ContactGraph {
+
+    private static final String CHANNEL = "chat:contacts";
+
+    // Коды связи с точки зрения владельца смежности
+    static final byte NONE = 0;
+    static final byte PENDING_OUTGOING = 1;
+    static final byte PENDING_INCOMING = 2;
+    static final byte ACCEPTED = 3;
+    static final byte DECLINED = 4;
+    static final byte BLOCKED_BY_OWNER = 5;
+    static final byte BLOCKED_BY_PEER = 6;
+
+    private final ContactRepository contactRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final long ttlNanos;
+    private final int maxUsers;
+    private final ConcurrentMap<Long, Adjacency> adjacencies = new ConcurrentHashMap<>();
+    // Время последнего сброса смежности пользователя (System.nanoTime). Отметки старше ttl удаляются:
+    // смежность, загруженная до такой отметки, все равно уже устарела бы по ttl
+    private final ConcurrentMap<Long, Long> evictedAt = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter loads;
+    private RedisMessageListenerContainer listenerContainer;
+
+    public ContactGraph(ContactRepository contactRepository,
+                        StringRedisTemplate redisTemplate,
+                        RedisConnectionFactory connectionFactory,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.contacts.graph.ttl:10m}") Duration ttl,
+                        @Value("${app.contacts.graph.max-users:200000}") int maxUsers) {
+        this.contactRepository = contactRepository;
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.ttlNanos = ttl.toNanos();
+        this.maxUsers = maxUsers;
+        this.hits = lookups(meterRegistry, "hit");
+        this.loads = lookups(meterRegistry, "load");
+        Gauge.builder("chat.contacts.graph.users", adjacencies, ConcurrentMap::size)
+                .description("Users whose contact adjacency is cached on this node")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener((message, pattern) -> onRemoteChange(message.getBody()), new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    public boolean areContacts(long userA, long userB) {
+        return edge(userA, userB) == ACCEPTED;
+    }
+
+    /**
+     * Заблокировал ли blocker пользователя user.
+     */
+    public boolean hasBlocked(long blocker, long user) {
+        return edge(blocker, user) == BLOCKED_BY_OWNER;
+    }
+
+    /**
+     * Есть ли блокировка между пользователями в любую сторону; одна смежность отвечает на оба вопроса.
+     */
+    public boolean isBlockedEitherWay(long userA, long userB) {
+        byte edge = edge(userA, userB);
+        return edge == BLOCKED_BY_OWNER || edge == BLOCKED_BY_PEER;
+    }
+
+    /**
+     * Вызывается при любом изменении контакта между пользователями.
+     * В транзакции сброс откладывается до коммита, иначе параллельное чтение загрузило бы старое состояние.
+     */
+    public void onContactChanged(long userA, long userB) {
+        Runnable invalidate = () -> {
+            evict(userA, userB);
+            try {
+                redisTemplate.convertAndSend(CHANNEL, userA + ":" + userB);
+            } catch (Exception e) {
+                // Остальные узлы увидят изменение не позже ttl
+                log.warn("Failed to publish contact change {}:{}: {}", userA, userB, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate.run();
+                }
+            });
+        } else {
+            invalidate.run();
+        }
+    }
+
+    byte edge(long owner, long peer) {
+        return adjacency(owner).edgeTo(peer);
+    }
+
+    private Adjacency adjacency(long userId) {
+        long now = System.nanoTime();
+        Adjacency cached = adjacencies.get(userId);
+        if (cached != null && now - cached.loadedAt < ttlNanos) {
+            hits.increment();
+            return cached;
+        }
+        loads.increment();
+        Adjacency loaded = Adjacency.of(userId, contactRepository.findEdgesOfUser(userId), now);
+        if (adjacencies.size() >= maxUsers) {
+            trim(now);
+        }
+        // Проверка и запись атомарны относительно evict(): он ставит отметку до удаления из кэша
+        adjacencies.compute(userId, (key, current) -> evictedSince(key, now) ? current : loaded);
+        return loaded;
+    }
+
+    private boolean evictedSince(long userId, long since) {
+        Long stamp = evictedAt.get(userId);
+        return stamp != null && stamp - since >= 0;
+    }
+
+    private void evict(long userA, long userB) {
+        long now = System.nanoTime();
+        evictedAt.put(userA, now);
+        evictedAt.put(userB, now);
+        adjacencies.remove(userA);
+        adjacencies.remove(userB);
+    }
+
+    private void onRemoteChange(byte[] body) {
+        String payload = new String(body, StandardCharsets.UTF_8);
+        int separator = payload.indexOf(':');
+        try {
+            evict(Long.parseLong(payload.substring(0, separator)), Long.parseLong(payload.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            log.debug("Ignoring malformed contact change message: {}", payload);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.contacts.graph.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        adjacencies.values().removeIf(adjacency -> now - adjacency.loadedAt >= ttlNanos);
+        evictedAt.values().removeIf(stamp -> now - stamp >= ttlNanos);
+    }
+
+    /**
+     * Переполнение: сначала устаревшие записи, затем произвольная десятая часть.
+     */
+    private void trim(long now) {
+        adjacencies.values().removeIf(adjacency -> now - adjacency.loadedAt >= ttlNanos);
+        int toRemove = adjacencies.size() - maxUsers + Math.max(1, maxUsers / 10);
+        Iterator<Long> keys = adjacencies.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chat.contacts.graph.lookups")
+                .description("Contact graph lookups by whether the adjacency was cached")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Неизменяемая смежность одного пользователя.
+     */
+    private static final class Adjacency {
+
+        private final long[] peers;
+        private final byte[] edges;
+        private final long loadedAt;
+
+        private Adjacency(long[] peers, byte[] edges, long loadedAt) {
+            this.peers = peers;
+            this.edges = edges;
+            this.loadedAt = loadedAt;
+        }
+
+        static Adjacency of(long owner, List<ContactEdge> rows, long loadedAt) {
+            long[] keys = new long[rows.size()];
+            for (int i = 0; i < keys.length; i++) {
+                // Старшие биты — собеседник, младший байт — код связи: сортировка упорядочивает обе части вместе
+                ContactEdge row = rows.get(i);
+                keys[i] = (row.getPeerId() << 8) | code(owner, row);
+            }
+            Arrays.sort(keys);
+            long[] peers = new long[keys.length];
+            byte[] edges = new byte[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                peers[i] = keys[i] >>> 8;
+                edges[i] = (byte) (keys[i] & 0xFF);
+            }
+            return new Adjacency(peers, edges, loadedAt);
+        }
+
+        byte edgeTo(long peer) {
+            int index = Arrays.binarySearch(peers, peer);
+            return index >= 0 ? edges[index] : NONE;
+        }
+
+        private static byte code(long owner, ContactEdge row) {
+            boolean ownerActed = row.getActionUserId() != null && row.getActionUserId() == owner;
+            ContactStatus status = ContactStatus.valueOf(row.getStatus());
+            return switch (status) {
+                case PENDING -> ownerActed ? PENDING_OUTGOING : PENDING_INCOMING;
+                case ACCEPTED -> ACCEPTED;
+                case DECLINED -> DECLINED;
+                case BLOCKED -> ownerActed ? BLOCKED_BY_OWNER : BLOCKED_BY_PEER;
+            };
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.chatverse.infrastructure.datasource;
+
+/**
+ * Признак того, что текущий поток обрабатывает запись из Kafka. Такие потоки получают
+ * соединения основного шарда из пула записи, а не из пула API.
+ */
+public final class ConsumerWriteContext {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private ConsumerWriteContext() {
+    }
+
+    public static boolean isActive() {
+        return Boolean.TRUE.equals(ACTIVE.get());
+    }
+
+    public static void enter() {
+        ACTIVE.set(Boolean.TRUE);
+    }
+
+    public static void exit() {
+        ACTIVE.remove();
+    }
+}
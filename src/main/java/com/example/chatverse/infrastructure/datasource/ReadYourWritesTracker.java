@@ -0,0 +1,67 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Запоминает момент последней записи пользователя, чтобы в течение короткого окна
+ * его чтения шли в primary и он видел собственные изменения, даже если реплика отстает.
+ * Ключ — имя из Authentication (ID пользователя).
+ */
+@Component
+@Slf4j
+public class ReadYourWritesTracker {
+
+    private final Map<String, Long> lastWriteNanos = new ConcurrentHashMap<>();
+    private final long windowNanos;
+
+    public ReadYourWritesTracker(ReplicaProperties replicaProperties) {
+        this.windowNanos = replicaProperties.getReadYourWritesWindow().toNanos();
+    }
+
+    public void recordWrite(String userKey) {
+        if (userKey != null) {
+            lastWriteNanos.put(userKey, System.nanoTime());
+        }
+    }
+
+    /**
+     * Отмечает запись текущего аутентифицированного пользователя (если он есть в потоке).
+     */
+    public void recordCurrentUserWrite() {
+        recordWrite(currentUserKey());
+    }
+
+    /**
+     * @return true, если текущий пользователь недавно писал и должен читать из primary.
+     */
+    public boolean currentUserRequiresPrimary() {
+        String userKey = currentUserKey();
+        if (userKey == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteNanos.get(userKey);
+        return writtenAt != null && System.nanoTime() - writtenAt < windowNanos;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        lastWriteNanos.values().removeIf(writtenAt -> now - writtenAt >= windowNanos);
+    }
+
+    private static String currentUserKey() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Периодически измеряет отставание реплик и выдает следующую здоровую реплику по кругу.
+ * Реплика считается здоровой, если отвечает и отстает не больше maxLag; пока ни одна
+ * не проверена или все отстают, чтения уходят в primary.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements DisposableBean {
+
+    // Если реплика проиграла весь полученный WAL, отставания нет, даже когда на primary давно не было записей
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END
+            """;
+
+    private final Map<String, HikariDataSource> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private volatile List<String> healthyReplicas = List.of();
+
+    public ReplicaLagMonitor(Map<String, HikariDataSource> replicas, Duration maxLag) {
+        this.replicas = replicas;
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    public Map<String, HikariDataSource> getReplicas() {
+        return replicas;
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    public Optional<String> nextHealthyReplica() {
+        List<String> healthy = healthyReplicas;
+        if (healthy.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(healthy.get(Math.floorMod(roundRobin.getAndIncrement(), healthy.size())));
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.read-replicas.lag-check-interval-ms:2000}")
+    public void checkLag() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        List<String> healthy = new ArrayList<>();
+        for (Map.Entry<String, HikariDataSource> entry : replicas.entrySet()) {
+            try {
+                Double lagMillis = new JdbcTemplate(entry.getValue()).queryForObject(LAG_SQL, Double.class);
+                if (lagMillis != null && lagMillis <= maxLagMillis) {
+                    healthy.add(entry.getKey());
+                } else {
+                    log.warn("Replica {} lags {} ms (max {} ms), reads go elsewhere", entry.getKey(), lagMillis, maxLagMillis);
+                }
+            } catch (Exception e) {
+                log.warn("Replica {} is unavailable: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        if (!healthy.equals(healthyReplicas)) {
+            log.info("Healthy read replicas: {}", healthy);
+        }
+        healthyReplicas = List.copyOf(healthy);
+    }
+
+    @Override
+    public void destroy() {
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
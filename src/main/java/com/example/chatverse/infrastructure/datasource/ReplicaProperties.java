@@ -0,0 +1,33 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реплики основного datasource для read-only транзакций.
+ * Пока список пуст, все запросы идут в primary.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.read-replicas")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** Реплика с отставанием больше этого значения не получает чтения. */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /** Сколько после своей записи пользователь читает из primary. */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
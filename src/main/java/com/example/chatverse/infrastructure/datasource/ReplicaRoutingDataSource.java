@@ -0,0 +1,37 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Направляет read-only транзакции на реплики основного шарда, остальное — в primary.
+ * Ключ определяется при получении физического соединения, поэтому datasource должен стоять
+ * за LazyConnectionDataSourceProxy: к этому моменту признак readOnly транзакции уже выставлен.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, ReadYourWritesTracker readYourWritesTracker) {
+        this.lagMonitor = lagMonitor;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                // Пишущая транзакция пользователя: его ближайшие чтения должны увидеть результат
+                readYourWritesTracker.recordCurrentUserWrite();
+            }
+            return PRIMARY;
+        }
+        if (readYourWritesTracker.currentUserRequiresPrimary()) {
+            return PRIMARY;
+        }
+        return lagMonitor.nextHealthyReplica().orElse(PRIMARY);
+    }
+}
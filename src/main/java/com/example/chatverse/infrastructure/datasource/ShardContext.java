@@ -0,0 +1,33 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Номер шарда для текущего потока. Должен быть установлен до получения соединения
+ * (то есть до начала транзакции), иначе используется основной шард.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT_SHARD.get();
+    }
+
+    public static <T> T callInShard(int shard, Supplier<T> action) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Отображает roomId на номер шарда. Используется тот же murmur2, что и в партиционере Kafka:
+ * если число партиций топика кратно числу шардов, партиция p целиком попадает в шард p % N,
+ * и консьюмер партиции пишет ровно в один шард.
+ */
+@Component
+public class ShardRouter {
+
+    private final int shardCount;
+
+    public ShardRouter(ShardingProperties shardingProperties) {
+        this.shardCount = 1 + shardingProperties.getShards().size();
+    }
+
+    public int shardFor(String roomId) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        return Utils.toPositive(Utils.murmur2(roomId.getBytes(StandardCharsets.UTF_8))) % shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
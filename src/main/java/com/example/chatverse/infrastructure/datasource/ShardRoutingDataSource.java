@@ -0,0 +1,38 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.List;
+
+/**
+ * Выбирает datasource шарда по {@link ShardContext}. Без установленного шарда запросы идут в основной (шард 0):
+ * пользователи, контакты, токены и сводки чатов живут только там. Обработка записей Kafka
+ * ({@link ConsumerWriteContext}) в основном шарде получает соединения из отдельного пула записи.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY_WRITER = "primary-writer";
+
+    private final List<HikariDataSource> ownedPools;
+
+    public ShardRoutingDataSource(List<HikariDataSource> ownedPools) {
+        this.ownedPools = ownedPools;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        if ((shard == null || shard == 0) && ConsumerWriteContext.isActive()) {
+            return PRIMARY_WRITER;
+        }
+        return shard;
+    }
+
+    @Override
+    public void destroy() {
+        // Пулы дополнительных шардов не являются бинами, закрываем их сами
+        ownedPools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.chatverse.infrastructure.datasource;
+
+import com.example.chatverse.domain.entity.ChatMessageEntity;
+import com.example.chatverse.domain.repository.ChatMessageRepository;
+import com.example.chatverse.domain.repository.MessageSearchHit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Слой маршрутизации хранилища сообщений поверх {@link ChatMessageRepository}.
+ * Все сообщения комнаты живут в одном шарде (по хешу roomId), поэтому история комнаты читается
+ * из одного шарда, а запись пачки сообщений группируется по шардам — одна транзакция на шард.
+ * Каждый вызов открывает собственную транзакцию уже после выбора шарда.
+ */
+@Component
+@Slf4j
+public class ShardedChatMessageStore {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO chat_messages (message_id, sender_id, recipient_id, room_id, content, timestamp,
+                                       message_type, attachment_id, attachment_name, attachment_content_type,
+                                       attachment_size)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (message_id, timestamp) DO NOTHING
+            """;
+
+    // Номер в комнате выдается только уже вставленным строкам, в той же транзакции: дубль, отброшенный
+    // ON CONFLICT, номер не расходует, и номера комнаты идут без пропусков. Строка chat_room_sequences
+    // комнаты блокируется до коммита, поэтому номера монотонны даже при одновременной записи с двух
+    // consumer'ов (например, во время ребалансировки). Строки пачки нумеруются в порядке id.
+    // UPDATE видит строки, вставленные предыдущим оператором транзакции (но не в CTE того же оператора).
+    // Условие по timestamp отсекает лишние партиции.
+    private static final String ASSIGN_SEQ_SQL = """
+            WITH pending AS (
+                SELECT id, timestamp, room_id,
+                       row_number() OVER (PARTITION BY room_id ORDER BY id) AS rn
+                FROM chat_messages
+                WHERE message_id = ANY (?) AND timestamp = ANY (?) AND room_seq IS NULL
+            ), counts AS (
+                SELECT room_id, count(*) AS n FROM pending GROUP BY room_id
+            ), seq AS (
+                INSERT INTO chat_room_sequences AS s (room_id, last_seq)
+                SELECT room_id, n FROM counts
+                ON CONFLICT (room_id) DO UPDATE SET last_seq = s.last_seq + EXCLUDED.last_seq
+                RETURNING room_id, last_seq
+            )
+            UPDATE chat_messages m
+            SET room_seq = seq.last_seq - counts.n + pending.rn
+            FROM pending
+                     JOIN counts USING (room_id)
+                     JOIN seq USING (room_id)
+            WHERE m.id = pending.id AND m.timestamp = pending.timestamp
+            RETURNING m.room_seq
+            """;
+
+    private static final Comparator<MessageSearchHit> SEARCH_ORDER = Comparator
+            .comparing(MessageSearchHit::getRank, Comparator.reverseOrder())
+            .thenComparing(MessageSearchHit::getMessageId, Comparator.reverseOrder());
+
+    private final ShardRouter shardRouter;
+    private final ChatMessageRepository chatMessageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+
+    public ShardedChatMessageStore(ShardRouter shardRouter,
+                                   ChatMessageRepository chatMessageRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        this.shardRouter = shardRouter;
+        this.chatMessageRepository = chatMessageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Сохраняет сообщение в шард его комнаты и проставляет ему номер в комнате (roomSeq).
+     * Повторная доставка того же сообщения игнорируется.
+     * @return true, если сообщение записано впервые.
+     */
+    public boolean save(ChatMessageEntity message) {
+        List<Long> roomSeq = inShard(shardRouter.shardFor(message.getRoomId()), () -> writeTransaction.execute(status -> {
+            if (jdbcTemplate.update(INSERT_SQL, ps -> bindInsert(ps, message)) == 0) {
+                return List.<Long>of();
+            }
+            return jdbcTemplate.query(ASSIGN_SEQ_SQL, ps -> bindMessageIds(ps, List.of(message)),
+                    (rs, rowNum) -> rs.getLong(1));
+        }));
+        if (roomSeq == null || roomSeq.isEmpty()) {
+            return false;
+        }
+        message.setRoomSeq(roomSeq.get(0));
+        return true;
+    }
+
+    /**
+     * Сохраняет пачку сообщений, группируя их по шардам: одна batch-вставка и одна транзакция на шард.
+     * @return Количество впервые записанных сообщений или -1, если драйвер не сообщил количество строк
+     * (повторно доставленные сообщения не вставляются, поэтому считать их вставленными нельзя).
+     */
+    public int saveAll(Collection<ChatMessageEntity> messages) {
+        Map<Integer, List<ChatMessageEntity>> byShard = new LinkedHashMap<>();
+        for (ChatMessageEntity message : messages) {
+            byShard.computeIfAbsent(shardRouter.shardFor(message.getRoomId()), shard -> new ArrayList<>()).add(message);
+        }
+
+        int inserted = 0;
+        boolean countUnknown = false;
+        for (Map.Entry<Integer, List<ChatMessageEntity>> entry : byShard.entrySet()) {
+            List<ChatMessageEntity> shardMessages = entry.getValue();
+            int[] counts = inShard(entry.getKey(), () -> writeTransaction.execute(status -> {
+                int[] batchCounts = jdbcTemplate.batchUpdate(INSERT_SQL, shardMessages, shardMessages.size(),
+                        ShardedChatMessageStore::bindInsert)[0];
+                jdbcTemplate.update(ASSIGN_SEQ_SQL, ps -> bindMessageIds(ps, shardMessages));
+                return batchCounts;
+            }));
+            for (int count : counts) {
+                // reWriteBatchedInserts может вернуть SUCCESS_NO_INFO (-2) вместо точного числа строк
+                if (count == java.sql.Statement.SUCCESS_NO_INFO) {
+                    countUnknown = true;
+                } else {
+                    inserted += count;
+                }
+            }
+            log.debug("Stored {} message(s) in shard {}", shardMessages.size(), entry.getKey());
+        }
+        return countUnknown ? -1 : inserted;
+    }
+
+    /**
+     * История комнаты начиная с указанного момента; читается ровно из одного шарда.
+     */
+    public List<ChatMessageEntity> findHistory(String roomId, Instant since) {
+        return inShard(shardRouter.shardFor(roomId), () -> readTransaction.execute(status ->
+                chatMessageRepository.findByRoomIdAndTimestampGreaterThanEqualOrderByTimestampAsc(roomId, since)));
+    }
+
+    /**
+     * Сообщения комнаты с номером больше afterSeq, по возрастанию номера; читается из одного шарда.
+     */
+    public List<ChatMessageEntity> findAfterSeq(String roomId, long afterSeq, int limit) {
+        return inShard(shardRouter.shardFor(roomId), () -> readTransaction.execute(status ->
+                chatMessageRepository.findByRoomIdAndRoomSeqGreaterThanOrderByRoomSeqAsc(roomId, afterSeq, Limit.of(limit))));
+    }
+
+    /**
+     * Полнотекстовый поиск по всем шардам: комнаты пользователя могут лежать в разных шардах,
+     * поэтому страница собирается слиянием лучших результатов каждого шарда.
+     * @param afterRank Курсор (null для первой страницы).
+     * @param afterMessageId Курсор (null для первой страницы).
+     * @param limit Сколько результатов вернуть.
+     */
+    public List<MessageSearchHit> search(Long userId, String query, Float afterRank, String afterMessageId, int limit) {
+        List<MessageSearchHit> merged = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            List<MessageSearchHit> shardHits = inShard(shard, () -> readTransaction.execute(status ->
+                    (afterRank == null || afterMessageId == null)
+                            ? chatMessageRepository.searchFirstPage(userId, query, limit)
+                            : chatMessageRepository.searchPageAfter(userId, query, afterRank, afterMessageId, limit)));
+            merged.addAll(shardHits);
+        }
+        merged.sort(SEARCH_ORDER);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * Есть ли в каком-либо шарде сообщение с этим вложением, где пользователь — отправитель или получатель.
+     */
+    public boolean isAttachmentSharedWith(String attachmentId, Long userId) {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            Boolean shared = inShard(shard, () -> readTransaction.execute(status -> jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM chat_messages WHERE attachment_id = ? AND (sender_id = ? OR recipient_id = ?))",
+                    Boolean.class, attachmentId, userId, userId)));
+            if (Boolean.TRUE.equals(shared)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Какие из вложений упоминаются в сообщениях хотя бы одного шарда.
+     */
+    public Set<String> findReferencedAttachments(Collection<String> attachmentIds) {
+        Set<String> referenced = new HashSet<>();
+        if (attachmentIds.isEmpty()) {
+            return referenced;
+        }
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            referenced.addAll(inShard(shard, () -> readTransaction.execute(status -> jdbcTemplate.query(
+                    "SELECT DISTINCT attachment_id FROM chat_messages WHERE attachment_id = ANY (?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", attachmentIds.toArray())),
+                    (rs, rowNum) -> rs.getString(1)))));
+        }
+        return referenced;
+    }
+
+    private static void bindInsert(PreparedStatement ps, ChatMessageEntity message) throws SQLException {
+        ps.setString(1, message.getMessageId());
+        ps.setLong(2, message.getSenderId());
+        ps.setLong(3, message.getRecipientId());
+        ps.setString(4, message.getRoomId());
+        ps.setString(5, message.getContent());
+        ps.setObject(6, OffsetDateTime.ofInstant(message.getTimestamp(), ZoneOffset.UTC));
+        ps.setString(7, message.getMessageType() != null ? message.getMessageType() : "TEXT");
+        ps.setString(8, message.getAttachmentId());
+        ps.setString(9, message.getAttachmentName());
+        ps.setString(10, message.getAttachmentContentType());
+        ps.setObject(11, message.getAttachmentSize(), Types.BIGINT);
+    }
+
+    private static void bindMessageIds(PreparedStatement ps, List<ChatMessageEntity> messages) throws SQLException {
+        Object[] messageIds = messages.stream().map(ChatMessageEntity::getMessageId).toArray();
+        Object[] timestamps = messages.stream().map(message -> Timestamp.from(message.getTimestamp())).toArray();
+        ps.setArray(1, ps.getConnection().createArrayOf("varchar", messageIds));
+        ps.setArray(2, ps.getConnection().createArrayOf("timestamptz", timestamps));
+    }
+
+    private static <T> T inShard(int shard, Supplier<T> action) {
+        return ShardContext.callInShard(shard, action);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.chatverse.infrastructure.ephemeral;
+
+import com.example.chatverse.application.dto.message.EphemeralEventDto;
+import com.example.chatverse.application.dto.message.EphemeralEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Быстрый путь для эфемерных событий (печатает, записывает голосовое): без Kafka и БД.
+ * События одного пользователя в одной комнате схлопываются: повтор того же типа раньше
+ * coalesce-window не рассылается, клиент сам держит индикатор ttl. При перегрузке транспорта
+ * событие отбрасывается — следующее придет через секунду-другую.
+ */
+@Component
+@Slf4j
+public class EphemeralEventService {
+
+    public static final String EVENTS_TOPIC_PREFIX = "/topic/events/";
+
+    private record LastEvent(EphemeralEventType type, long sentAtNanos) {
+    }
+
+    private final EphemeralEventTransport transport;
+    private final long coalesceWindowNanos;
+    private final long ttlMs;
+    private final ConcurrentMap<String, LastEvent> lastEvents = new ConcurrentHashMap<>();
+    private final Counter published;
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    public EphemeralEventService(EphemeralEventTransport transport,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.ephemeral.coalesce-window:2s}") Duration coalesceWindow,
+                                 @Value("${app.ephemeral.ttl:5s}") Duration ttl) {
+        this.transport = transport;
+        this.coalesceWindowNanos = coalesceWindow.toNanos();
+        this.ttlMs = ttl.toMillis();
+        this.published = counter(meterRegistry, "published");
+        this.coalesced = counter(meterRegistry, "coalesced");
+        this.dropped = counter(meterRegistry, "dropped");
+    }
+
+    /**
+     * Рассылает событие пользователя подписчикам комнаты, если оно не схлопнулось с предыдущим.
+     */
+    public void publish(long userId, String roomId, EphemeralEventType type) {
+        long now = System.nanoTime();
+        boolean[] send = new boolean[1];
+        lastEvents.compute(userId + ":" + roomId, (key, last) -> {
+            if (type == EphemeralEventType.STOPPED) {
+                // Гасить нечего, если индикатор не показан или уже погашен
+                send[0] = last != null && last.type() != EphemeralEventType.STOPPED;
+                return send[0] ? new LastEvent(type, now) : last;
+            }
+            send[0] = last == null || last.type() != type || now - last.sentAtNanos() >= coalesceWindowNanos;
+            return send[0] ? new LastEvent(type, now) : last;
+        });
+        if (!send[0]) {
+            coalesced.increment();
+            return;
+        }
+        EphemeralEventDto event = EphemeralEventDto.builder()
+                .type(type)
+                .roomId(roomId)
+                .userId(userId)
+                .ttlMs(ttlMs)
+                .build();
+        if (transport.publish(event)) {
+            published.increment();
+        } else {
+            dropped.increment();
+            log.debug("Ephemeral event {} for room {} dropped under load", type, roomId);
+        }
+    }
+
+    /**
+     * Забывает пары (пользователь, комната), от которых давно не было событий.
+     */
+    @Scheduled(fixedDelayString = "${app.ephemeral.cleanup-interval-ms:30000}")
+    public void evictIdle() {
+        long expireBefore = System.nanoTime() - Math.max(coalesceWindowNanos, Duration.ofMillis(ttlMs).toNanos());
+        lastEvents.values().removeIf(last -> last.sentAtNanos() - expireBefore < 0);
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("chat.ephemeral.events")
+                .description("Ephemeral room events by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.chatverse.infrastructure.ephemeral;
+
+import com.example.chatverse.application.dto.message.EphemeralEventDto;
+
+/**
+ * Доставка эфемерных событий подписчикам комнаты. Режим выбирается параметром
+ * app.ephemeral.transport (local | redis). Доставка без гарантий: при перегрузке событие теряется.
+ */
+public interface EphemeralEventTransport {
+
+    /**
+     * Передает событие подписчикам комнаты.
+     * @return false, если событие отброшено.
+     */
+    boolean publish(EphemeralEventDto event);
+}
@@ -0,0 +1,25 @@
+package com.example.chatverse.infrastructure.ephemeral;
+
+import com.example.chatverse.application.dto.message.EphemeralEventDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Доставка только подписчикам этого узла: для одного пода и локального запуска.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.ephemeral.transport", havingValue = "local")
+public class LocalEphemeralEventTransport implements EphemeralEventTransport {
+
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    @Override
+    public boolean publish(EphemeralEventDto event) {
+        messagingTemplate.getObject().convertAndSend(EphemeralEventService.EVENTS_TOPIC_PREFIX + event.getRoomId(), event);
+        return true;
+    }
+}
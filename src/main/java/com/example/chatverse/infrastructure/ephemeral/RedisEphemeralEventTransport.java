@@ -0,0 +1,125 @@
+package com.example.chatverse.infrastructure.ephemeral;
+
+import com.example.chatverse.application.dto.message.EphemeralEventDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Доставка через Redis pub/sub: каждый под подписан на общий канал и пересылает события
+ * подписчикам своего брокера. Публикация и пересылка идут на небольших пулах с ограниченной
+ * очередью; при переполнении событие отбрасывается, а не ждет.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.ephemeral.transport", havingValue = "redis", matchIfMissing = true)
+public class RedisEphemeralEventTransport implements EphemeralEventTransport {
+
+    private static final String CHANNEL = "chat:events";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final ThreadPoolExecutor publishExecutor;
+    private final ThreadPoolExecutor deliveryExecutor;
+    private RedisMessageListenerContainer listenerContainer;
+
+    public RedisEphemeralEventTransport(StringRedisTemplate redisTemplate,
+                                        RedisConnectionFactory connectionFactory,
+                                        ObjectMapper objectMapper,
+                                        ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                                        @Value("${app.ephemeral.workers:2}") int workers,
+                                        @Value("${app.ephemeral.queue-capacity:1000}") int queueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.objectMapper = objectMapper;
+        this.messagingTemplate = messagingTemplate;
+        this.publishExecutor = boundedExecutor("ephemeral-publish-", workers, queueCapacity,
+                new ThreadPoolExecutor.AbortPolicy());
+        // Событие, пришедшее из Redis в переполненную очередь пересылки, просто теряется
+        this.deliveryExecutor = boundedExecutor("ephemeral-delivery-", workers, queueCapacity,
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PostConstruct
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        // По умолчанию контейнер создает поток на каждое сообщение
+        listenerContainer.setTaskExecutor(deliveryExecutor);
+        listenerContainer.addMessageListener((message, pattern) -> deliver(message.getBody()), new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Override
+    public boolean publish(EphemeralEventDto event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (Exception e) {
+            log.warn("Failed to serialize ephemeral event for room {}: {}", event.getRoomId(), e.getMessage());
+            return false;
+        }
+        try {
+            publishExecutor.execute(() -> {
+                try {
+                    redisTemplate.convertAndSend(CHANNEL, json);
+                } catch (Exception e) {
+                    log.debug("Failed to publish ephemeral event for room {}: {}", event.getRoomId(), e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void deliver(byte[] body) {
+        try {
+            EphemeralEventDto event = objectMapper.readValue(new String(body, StandardCharsets.UTF_8), EphemeralEventDto.class);
+            messagingTemplate.getObject().convertAndSend(EphemeralEventService.EVENTS_TOPIC_PREFIX + event.getRoomId(), event);
+        } catch (Exception e) {
+            log.debug("Failed to deliver ephemeral event: {}", e.getMessage());
+        }
+    }
+
+    private static ThreadPoolExecutor boundedExecutor(String prefix, int workers, int queueCapacity,
+                                                      RejectedExecutionHandler rejectionHandler) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, prefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, rejectionHandler);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+        publishExecutor.shutdownNow();
+        deliveryExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.chatverse.infrastructure.exception;
+
+public class PayloadTooLargeException extends AppException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
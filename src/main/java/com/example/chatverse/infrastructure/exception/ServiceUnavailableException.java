@@ -0,0 +1,7 @@
+package com.example.chatverse.infrastructure.exception;
+
+public class ServiceUnavailableException extends AppException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
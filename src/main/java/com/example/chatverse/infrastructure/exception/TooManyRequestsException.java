@@ -0,0 +1,7 @@
+package com.example.chatverse.infrastructure.exception;
+
+public class TooManyRequestsException extends AppException {
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сериализатор значений producer'а: сообщения — в JSON, а byte[] — как есть. Сырые байты
+ * отправляются в DLT для записей, которые не удалось десериализовать, и при переигрывании DLT.
+ * Подключается через spring.kafka.producer.value-serializer.
+ */
+public class ChatPayloadSerializer extends DelegatingByTypeSerializer {
+
+    public ChatPayloadSerializer() {
+        super(delegates(), true);
+    }
+
+    private static Map<Class<?>, Serializer<?>> delegates() {
+        // Порядок важен: byte[] тоже подходит под Object
+        Map<Class<?>, Serializer<?>> delegates = new LinkedHashMap<>();
+        delegates.put(byte[].class, new ByteArraySerializer());
+        delegates.put(Object.class, new JsonSerializer<>());
+        return delegates;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Лаг группы consumer'ов по каждой партиции chat-messages: конец партиции минус зафиксированное
+ * смещение группы. Считается по данным брокера; суммарный лаг ({@link #getTotalLag()}) — по всей группе,
+ * а метрика chat.kafka.consumer.lag{topic, partition} публикуется только для партиций, назначенных
+ * consumer'ам этого пода: при отзыве партиции (ребалансировка) ее gauge удаляется из реестра, чтобы
+ * один и тот же лаг не отдавали несколько подов и не оставались замершие значения.
+ * Подключается к контейнерам listener'ов как rebalance listener (см. KafkaConsumerConfig).
+ */
+@Component
+@Slf4j
+public class ConsumerLagMonitor implements ConsumerAwareRebalanceListener {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final AdminClient adminClient;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<TopicPartition, AtomicLong> lagByPartition = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TopicPartition, Gauge> gauges = new ConcurrentHashMap<>();
+    private volatile long totalLag;
+    private volatile long lastUpdatedAt;
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String groupId;
+
+    public ConsumerLagMonitor(AdminClient adminClient, MeterRegistry meterRegistry) {
+        this.adminClient = adminClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.consumer.lag-check-interval-ms:10000}")
+    public void refresh() {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata()
+                    .get(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .entrySet().stream()
+                    .filter(entry -> entry.getKey().topic().equals(chatTopicName) && entry.getValue() != null)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            if (committed.isEmpty()) {
+                return;
+            }
+            Map<TopicPartition, OffsetSpec> latestRequest = new HashMap<>();
+            committed.keySet().forEach(partition -> latestRequest.put(partition, OffsetSpec.latest()));
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest = adminClient.listOffsets(latestRequest)
+                    .all()
+                    .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+            long total = 0;
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+                ListOffsetsResult.ListOffsetsResultInfo end = latest.get(entry.getKey());
+                if (end == null) {
+                    continue;
+                }
+                long lag = Math.max(0, end.offset() - entry.getValue().offset());
+                AtomicLong value = lagByPartition.get(entry.getKey());
+                if (value != null) {
+                    value.set(lag);
+                }
+                total += lag;
+            }
+            totalLag = total;
+            lastUpdatedAt = System.currentTimeMillis();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Cannot compute consumer lag for group {}: {}", groupId, e.getMessage());
+        }
+    }
+
+    /**
+     * Суммарный лаг группы по всем партициям на момент последней проверки.
+     */
+    public long getTotalLag() {
+        return totalLag;
+    }
+
+    /**
+     * Время последнего успешного расчета (epoch millis), 0 — еще не рассчитывался.
+     */
+    public long getLastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            if (partition.topic().equals(chatTopicName)) {
+                lagByPartition.computeIfAbsent(partition, this::registerGauge);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(this::unregisterGauge);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.forEach(this::unregisterGauge);
+    }
+
+    private AtomicLong registerGauge(TopicPartition partition) {
+        AtomicLong value = new AtomicLong();
+        gauges.put(partition, Gauge.builder("chat.kafka.consumer.lag", value, AtomicLong::get)
+                .description("Records in the partition not yet committed by the consumer group")
+                .tag("topic", partition.topic())
+                .tag("partition", String.valueOf(partition.partition()))
+                .register(meterRegistry));
+        return value;
+    }
+
+    private void unregisterGauge(TopicPartition partition) {
+        lagByPartition.remove(partition);
+        Gauge gauge = gauges.remove(partition);
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+}
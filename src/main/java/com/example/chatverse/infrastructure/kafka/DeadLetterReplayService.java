@@ -0,0 +1,102 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Переигрывание записей из chat-messages.DLT в основной топик (например, после исправления ошибки).
+ * Записи читаются отдельной группой consumer'а, поэтому прогресс переигрывания сохраняется между вызовами.
+ * Значения копируются байт в байт, служебные заголовки DLT и retry-топиков не переносятся:
+ * для consumer'а это новая запись с полным набором попыток.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+    private static final String REPLAY_GROUP_ID = "chatverse-dlt-replay";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Value("${app.kafka.consumer.dlt-replay.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    public DeadLetterReplayService(ConsumerFactory<?, ?> consumerFactory, KafkaTemplate<String, Object> kafkaTemplate) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    /**
+     * Переносит до maxRecords записей из DLT в основной топик.
+     * @return Количество переигранных записей.
+     */
+    public synchronized int replay(int maxRecords) {
+        int limit = Math.max(1, Math.min(maxRecords, maxBatchSize));
+        String dltTopic = chatTopicName + ".DLT";
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, limit);
+
+        try (Consumer<?, ?> rawConsumer = consumerFactory.createConsumer(REPLAY_GROUP_ID, null, null, overrides)) {
+            @SuppressWarnings("unchecked")
+            Consumer<String, byte[]> consumer = (Consumer<String, byte[]>) rawConsumer;
+            List<PartitionInfo> partitions = consumer.partitionsFor(dltTopic);
+            if (partitions == null || partitions.isEmpty()) {
+                log.info("DLT {} does not exist, nothing to replay", dltTopic);
+                return 0;
+            }
+            consumer.assign(partitions.stream().map(p -> new TopicPartition(p.topic(), p.partition())).toList());
+
+            int replayed = 0;
+            while (replayed < limit) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (replayed + sends.size() >= limit) {
+                        break;
+                    }
+                    sends.add(kafkaTemplate.send(chatTopicName, record.key(), record.value()));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+                // Смещения DLT фиксируем только после подтверждения записи в основной топик
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+                consumer.commitSync(offsets);
+                replayed += sends.size();
+            }
+            log.info("Replayed {} record(s) from {} to {}", replayed, dltTopic, chatTopicName);
+            return replayed;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Локальный журнал сообщений, которые не удалось передать в Kafka. Журнал — последовательность
+ * сегментов фиксированного размера, отображенных в память (mmap): запись — копирование в страницы
+ * page cache без системного вызова, а fsync выполняется пачкой раз в flush-interval.
+ * Запись: [длина][CRC32][длина ключа][ключ][JSON сообщения]; нулевая длина — конец сегмента.
+ * Позиция релея (все, что до нее, уже подтверждено Kafka) хранится в файле relay.checkpoint,
+ * полностью вычитанные сегменты удаляются.
+ * Читает журнал только {@link DurableOutboxRelay}, в порядке записи, поэтому порядок сообщений
+ * одной комнаты сохраняется.
+ */
+@Component
+@Slf4j
+public class DurableMessageLog {
+
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "relay.checkpoint";
+
+    /**
+     * Позиция в журнале: номер сегмента и смещение внутри него.
+     */
+    public record Position(long segment, int offset) {
+    }
+
+    /**
+     * Запись журнала и позиция сразу за ней.
+     */
+    public record Entry(String key, ChatMessage message, Position next) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final ConcurrentSkipListMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Integer> pendingByKey = new ConcurrentHashMap<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    // Состояние записи, под монитором this
+    private long activeSegment;
+    private MappedByteBuffer active;
+    private int forcedOffset;
+    private volatile Position committed;
+
+    // Состояние релея, меняется только в acknowledge
+    private volatile Position checkpoint;
+    private FileChannel checkpointChannel;
+
+    public DurableMessageLog(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             @Value("${app.kafka.producer.durable-outbox.enabled:true}") boolean enabled,
+                             @Value("${app.kafka.producer.durable-outbox.dir:outbox}") Path directory,
+                             @Value("${app.kafka.producer.durable-outbox.segment-size-mb:64}") int segmentSizeMb,
+                             @Value("${app.kafka.producer.durable-outbox.max-segments:16}") int maxSegments) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.maxSegments = maxSegments;
+        Gauge.builder("chat.kafka.durable-outbox.pending", pendingCount, AtomicLong::get)
+                .description("Messages stored in the local outbox log and not yet relayed to Kafka")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Position saved = readCheckpoint();
+
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (long id : ids) {
+            if (saved != null && id < saved.segment()) {
+                Files.deleteIfExists(segmentPath(id));
+            } else {
+                segments.put(id, map(id));
+            }
+        }
+        if (segments.isEmpty()) {
+            long first = saved != null ? saved.segment() : 0;
+            segments.put(first, map(first));
+        }
+        checkpoint = saved != null && segments.containsKey(saved.segment())
+                ? saved : new Position(segments.firstKey(), 0);
+
+        activeSegment = segments.lastKey();
+        active = segments.get(activeSegment);
+        int end = recover();
+        active.position(end);
+        forcedOffset = end;
+        committed = new Position(activeSegment, end);
+        if (pendingCount.get() > 0) {
+            log.info("Local outbox has {} message(s) pending relay to Kafka", pendingCount.get());
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        checkpointChannel.close();
+    }
+
+    /**
+     * Дописывает сообщение в журнал.
+     * @return false, если журнал выключен, переполнен или сообщение не удалось сериализовать.
+     */
+    public boolean append(String key, ChatMessage message) {
+        if (!enabled) {
+            return false;
+        }
+        byte[] payload;
+        try {
+            payload = encode(key, message);
+        } catch (IOException e) {
+            log.error("Cannot serialize message {} for the local outbox", message.getMessageId(), e);
+            return false;
+        }
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (this) {
+            if (active.position() + recordSize > segmentSize && !roll()) {
+                return false;
+            }
+            int offset = active.position();
+            active.put(offset + HEADER_SIZE, payload);
+            active.putInt(offset + 4, (int) crc.getValue());
+            active.putInt(offset, payload.length);
+            active.position(offset + recordSize);
+            pendingByKey.merge(key, 1, Integer::sum);
+            pendingCount.incrementAndGet();
+            committed = new Position(activeSegment, offset + recordSize);
+        }
+        return true;
+    }
+
+    /**
+     * Есть ли в журнале неотправленные сообщения с этим ключом. Пока есть, новые сообщения
+     * комнаты тоже идут через журнал, иначе они обгонят более ранние.
+     */
+    public boolean hasPending(String key) {
+        return pendingByKey.containsKey(key);
+    }
+
+    public boolean hasPending() {
+        return pendingCount.get() > 0;
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Журнал пишет в последний допустимый сегмент: после его заполнения прием сообщений
+     * при недоступной Kafka начнет отклоняться.
+     */
+    public boolean isNearlyFull() {
+        return !enabled || segments.size() >= maxSegments;
+    }
+
+    /**
+     * Читает до maxEntries записей начиная с последней подтвержденной позиции.
+     */
+    public List<Entry> read(int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        Position position = checkpoint;
+        Position end = committed;
+        while (entries.size() < maxEntries && position != null) {
+            if (position.segment() == end.segment() && position.offset() >= end.offset()) {
+                break;
+            }
+            MappedByteBuffer buffer = segments.get(position.segment());
+            Entry entry = buffer != null ? readAt(buffer, position) : null;
+            if (entry == null) {
+                // Конец сегмента: переходим к следующему, если он уже есть
+                position = position.segment() < end.segment() ? new Position(position.segment() + 1, 0) : null;
+                continue;
+            }
+            entries.add(entry);
+            position = entry.next();
+        }
+        return entries;
+    }
+
+    /**
+     * Отмечает записи как переданные в Kafka. Записи должны идти подряд от текущей позиции релея.
+     */
+    public void acknowledge(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (Entry entry : entries) {
+            pendingByKey.computeIfPresent(entry.key(), (key, count) -> count == 1 ? null : count - 1);
+        }
+        pendingCount.addAndGet(-entries.size());
+        Position position = entries.get(entries.size() - 1).next();
+        writeCheckpoint(position);
+        checkpoint = position;
+        for (Map.Entry<Long, MappedByteBuffer> segment : segments.headMap(position.segment()).entrySet()) {
+            segments.remove(segment.getKey());
+            try {
+                Files.deleteIfExists(segmentPath(segment.getKey()));
+            } catch (IOException e) {
+                log.warn("Cannot delete relayed outbox segment {}: {}", segment.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Пакетный fsync записанного с прошлого вызова.
+     */
+    @Scheduled(fixedDelayString = "${app.kafka.producer.durable-outbox.flush-interval-ms:50}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        int position = active.position();
+        if (position > forcedOffset) {
+            active.force(forcedOffset, position - forcedOffset);
+            forcedOffset = position;
+        }
+    }
+
+    private boolean roll() {
+        if (segments.size() >= maxSegments) {
+            log.error("Local outbox is full ({} segments), Kafka has been unavailable for too long", maxSegments);
+            return false;
+        }
+        active.force();
+        try {
+            activeSegment++;
+            active = map(activeSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create outbox segment " + activeSegment, e);
+        }
+        segments.put(activeSegment, active);
+        forcedOffset = 0;
+        return true;
+    }
+
+    /**
+     * Восстанавливает счетчики неотправленных записей и находит конец последнего сегмента.
+     * Недописанная при сбое запись не проходит проверку CRC и считается концом журнала.
+     */
+    private int recover() {
+        int end = 0;
+        for (Map.Entry<Long, MappedByteBuffer> segment : segments.tailMap(checkpoint.segment()).entrySet()) {
+            Position position = new Position(segment.getKey(),
+                    segment.getKey() == checkpoint.segment() ? checkpoint.offset() : 0);
+            Entry entry;
+            while ((entry = readAt(segment.getValue(), position)) != null) {
+                pendingByKey.merge(entry.key(), 1, Integer::sum);
+                pendingCount.incrementAndGet();
+                position = entry.next();
+            }
+            end = position.offset();
+        }
+        return end;
+    }
+
+    private Entry readAt(MappedByteBuffer buffer, Position position) {
+        int offset = position.offset();
+        if (offset + HEADER_SIZE > segmentSize) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_SIZE + length > segmentSize) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_SIZE, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            log.warn("Corrupted record in outbox segment {} at offset {}, treating it as the end of the segment",
+                    position.segment(), offset);
+            return null;
+        }
+        try {
+            ByteBuffer data = ByteBuffer.wrap(payload);
+            byte[] key = new byte[data.getShort()];
+            data.get(key);
+            ChatMessage message = objectMapper.readValue(payload, data.position(), data.remaining(), ChatMessage.class);
+            return new Entry(new String(key, StandardCharsets.UTF_8), message,
+                    new Position(position.segment(), offset + HEADER_SIZE + length));
+        } catch (IOException e) {
+            log.error("Cannot decode record in outbox segment {} at offset {}", position.segment(), offset, e);
+            return null;
+        }
+    }
+
+    private byte[] encode(String key, ChatMessage message) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] json = objectMapper.writeValueAsBytes(message);
+        return ByteBuffer.allocate(2 + keyBytes.length + json.length)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .put(json)
+                .array();
+    }
+
+    private MappedByteBuffer map(long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Отображение остается действительным и после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    private Position readCheckpoint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        if (checkpointChannel.read(buffer, 0) < 12) {
+            return null;
+        }
+        buffer.flip();
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private void writeCheckpoint(Position position) {
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset()).flip();
+        try {
+            checkpointChannel.write(buffer, 0);
+            checkpointChannel.force(false);
+        } catch (IOException e) {
+            // Не критично: после перезапуска часть сообщений уйдет повторно, consumer'ы идемпотентны
+            log.warn("Cannot persist outbox relay checkpoint: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переносит сообщения из {@link DurableMessageLog} в Kafka, когда брокер снова доступен.
+ * Пачка отправляется целиком и подтверждается по первой неудаче: все, что после нее, будет
+ * отправлено повторно в следующий раз (дубликаты отсекают consumer'ы по message_id).
+ */
+@Component
+@Slf4j
+public class DurableOutboxRelay {
+
+    private final DurableMessageLog messageLog;
+    private final KafkaTemplate<String, ChatMessage> kafkaTemplate;
+    private final ProducerCircuitBreaker circuitBreaker;
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Value("${app.kafka.producer.durable-outbox.relay-batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.kafka.producer.durable-outbox.relay-ack-timeout-ms:10000}")
+    private long ackTimeoutMs;
+
+    public DurableOutboxRelay(DurableMessageLog messageLog, KafkaTemplate<String, ChatMessage> kafkaTemplate,
+                              ProducerCircuitBreaker circuitBreaker) {
+        this.messageLog = messageLog;
+        this.kafkaTemplate = kafkaTemplate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.producer.durable-outbox.relay-interval-ms:500}")
+    public void relay() {
+        while (messageLog.hasPending() && circuitBreaker.allowRequest()) {
+            // В HALF_OPEN релей держит единственное разрешение на пробу и отправляет одно сообщение
+            boolean probe = circuitBreaker.getState() == ProducerCircuitBreaker.State.HALF_OPEN;
+            List<DurableMessageLog.Entry> batch = messageLog.read(probe ? 1 : batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            int sent = send(batch);
+            messageLog.acknowledge(batch.subList(0, sent));
+            log.atInfo()
+                    .addKeyValue("relayed", sent)
+                    .addKeyValue("pending", messageLog.getPendingCount())
+                    .log("Relayed messages from the local outbox to Kafka");
+            if (sent < batch.size()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Сколько записей с начала пачки подтверждены Kafka.
+     */
+    private int send(List<DurableMessageLog.Entry> batch) {
+        List<CompletableFuture<SendResult<String, ChatMessage>>> futures = new ArrayList<>(batch.size());
+        try {
+            for (DurableMessageLog.Entry entry : batch) {
+                futures.add(kafkaTemplate.send(chatTopicName, entry.key(), entry.message()));
+            }
+        } catch (Exception e) {
+            log.warn("Outbox relay stopped, Kafka send failed: {}", e.getMessage());
+            circuitBreaker.recordFailure();
+        }
+        int acknowledged = 0;
+        for (CompletableFuture<SendResult<String, ChatMessage>> future : futures) {
+            try {
+                future.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+                circuitBreaker.recordSuccess();
+                acknowledged++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("Outbox relay stopped, Kafka did not acknowledge a message: {}", e.getMessage());
+                circuitBreaker.recordFailure();
+                break;
+            }
+        }
+        return acknowledged;
+    }
+}
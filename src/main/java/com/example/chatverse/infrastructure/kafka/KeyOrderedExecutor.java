@@ -0,0 +1,227 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import com.example.chatverse.infrastructure.datasource.ConsumerWriteContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельная обработка записей Kafka с сохранением порядка по ключу. Каждая запись попадает
+ * в «полосу» (однопоточный executor) по хешу ключа: записи одной комнаты выполняются строго
+ * по очереди, записи разных комнат — параллельно, даже если они пришли из одной партиции.
+ * Потоки полос работают в {@link ConsumerWriteContext}, то есть пишут в основной шард через пул записи.
+ * <p>
+ * Число незавершенных задач ограничено max-in-flight. При переполнении поток consumer'а ждет не дольше
+ * saturation-timeout, затем ставит контейнеры listener'ов на паузу и принимает запись сверх лимита:
+ * пока пауза, poll() возвращает пустые пачки и consumer не вылетает из группы по max.poll.interval.ms.
+ * Сверх лимита может оказаться не больше остатка уже полученных пачек (max.poll.records на consumer).
+ * Пауза снимается, когда в обработке остается не больше половины лимита.
+ * <p>
+ * Порядок гарантируется только в пределах одной доставки: запись, ушедшая после ошибки в retry-топик
+ * (см. KafkaRetryConfig), обрабатывается позже следующих сообщений той же комнаты. Номер в комнате
+ * (roomSeq) назначается при сохранении, поэтому такая запись получает номер после них.
+ */
+@Component
+@Slf4j
+public class KeyOrderedExecutor {
+
+    /**
+     * Приостановка и возобновление чтения из Kafka при переполнении.
+     */
+    public interface FlowControl {
+        void pause();
+
+        void resume();
+    }
+
+    private final ExecutorService[] lanes;
+    private final int maxInFlight;
+    private final long saturationTimeoutNanos;
+    private final FlowControl flowControl;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean paused = new AtomicBoolean();
+    private final Counter saturations;
+    private volatile boolean frozen;
+
+    @Autowired
+    public KeyOrderedExecutor(@Value("${app.kafka.consumer.processing-lanes:16}") int laneCount,
+                              @Value("${app.kafka.consumer.max-in-flight:1000}") int maxInFlight,
+                              @Value("${app.kafka.consumer.saturation-timeout:1s}") Duration saturationTimeout,
+                              ObjectProvider<KafkaListenerEndpointRegistry> listenerRegistry,
+                              MeterRegistry meterRegistry) {
+        // Реестр берется лениво: контейнеры listener'ов сами зависят от этого executor'а
+        this(laneCount, maxInFlight, saturationTimeout, new FlowControl() {
+            @Override
+            public void pause() {
+                listenerRegistry.getObject().getListenerContainers().forEach(MessageListenerContainer::pause);
+            }
+
+            @Override
+            public void resume() {
+                listenerRegistry.getObject().getListenerContainers().forEach(MessageListenerContainer::resume);
+            }
+        }, meterRegistry);
+    }
+
+    KeyOrderedExecutor(int laneCount, int maxInFlight, Duration saturationTimeout, FlowControl flowControl,
+                       MeterRegistry meterRegistry) {
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "kafka-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(() -> {
+                    ConsumerWriteContext.enter();
+                    task.run();
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.maxInFlight = maxInFlight;
+        this.saturationTimeoutNanos = saturationTimeout.toNanos();
+        this.flowControl = flowControl;
+        Gauge.builder("chat.kafka.consumer.in-flight", inFlight, AtomicInteger::get)
+                .description("Kafka records dispatched to processing lanes and not yet completed")
+                .register(meterRegistry);
+        this.saturations = Counter.builder("chat.kafka.consumer.saturated")
+                .description("Times the Kafka listeners were paused because processing lanes were full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит задачу в полосу ключа.
+     * @return Future, завершающийся вместе с задачей (или с ее исключением).
+     */
+    public CompletableFuture<Void> submit(String key, Runnable task) {
+        try {
+            if (!awaitCapacity()) {
+                pauseConsumers();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        inFlight.incrementAndGet();
+        try {
+            return CompletableFuture.runAsync(task, lanes[laneFor(key)])
+                    .whenComplete((result, ex) -> onTaskCompleted());
+        } catch (RuntimeException e) {
+            onTaskCompleted();
+            throw e;
+        }
+    }
+
+    /**
+     * Ждет, пока все принятые задачи завершатся.
+     * @return true, если дождались до истечения timeout.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Больше не снимает паузу с контейнеров: при остановке пода их ставит на паузу и останавливает
+     * GracefulDrainCoordinator, и освободившиеся полосы не должны возобновлять чтение.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    private boolean awaitCapacity() throws InterruptedException {
+        if (inFlight.get() < maxInFlight) {
+            return true;
+        }
+        long deadline = System.nanoTime() + saturationTimeoutNanos;
+        synchronized (this) {
+            while (inFlight.get() >= maxInFlight) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void pauseConsumers() {
+        if (paused.compareAndSet(false, true)) {
+            saturations.increment();
+            log.warn("Kafka processing lanes are saturated ({} record(s) in flight), pausing listeners", inFlight.get());
+            flowControl.pause();
+        }
+    }
+
+    private void onTaskCompleted() {
+        int remaining = inFlight.decrementAndGet();
+        if (remaining <= maxInFlight / 2 && !frozen && paused.compareAndSet(true, false)) {
+            log.info("Kafka processing lanes drained to {} record(s) in flight, resuming listeners", remaining);
+            flowControl.resume();
+        }
+        if (remaining < maxInFlight) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private int laneFor(String key) {
+        if (key == null) {
+            return ThreadLocalRandom.current().nextInt(lanes.length);
+        }
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    /**
+     * Дорабатывает уже принятые задачи: их смещения подтверждаются только по завершении.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        frozen = true;
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Kafka processing lane did not finish in time, {} record(s) will be redelivered",
+                        inFlight.get());
+                lane.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный буфер исходящих сообщений между потоками приема (STOMP, REST) и producer'ом Kafka.
+ * Емкость считает и ожидающие, и уже отправленные, но еще не подтвержденные брокером сообщения:
+ * место освобождается только в callback'е отправки. Когда буфер полон, сообщение сразу отклоняется.
+ */
+@Component
+public class MessageOutbox {
+
+    /**
+     * Сообщение вместе с ключом партиции.
+     */
+    public record Entry(String key, ChatMessage message) {
+    }
+
+    private final int capacity;
+    private final Semaphore permits;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Counter rejected;
+
+    public MessageOutbox(@Value("${app.kafka.producer.outbox.capacity:10000}") int capacity, MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+        Gauge.builder("chat.kafka.outbox.size", this, MessageOutbox::size)
+                .description("Messages accepted but not yet acknowledged by Kafka")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.kafka.outbox.rejected")
+                .description("Messages rejected because the outbox was full or the producer circuit was open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит сообщение в очередь, если есть место.
+     * @return false, если буфер полон.
+     */
+    public boolean offer(String key, ChatMessage message) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        queue.add(new Entry(key, message));
+        return true;
+    }
+
+    /**
+     * Следующее сообщение для отправки или null, если за timeout ничего не пришло.
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Освобождает место после подтверждения (или окончательной ошибки) отправки.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public int size() {
+        return capacity - permits.availablePermits();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
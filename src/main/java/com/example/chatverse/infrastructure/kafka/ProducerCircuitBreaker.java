@@ -0,0 +1,144 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker по доле ошибок producer'а Kafka в скользящем окне последних отправок.
+ * Открытый breaker сразу отклоняет новые сообщения, не дожидаясь max.block.ms;
+ * по истечении open-duration пропускает ровно одну пробную отправку (HALF_OPEN), остальные вызовы
+ * отклоняются, пока результат пробы не переведет breaker в CLOSED или обратно в OPEN.
+ * Проверка состояния на горячем пути — чтение volatile-поля, учет результатов идет в callback'ах producer'а.
+ */
+@Component
+@Slf4j
+public class ProducerCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final long NO_PROBE = Long.MIN_VALUE;
+
+    private final boolean[] outcomes; // true — ошибка
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    // Момент выдачи разрешения на пробу в HALF_OPEN; NO_PROBE — разрешение свободно
+    private final AtomicLong probeStartedAt = new AtomicLong(NO_PROBE);
+    private int position;
+    private int recorded;
+    private int failures;
+
+    public ProducerCircuitBreaker(@Value("${app.kafka.producer.circuit-breaker.window-size:50}") int windowSize,
+                                  @Value("${app.kafka.producer.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                  @Value("${app.kafka.producer.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                  @Value("${app.kafka.producer.circuit-breaker.open-duration:10s}") Duration openDuration,
+                                  MeterRegistry meterRegistry) {
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        Gauge.builder("chat.kafka.producer.circuit.open", this, breaker -> breaker.state == State.CLOSED ? 0 : 1)
+                .description("1 while the Kafka producer circuit breaker is open or half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Можно ли отправлять новое сообщение. В HALF_OPEN true получает только вызов, взявший разрешение на пробу.
+     */
+    public boolean allowRequest() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (current == State.OPEN) {
+            if (now - openedAt < openDurationNanos) {
+                return false;
+            }
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    probeStartedAt.set(NO_PROBE);
+                    state = State.HALF_OPEN;
+                    log.info("Kafka producer circuit breaker is half-open, probing the broker");
+                }
+            }
+        }
+        return tryAcquireProbe(now);
+    }
+
+    /**
+     * Разрешение на пробу выдается одному вызову (CAS). Если результат пробы не пришел за open-duration
+     * (например, получивший разрешение так и не отправил сообщение), разрешение выдается заново.
+     */
+    private boolean tryAcquireProbe(long now) {
+        long started = probeStartedAt.get();
+        if (started != NO_PROBE && now - started < openDurationNanos) {
+            return false;
+        }
+        // Проба могла уже завершиться неудачей и снова открыть breaker
+        return probeStartedAt.compareAndSet(started, now) && state == State.HALF_OPEN;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            probeStartedAt.set(NO_PROBE);
+            state = State.CLOSED;
+            log.info("Kafka producer circuit breaker closed");
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % outcomes.length;
+    }
+
+    private void open() {
+        log.warn("Kafka producer circuit breaker opened: {} of the last {} sends failed", failures, recorded);
+        reset();
+        openedAt = System.nanoTime();
+        state = State.OPEN;
+    }
+
+    private void reset() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
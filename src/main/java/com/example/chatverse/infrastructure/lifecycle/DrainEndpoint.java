@@ -0,0 +1,26 @@
+package com.example.chatverse.infrastructure.lifecycle;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * POST /actuator/drain — вызывается из preStop-хука k8s и возвращается, когда под освобожден.
+ * Доступен только с localhost (см. SecurityConfig).
+ */
+@Component
+@Endpoint(id = "drain")
+@RequiredArgsConstructor
+public class DrainEndpoint {
+
+    private final GracefulDrainCoordinator drainCoordinator;
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        boolean started = drainCoordinator.drain();
+        return Map.of("drained", true, "alreadyDrained", !started);
+    }
+}
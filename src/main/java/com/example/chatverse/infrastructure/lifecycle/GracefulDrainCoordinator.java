@@ -0,0 +1,161 @@
+package com.example.chatverse.infrastructure.lifecycle;
+
+import com.example.chatverse.infrastructure.kafka.KeyOrderedExecutor;
+import com.example.chatverse.infrastructure.websocket.StompSessionPrincipal;
+import com.example.chatverse.infrastructure.websocket.StompSessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Порядок остановки пода при rolling deploy:
+ * <ol>
+ *     <li>readiness переходит в REFUSING_TRAFFIC, новые STOMP CONNECT отклоняются;</li>
+ *     <li>каждый клиент получает в /user/queue/system кадр RECONNECT со случайной задержкой
+ *     в пределах reconnect-spread, и в этот момент его сессия закрывается (1012 Service Restart):
+ *     переподключения размазаны по времени, а не приходят в одну секунду;</li>
+ *     <li>listener'ы Kafka ставятся на паузу, принятые записи дорабатываются, затем контейнеры
+ *     останавливаются с фиксацией смещений — партиции переходят к другим подам один раз.</li>
+ * </ol>
+ * Запускается из preStop (POST /actuator/drain на порту actuator'а). При закрытии контекста — только
+ * если включен app.shutdown.drain-on-close (профиль prod, где pod может остановиться и без preStop):
+ * локальный перезапуск и тесты не ждут reconnect-spread.
+ */
+@Component
+@Slf4j
+public class GracefulDrainCoordinator {
+
+    private static final String SYSTEM_QUEUE = "/queue/system";
+
+    private final StompSessionRegistry sessionRegistry;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final KeyOrderedExecutor keyOrderedExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicBoolean drained = new AtomicBoolean();
+
+    @Value("${app.shutdown.reconnect-spread:15s}")
+    private Duration reconnectSpread;
+
+    @Value("${app.shutdown.consumer-drain-timeout:10s}")
+    private Duration consumerDrainTimeout;
+
+    @Value("${app.shutdown.drain-on-close:false}")
+    private boolean drainOnClose;
+
+    public GracefulDrainCoordinator(StompSessionRegistry sessionRegistry,
+                                    ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                                    KafkaListenerEndpointRegistry listenerRegistry,
+                                    KeyOrderedExecutor keyOrderedExecutor,
+                                    ApplicationEventPublisher eventPublisher) {
+        this.sessionRegistry = sessionRegistry;
+        this.messagingTemplate = messagingTemplate;
+        this.listenerRegistry = listenerRegistry;
+        this.keyOrderedExecutor = keyOrderedExecutor;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        if (drainOnClose) {
+            drain();
+        }
+    }
+
+    /**
+     * Выполняет остановку один раз; повторные вызовы сразу возвращают false.
+     */
+    public boolean drain() {
+        if (!drained.compareAndSet(false, true)) {
+            return false;
+        }
+        log.info("Draining node: {} WebSocket session(s)", sessionRegistry.getSessionCount());
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        sessionRegistry.stopAcceptingConnections();
+        try {
+            drainWebSocketSessions();
+            drainKafkaConsumers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Node drained");
+        return true;
+    }
+
+    private void drainWebSocketSessions() throws InterruptedException {
+        Map<String, StompSessionPrincipal> principals = new HashMap<>();
+        for (StompSessionPrincipal principal : sessionRegistry.getPrincipals()) {
+            principals.put(principal.getSessionId(), principal);
+        }
+        List<String> sessionIds = sessionRegistry.getSessionIds();
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        long spreadMs = Math.max(1, reconnectSpread.toMillis());
+        CountDownLatch closed = new CountDownLatch(sessionIds.size());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (String sessionId : sessionIds) {
+                long delayMs = ThreadLocalRandom.current().nextLong(spreadMs);
+                StompSessionPrincipal principal = principals.get(sessionId);
+                if (principal != null) {
+                    notifyReconnect(principal, delayMs);
+                }
+                scheduler.schedule(() -> {
+                    sessionRegistry.close(sessionId, CloseStatus.SERVICE_RESTARTED);
+                    closed.countDown();
+                }, delayMs, TimeUnit.MILLISECONDS);
+            }
+            if (!closed.await(spreadMs + 2000, TimeUnit.MILLISECONDS)) {
+                log.warn("{} WebSocket session(s) were not closed during drain", closed.getCount());
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void notifyReconnect(StompSessionPrincipal principal, long delayMs) {
+        try {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(principal.getSessionId());
+            headers.setLeaveMutable(true);
+            messagingTemplate.getObject().convertAndSendToUser(principal.getName(), SYSTEM_QUEUE,
+                    Map.of("type", "RECONNECT", "reconnectAfterMs", delayMs), headers.getMessageHeaders());
+        } catch (Exception e) {
+            log.debug("Cannot send reconnect notice to session {}: {}", principal.getSessionId(), e.getMessage());
+        }
+    }
+
+    private void drainKafkaConsumers() throws InterruptedException {
+        keyOrderedExecutor.freeze();
+        listenerRegistry.getListenerContainers().forEach(MessageListenerContainer::pause);
+        if (!keyOrderedExecutor.awaitIdle(consumerDrainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Kafka records still in processing after {}, they will be redelivered", consumerDrainTimeout);
+        }
+        // Остановка контейнера фиксирует смещения завершенных записей и покидает группу
+        listenerRegistry.stop();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chatverse.infrastructure.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выборочное логирование событий на горячем пути (по одному на каждые N сообщений).
+ * Полный поток событий доступен на уровне DEBUG.
+ */
+@Component
+public class LogSampler {
+
+    private final int sampleRate;
+    private final AtomicLong counter = new AtomicLong();
+
+    public LogSampler(@Value("${app.logging.message-sample-rate:1}") int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * @return true, если текущее событие нужно залогировать на уровне INFO.
+     */
+    public boolean sample() {
+        return sampleRate == 1 || counter.getAndIncrement() % sampleRate == 0;
+    }
+}
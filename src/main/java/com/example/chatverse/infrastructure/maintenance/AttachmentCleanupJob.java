@@ -0,0 +1,146 @@
+package com.example.chatverse.infrastructure.maintenance;
+
+import com.example.chatverse.domain.entity.Attachment;
+import com.example.chatverse.domain.repository.AttachmentRepository;
+import com.example.chatverse.infrastructure.datasource.ShardedChatMessageStore;
+import com.example.chatverse.infrastructure.storage.ContentAddressedFileStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Очистка хранилища вложений:
+ * <ul>
+ *     <li>вложения, которые не используются как аватар, не упоминаются ни в одном сообщении и не загружались
+ *     повторно дольше grace-period (в том числе замененные аватары и их миниатюры), — запись и файл;</li>
+ *     <li>файлы без записи в attachments (загрузка оборвалась между записью файла и метаданных);</li>
+ *     <li>временные файлы оборванных загрузок.</li>
+ * </ul>
+ * grace-period должен быть заметно больше времени доставки сообщения через Kafka: вложение, только что
+ * указанное в отправленном сообщении, до сохранения сообщения в шард выглядит неиспользуемым.
+ * Записи удаляются порциями, каждая порция в своей транзакции; файл удаляется после коммита,
+ * если запись не появилась снова.
+ */
+@Component
+@Slf4j
+public class AttachmentCleanupJob {
+
+    private final AttachmentRepository attachmentRepository;
+    private final ShardedChatMessageStore chatMessageStore;
+    private final ContentAddressedFileStore fileStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.storage.cleanup.grace-period:1d}")
+    private Duration gracePeriod;
+
+    @Value("${app.storage.cleanup.batch-size:500}")
+    private int batchSize;
+
+    public AttachmentCleanupJob(AttachmentRepository attachmentRepository,
+                                ShardedChatMessageStore chatMessageStore,
+                                ContentAddressedFileStore fileStore,
+                                PlatformTransactionManager transactionManager) {
+        this.attachmentRepository = attachmentRepository;
+        this.chatMessageStore = chatMessageStore;
+        this.fileStore = fileStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.storage.cleanup.cron:0 15 4 * * *}", zone = "UTC")
+    public void cleanup() {
+        Instant before = Instant.now().minus(gracePeriod);
+        deleteUnusedAttachments(before);
+        deleteOrphanFiles(before);
+        try {
+            int deleted = fileStore.deleteStaleUploads(before);
+            if (deleted > 0) {
+                log.info("Deleted {} stale attachment upload file(s)", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Stale attachment upload cleanup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void deleteUnusedAttachments(Instant before) {
+        // Колонки created — timestamp без зоны в зоне JVM, как их заполняют LocalDateTime.now() и NOW()
+        LocalDateTime createdBefore = LocalDateTime.ofInstant(before, ZoneId.systemDefault());
+        String afterHash = "";
+        long total = 0;
+        try {
+            List<String> candidates;
+            do {
+                candidates = attachmentRepository.findUnusedCandidates(afterHash, createdBefore, batchSize);
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                afterHash = candidates.get(candidates.size() - 1);
+
+                Set<String> referenced = chatMessageStore.findReferencedAttachments(candidates);
+                List<String> unused = candidates.stream().filter(hash -> !referenced.contains(hash)).toList();
+                if (unused.isEmpty()) {
+                    continue;
+                }
+                List<String> deleted = transactionTemplate.execute(status ->
+                        attachmentRepository.deleteUnused(unused, createdBefore));
+                if (deleted != null) {
+                    total += deleted.size();
+                    deleteFiles(deleted);
+                }
+            } while (candidates.size() == batchSize);
+            if (total > 0) {
+                log.info("Deleted {} unused attachment(s)", total);
+            }
+        } catch (Exception e) {
+            log.error("Unused attachment cleanup failed after deleting {} attachment(s): {}", total, e.getMessage(), e);
+        }
+    }
+
+    void deleteOrphanFiles(Instant before) {
+        long total = 0;
+        try (Stream<String> objects = fileStore.listObjects(before)) {
+            Iterator<String> iterator = objects.iterator();
+            List<String> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize || !iterator.hasNext()) {
+                    Set<String> known = attachmentRepository.findAllById(batch).stream()
+                            .map(Attachment::getHash)
+                            .collect(Collectors.toSet());
+                    total += deleteFiles(batch.stream().filter(hash -> !known.contains(hash)).toList());
+                    batch.clear();
+                }
+            }
+            if (total > 0) {
+                log.info("Deleted {} orphan attachment file(s)", total);
+            }
+        } catch (Exception e) {
+            log.error("Orphan attachment file cleanup failed after deleting {} file(s): {}", total, e.getMessage(), e);
+        }
+    }
+
+    private int deleteFiles(List<String> hashes) throws IOException {
+        int deleted = 0;
+        for (String hash : hashes) {
+            // То же содержимое могли загрузить снова после удаления записи
+            if (!attachmentRepository.existsById(hash) && fileStore.delete(hash)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
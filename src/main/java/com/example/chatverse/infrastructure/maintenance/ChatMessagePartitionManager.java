@@ -0,0 +1,235 @@
+package com.example.chatverse.infrastructure.maintenance;
+
+import com.example.chatverse.domain.entity.ChatMessageEntity;
+import com.example.chatverse.infrastructure.datasource.ShardContext;
+import com.example.chatverse.infrastructure.datasource.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Обслуживание партиций chat_messages: заранее создает партиции на будущие месяцы,
+ * отсоединяет партиции старше срока хранения, архивирует их в сжатые CSV на локальный диск и удаляет.
+ * Шаги выполняются под advisory-локом, чтобы несколько подов не делали одно и то же одновременно.
+ * Обслуживание проходит по каждому шарду сообщений по очереди.
+ */
+@Component
+@Slf4j
+public class ChatMessagePartitionManager {
+
+    private static final long ADVISORY_LOCK_KEY = 0x63686174_70617274L; // "chatpart"
+    private static final String PARTITION_PREFIX = "chat_messages_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int ARCHIVE_FETCH_SIZE = 5000;
+    // Архив содержит все хранимые колонки: по нему восстанавливаются и вложения, и roomSeq сообщений
+    static final String ARCHIVE_HEADER = String.join(",", ChatMessageEntity.COLUMNS) + "\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${app.chat.partitions.premake-months:3}")
+    private int premakeMonths;
+
+    @Value("${app.chat.partitions.retention-months:12}")
+    private int retentionMonths;
+
+    @Value("${app.chat.partitions.archive-dir:archive/chat-messages}")
+    private String archiveDir;
+
+    public ChatMessagePartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       ShardRouter shardRouter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * При старте только создаются партиции на будущие месяцы — это быстро. Отсоединение, архивация
+     * и удаление (потоковая выгрузка целой партиции) выполняются по расписанию: Spring объявляет под
+     * готовым к трафику только после возврата из этого обработчика.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            if (tryLock()) {
+                createFuturePartitions();
+            } else {
+                log.debug("Partition maintenance of shard {} is running on another instance, skipping.", shard);
+            }
+        }));
+    }
+
+    @Scheduled(cron = "${app.chat.partitions.maintenance-cron:0 15 3 * * *}", zone = "UTC")
+    public void runMaintenance() {
+        forEachShard(this::maintainShard);
+    }
+
+    private void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int currentShard = shard;
+            try {
+                ShardContext.callInShard(currentShard, () -> {
+                    action.accept(currentShard);
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("Chat messages partition maintenance failed on shard {}: {}", currentShard, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void maintainShard(int shard) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (tryLock()) {
+                createFuturePartitions();
+                detachExpiredPartitions();
+            } else {
+                log.debug("Partition maintenance of shard {} is running on another instance, skipping.", shard);
+            }
+        });
+        archiveDetachedPartitions(shard);
+    }
+
+    private void createFuturePartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= premakeMonths; i++) {
+            LocalDate monthStart = current.plusMonths(i).atDay(1);
+            String partition = jdbcTemplate.queryForObject("SELECT chat_messages_ensure_partition(?)", String.class, monthStart);
+            log.debug("Ensured chat_messages partition {}", partition);
+        }
+    }
+
+    private void detachExpiredPartitions() {
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        List<String> attached = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = 'chat_messages' AND c.relname ~ '^chat_messages_p[0-9]{6}$'
+                """, String.class);
+        for (String partition : attached) {
+            if (monthOf(partition).isBefore(oldestKept)) {
+                jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + partition);
+                log.info("Detached expired chat_messages partition {}", partition);
+            }
+        }
+    }
+
+    /**
+     * Архивирует и удаляет отсоединенные партиции. Если архивация упала, таблица остается
+     * отсоединенной и будет обработана при следующем запуске.
+     */
+    private void archiveDetachedPartitions(int shard) {
+        List<String> detached = jdbcTemplate.queryForList("""
+                SELECT relname FROM pg_class
+                WHERE relkind = 'r' AND NOT relispartition AND relname ~ '^chat_messages_p[0-9]{6}$'
+                """, String.class);
+        for (String partition : detached) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!tryLock()) {
+                    return;
+                }
+                Path archive = archivePartition(partition, shard);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Archived chat_messages partition {} to {} and dropped it", partition, archive);
+            });
+        }
+    }
+
+    private Path archivePartition(String partition, int shard) {
+        // Имена партиций совпадают на всех шардах, поэтому архивы дополнительных шардов лежат в своих подкаталогах
+        Path dir = shard == 0 ? Paths.get(archiveDir) : Paths.get(archiveDir, "shard-" + shard);
+        Path target = dir.resolve(partition + ".csv.gz");
+        Path tmp = dir.resolve(partition + ".csv.gz.tmp");
+        try {
+            Files.createDirectories(dir);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024), StandardCharsets.UTF_8))) {
+                writer.write(ARCHIVE_HEADER);
+                // Отдельный шаблон с fetchSize: курсорная выборка без загрузки партиции в память
+                // (autocommit выключен транзакцией, соединение то же, что у транзакции)
+                JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streamingTemplate.setFetchSize(ARCHIVE_FETCH_SIZE);
+                streamingTemplate.query("SELECT " + String.join(", ", ChatMessageEntity.COLUMNS) + " FROM " + partition,
+                        (RowCallbackHandler) rs -> {
+                            try {
+                                StringBuilder line = new StringBuilder(256);
+                                for (int column = 1; column <= ChatMessageEntity.COLUMNS.size(); column++) {
+                                    if (column > 1) {
+                                        line.append(',');
+                                    }
+                                    line.append(archiveValue(rs, column));
+                                }
+                                writer.write(line.append('\n').toString());
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive partition " + partition, e);
+        }
+    }
+
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY));
+    }
+
+    private static YearMonth monthOf(String partition) {
+        return YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX_FORMAT);
+    }
+
+    private static String archiveValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        if (value instanceof Timestamp) {
+            // timestamptz выгружается со смещением, чтобы архив не зависел от зоны JVM
+            return csv(rs.getObject(column, OffsetDateTime.class).toString());
+        }
+        return csv(value.toString());
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
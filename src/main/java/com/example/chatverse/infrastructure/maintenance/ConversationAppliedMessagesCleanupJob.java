@@ -0,0 +1,57 @@
+package com.example.chatverse.infrastructure.maintenance;
+
+import com.example.chatverse.domain.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Очистка отметок conversation_applied_messages: отметка нужна, пока сообщение может прийти из Kafka повторно.
+ * Срок хранения должен быть не меньше retention топика chat-messages и его DLT, иначе повтор
+ * (в том числе ручной replay из DLT) снова увеличит счетчик непрочитанных.
+ * Удаление порциями, каждая порция в своей транзакции.
+ */
+@Component
+@Slf4j
+public class ConversationAppliedMessagesCleanupJob {
+
+    private final ConversationRepository conversationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.chat.conversations.applied-retention:14d}")
+    private Duration retention;
+
+    @Value("${app.chat.conversations.cleanup-batch-size:5000}")
+    private int batchSize;
+
+    public ConversationAppliedMessagesCleanupJob(ConversationRepository conversationRepository,
+                                                 PlatformTransactionManager transactionManager) {
+        this.conversationRepository = conversationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.chat.conversations.cleanup-cron:0 55 3 * * *}", zone = "UTC")
+    public void deleteExpiredMarks() {
+        Instant before = Instant.now().minus(retention);
+        long total = 0;
+        try {
+            int deleted;
+            do {
+                Integer batch = transactionTemplate.execute(status -> conversationRepository.deleteAppliedBefore(before, batchSize));
+                deleted = batch != null ? batch : 0;
+                total += deleted;
+            } while (deleted == batchSize);
+            if (total > 0) {
+                log.info("Deleted {} conversation applied-message marks", total);
+            }
+        } catch (Exception e) {
+            log.error("Conversation applied-message cleanup failed after deleting {} rows: {}", total, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chatverse.infrastructure.maintenance;
+
+import com.example.chatverse.domain.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Очистка устаревшей таблицы refresh_tokens: удаляет истекшие токены порциями,
+ * каждая порция в своей транзакции. Новые токены в таблицу не пишутся, так что после
+ * истечения последних выданных по старой схеме таблица опустеет.
+ */
+@Component
+@Slf4j
+public class RefreshTokenCleanupJob {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.auth.refresh-token-cleanup.batch-size:5000}")
+    private int batchSize;
+
+    public RefreshTokenCleanupJob(RefreshTokenRepository refreshTokenRepository, PlatformTransactionManager transactionManager) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.auth.refresh-token-cleanup.cron:0 45 3 * * *}", zone = "UTC")
+    public void deleteExpiredTokens() {
+        LocalDateTime now = LocalDateTime.now();
+        long total = 0;
+        try {
+            int deleted;
+            do {
+                Integer batch = transactionTemplate.execute(status -> refreshTokenRepository.deleteExpiredBatch(now, batchSize));
+                deleted = batch != null ? batch : 0;
+                total += deleted;
+            } while (deleted == batchSize);
+            if (total > 0) {
+                log.info("Deleted {} expired refresh tokens", total);
+            }
+        } catch (Exception e) {
+            log.error("Refresh token cleanup failed after deleting {} rows: {}", total, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket в памяти узла по алгоритму GCRA: состояние корзины — одно число
+ * (теоретическое время следующего запроса), которое обновляется CAS без блокировок.
+ * ConcurrentHashMap дает разбиение по ключам, так что разные пользователи не конкурируют.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.mode", havingValue = "local", matchIfMissing = true)
+public class LocalTokenBucketBackend implements TokenBucketBackend {
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryConsume(String key, double ratePerSecond, int burst) {
+        long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        long toleranceNanos = intervalNanos * burst;
+        AtomicLong tat = buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            long base = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = base + intervalNanos;
+            if (next - now > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет корзины, которые уже полностью пополнились: их состояние не отличается от новой.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(tat -> tat.get() - now < 0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+import com.example.chatverse.application.dto.response.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Лимит на пользователя для POST /api/v1/chat/messages. Стоит в цепочке Spring Security
+ * после JWT-фильтра, поэтому пользователь уже известен. Не бин, чтобы Boot не зарегистрировал
+ * его второй раз как обычный servlet-фильтр.
+ */
+public class MessageRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String SEND_MESSAGE_PATH = "/api/v1/chat/messages";
+
+    private final MessageRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public MessageRateLimitFilter(MessageRateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !SEND_MESSAGE_PATH.equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = userIdOf(authentication);
+        if (userId != null && !rateLimiter.tryAcquireForUser(userId)) {
+            ErrorResponse errorResponse = ErrorResponse.builder()
+                    .timestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                    .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                    .error(HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase())
+                    .message("Message rate limit exceeded. Please slow down.")
+                    .path(request.getRequestURI())
+                    .build();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.getWriter().write(objectMapper.writeValueAsString(errorResponse));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static Long userIdOf(Authentication authentication) {
+        if (authentication == null || authentication.getName() == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(authentication.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Лимиты на отправку сообщений: на пользователя (STOMP и REST) и на комнату.
+ * Отказы считаются в метрике chat.ratelimit.rejected с тегом scope.
+ */
+@Component
+@Slf4j
+public class MessageRateLimiter {
+
+    private final TokenBucketBackend backend;
+    private final boolean enabled;
+    private final double userRate;
+    private final int userBurst;
+    private final double roomRate;
+    private final int roomBurst;
+    private final Counter userRejected;
+    private final Counter roomRejected;
+
+    public MessageRateLimiter(TokenBucketBackend backend, MeterRegistry meterRegistry,
+                              @Value("${app.rate-limit.enabled:true}") boolean enabled,
+                              @Value("${app.rate-limit.user.messages-per-second:5}") double userRate,
+                              @Value("${app.rate-limit.user.burst:20}") int userBurst,
+                              @Value("${app.rate-limit.room.messages-per-second:20}") double roomRate,
+                              @Value("${app.rate-limit.room.burst:50}") int roomBurst) {
+        this.backend = backend;
+        this.enabled = enabled;
+        this.userRate = userRate;
+        this.userBurst = userBurst;
+        this.roomRate = roomRate;
+        this.roomBurst = roomBurst;
+        this.userRejected = Counter.builder("chat.ratelimit.rejected").tag("scope", "user")
+                .description("Messages rejected by the per-user rate limit").register(meterRegistry);
+        this.roomRejected = Counter.builder("chat.ratelimit.rejected").tag("scope", "room")
+                .description("Messages rejected by the per-room rate limit").register(meterRegistry);
+    }
+
+    public boolean tryAcquireForUser(long userId) {
+        if (!enabled || backend.tryConsume("user:" + userId, userRate, userBurst)) {
+            return true;
+        }
+        userRejected.increment();
+        log.debug("Rate limit exceeded for user {}", userId);
+        return false;
+    }
+
+    public boolean tryAcquireForRoom(String roomId) {
+        if (!enabled || backend.tryConsume("room:" + roomId, roomRate, roomBurst)) {
+            return true;
+        }
+        roomRejected.increment();
+        log.debug("Rate limit exceeded for room {}", roomId);
+        return false;
+    }
+}
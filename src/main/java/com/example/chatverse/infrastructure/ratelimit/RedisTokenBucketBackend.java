@@ -0,0 +1,48 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Глобальный token bucket в Redis (тот же GCRA): лимит общий для всех подов.
+ * Время берется из Redis, чтобы расхождение часов подов не влияло на лимит.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.rate-limit.mode", havingValue = "redis")
+public class RedisTokenBucketBackend implements TokenBucketBackend {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    private static final RedisScript<Long> GCRA = RedisScript.of("""
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000000 + tonumber(t[2])
+            local interval = tonumber(ARGV[1])
+            local tolerance = tonumber(ARGV[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]))
+            if not tat or tat < now then
+                tat = now
+            end
+            local nextTat = tat + interval
+            if nextTat - now > tolerance then
+                return 0
+            end
+            redis.call('SET', KEYS[1], nextTat, 'PX', math.ceil((nextTat - now) / 1000) + 1)
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public boolean tryConsume(String key, double ratePerSecond, int burst) {
+        long intervalMicros = (long) (1_000_000L / ratePerSecond);
+        Long allowed = redisTemplate.execute(GCRA, List.of(KEY_PREFIX + key),
+                Long.toString(intervalMicros), Long.toString(intervalMicros * burst));
+        return allowed != null && allowed == 1L;
+    }
+}
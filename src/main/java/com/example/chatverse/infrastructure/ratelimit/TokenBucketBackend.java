@@ -0,0 +1,16 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+/**
+ * Хранилище состояния token bucket. Режим выбирается параметром app.rate-limit.mode (local | redis).
+ */
+public interface TokenBucketBackend {
+
+    /**
+     * Забирает один токен из корзины ключа.
+     * @param key Ключ корзины (например, "user:42").
+     * @param ratePerSecond Скорость пополнения, токенов в секунду.
+     * @param burst Емкость корзины.
+     * @return false, если корзина пуста.
+     */
+    boolean tryConsume(String key, double ratePerSecond, int burst);
+}
@@ -0,0 +1,116 @@
+package com.example.chatverse.infrastructure.resync;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Последние сообщения каждой комнаты в Redis (ZSET, score — roomSeq), чтобы догрузка после
+ * переподключения обычно не доходила до БД. Кэш заполняет consumer после сохранения сообщения;
+ * он хранит не больше N последних сообщений комнаты и истекает при простое комнаты.
+ * Если кэш не покрывает запрошенный пропуск целиком, возвращается пустой Optional и читается БД.
+ */
+@Component
+@Slf4j
+public class RecentRoomMessagesCache {
+
+    private static final String KEY_PREFIX = "chat:recent:";
+
+    private static final RedisScript<Long> APPEND = RedisScript.of("""
+            redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[3]) - 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            return 1
+            """, Long.class);
+
+    // nil — в кэше нет сообщения afterSeq + 1 (или кэш пуст), пропуск целиком не покрыт
+    private static final RedisScript<List> FETCH = RedisScript.of("""
+            local first = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+            if #first == 0 or tonumber(first[2]) > tonumber(ARGV[1]) + 1 then
+                return false
+            end
+            return redis.call('ZRANGEBYSCORE', KEYS[1], '(' .. ARGV[1], '+inf', 'LIMIT', 0, ARGV[2])
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int size;
+    private final Duration ttl;
+
+    public RecentRoomMessagesCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                   @Value("${app.resync.cache.enabled:true}") boolean enabled,
+                                   @Value("${app.resync.cache.size:200}") int size,
+                                   @Value("${app.resync.cache.ttl:1h}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.size = size;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Добавляет сохраненное сообщение. Ошибка не прерывает обработку: ключ комнаты удаляется,
+     * чтобы кэш с дырой не отдал неполную догрузку.
+     */
+    public void append(ChatMessage message) {
+        if (!enabled || message.getRoomSeq() == null || message.getRoomId() == null) {
+            return;
+        }
+        String key = KEY_PREFIX + message.getRoomId();
+        try {
+            redisTemplate.execute(APPEND, List.of(key), Long.toString(message.getRoomSeq()),
+                    objectMapper.writeValueAsString(message), Integer.toString(size), Long.toString(ttl.toMillis()));
+        } catch (Exception e) {
+            log.warn("Failed to append message {} to recent cache of room {}: {}",
+                    message.getMessageId(), message.getRoomId(), e.getMessage());
+            invalidate(key);
+        }
+    }
+
+    /**
+     * Сообщения комнаты с номером больше afterSeq (не больше limit), если кэш покрывает пропуск.
+     */
+    public Optional<List<ChatMessage>> findAfter(String roomId, long afterSeq, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            List<?> raw = redisTemplate.execute(FETCH, List.of(KEY_PREFIX + roomId),
+                    Long.toString(afterSeq), Integer.toString(limit));
+            if (raw == null) {
+                return Optional.empty();
+            }
+            List<ChatMessage> messages = new ArrayList<>(raw.size());
+            for (Object json : raw) {
+                messages.add(objectMapper.readValue((String) json, ChatMessage.class));
+            }
+            return Optional.of(messages);
+        } catch (JsonProcessingException e) {
+            log.warn("Corrupted recent cache entry for room {}, falling back to database: {}", roomId, e.getMessage());
+            invalidate(KEY_PREFIX + roomId);
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("Recent cache unavailable for room {}, falling back to database: {}", roomId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void invalidate(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.debug("Failed to invalidate recent cache key {}: {}", key, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.chatverse.infrastructure.resync;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.MessageResyncBatchDto;
+import com.example.chatverse.application.mapper.ChatMessageMapper;
+import com.example.chatverse.infrastructure.datasource.ShardedChatMessageStore;
+import com.example.chatverse.infrastructure.websocket.StompSessionPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Догрузка пропущенных сообщений после переподключения. Клиент передает в CONNECT последний
+ * увиденный roomSeq по комнатам; после подписки на комнату ему в /user/queue/resync (только в эту
+ * сессию) уходят пачками сообщения с большим номером — из кэша последних сообщений или из шарда.
+ * Живые сообщения могут прийти раньше конца догрузки: клиент объединяет их по roomSeq.
+ * Догрузка идет на ограниченном пуле: массовое переподключение не занимает потоки брокера.
+ */
+@Component
+@Slf4j
+public class RoomResyncService {
+
+    private static final String RESYNC_QUEUE = "/queue/resync";
+
+    private final RecentRoomMessagesCache recentMessagesCache;
+    private final ShardedChatMessageStore chatMessageStore;
+    private final ChatMessageMapper chatMessageMapper;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final int batchSize;
+    private final int maxMessages;
+    private final ThreadPoolExecutor executor;
+    private final Counter cacheHits;
+    private final Counter databaseReads;
+    private final Counter rejected;
+
+    public RoomResyncService(RecentRoomMessagesCache recentMessagesCache,
+                             ShardedChatMessageStore chatMessageStore,
+                             ChatMessageMapper chatMessageMapper,
+                             ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.resync.batch-size:100}") int batchSize,
+                             @Value("${app.resync.max-messages:1000}") int maxMessages,
+                             @Value("${app.resync.workers:4}") int workers,
+                             @Value("${app.resync.queue-capacity:1000}") int queueCapacity) {
+        this.recentMessagesCache = recentMessagesCache;
+        this.chatMessageStore = chatMessageStore;
+        this.chatMessageMapper = chatMessageMapper;
+        this.messagingTemplate = messagingTemplate;
+        this.batchSize = batchSize;
+        this.maxMessages = maxMessages;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "room-resync-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.cacheHits = Counter.builder("chat.resync.batches").tag("source", "cache").register(meterRegistry);
+        this.databaseReads = Counter.builder("chat.resync.batches").tag("source", "database").register(meterRegistry);
+        this.rejected = Counter.builder("chat.resync.rejected")
+                .description("Resync requests dropped because the resync queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Вызывается после того, как подписка сессии на комнату зарегистрирована в брокере.
+     * Догрузка выполняется один раз на комнату за сессию и только если клиент передал позицию.
+     */
+    public void onSubscribed(StompSessionPrincipal principal, String roomId) {
+        Long afterSeq = principal.takeResumeSeq(roomId);
+        if (afterSeq == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> resync(principal, roomId, afterSeq));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Resync queue is full, room {} for session {} is not resynced", roomId, principal.getSessionId());
+            // Клиент загрузит пропуск через историю сообщений
+            send(principal, MessageResyncBatchDto.builder()
+                    .roomId(roomId).messages(List.of()).complete(true).truncated(true).build());
+        }
+    }
+
+    private void resync(StompSessionPrincipal principal, String roomId, long afterSeq) {
+        try {
+            long position = afterSeq;
+            int sent = 0;
+            while (true) {
+                int limit = Math.min(batchSize, maxMessages - sent);
+                List<ChatMessage> batch = fetch(roomId, position, limit);
+                sent += batch.size();
+                boolean exhausted = batch.size() < limit;
+                boolean truncated = !exhausted && sent >= maxMessages;
+                send(principal, MessageResyncBatchDto.builder()
+                        .roomId(roomId)
+                        .messages(batch)
+                        .complete(exhausted || truncated)
+                        .truncated(truncated)
+                        .build());
+                if (exhausted || truncated) {
+                    break;
+                }
+                position = batch.get(batch.size() - 1).getRoomSeq();
+            }
+            log.debug("Resynced {} messages of room {} after seq {} for session {}",
+                    sent, roomId, afterSeq, principal.getSessionId());
+        } catch (Exception e) {
+            log.warn("Resync of room {} for session {} failed: {}", roomId, principal.getSessionId(), e.getMessage());
+            send(principal, MessageResyncBatchDto.builder()
+                    .roomId(roomId).messages(List.of()).complete(true).truncated(true).build());
+        }
+    }
+
+    private List<ChatMessage> fetch(String roomId, long afterSeq, int limit) {
+        var cached = recentMessagesCache.findAfter(roomId, afterSeq, limit);
+        if (cached.isPresent()) {
+            cacheHits.increment();
+            return cached.get();
+        }
+        databaseReads.increment();
+        return chatMessageStore.findAfterSeq(roomId, afterSeq, limit).stream()
+                .map(chatMessageMapper::toDto)
+                .toList();
+    }
+
+    private void send(StompSessionPrincipal principal, MessageResyncBatchDto batch) {
+        // Только в сессию, которая переподключилась, а не во все сессии пользователя
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(principal.getSessionId());
+        headers.setLeaveMutable(true);
+        messagingTemplate.getObject().convertAndSendToUser(principal.getName(), RESYNC_QUEUE, batch,
+                headers.getMessageHeaders());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.chatverse.infrastructure.security;
 
 import com.example.chatverse.infrastructure.configuration.SecurityConfigLoader;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -14,6 +15,9 @@ import java.util.Date;
 
 @Component
 public class JwtUtils {
+
+    public static final String ROLE_CLAIM = "role";
+
     private static final Logger log = LoggerFactory.getLogger(JwtUtils.class);
     private final Key secretKey;
 
@@ -23,6 +27,17 @@ public class JwtUtils {
         this.secretKey = Keys.hmacShaKeyFor(decodedSecret);
     }
 
+    /**
+     * Проверяет подпись и срок действия и возвращает все claims за один разбор токена.
+     */
+    public Claims parseClaims(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
     public String extractUserId(String token) {
         return Jwts.parserBuilder()
                 .setSigningKey(secretKey)
@@ -33,8 +48,17 @@ public class JwtUtils {
     }
 
     public String generateToken(String userId, long expirationTime) {
+        return generateToken(userId, null, expirationTime);
+    }
+
+    /**
+     * Токен с ролью пользователя в claim'е {@value #ROLE_CLAIM}: по нему фильтр выдает authority ROLE_*,
+     * без обращения к базе на каждый запрос.
+     */
+    public String generateToken(String userId, String role, long expirationTime) {
         return Jwts.builder()
                 .setSubject(userId)
+                .claim(ROLE_CLAIM, role)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expirationTime))
                 .signWith(secretKey, SignatureAlgorithm.HS512)
@@ -0,0 +1,179 @@
+package com.example.chatverse.infrastructure.storage;
+
+import com.example.chatverse.infrastructure.exception.PayloadTooLargeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Локальное контентно-адресуемое хранилище файлов: объект называется SHA-256 своего содержимого
+ * и лежит в objects/ab/abcdef... Поток загрузки пишется во временный файл через FileChannel
+ * с одновременным подсчетом хеша, целиком в памяти файл не держится. Готовый файл атомарно
+ * переносится на место; если такой объект уже есть, временный файл удаляется (дедупликация).
+ */
+@Component
+@Slf4j
+public class ContentAddressedFileStore {
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Сохраненный объект.
+     * @param hash SHA-256 содержимого в hex, он же идентификатор объекта.
+     * @param size Размер в байтах.
+     */
+    public record StoredObject(String hash, long size) {
+    }
+
+    private final Path objectsDir;
+    private final Path tmpDir;
+
+    public ContentAddressedFileStore(@Value("${app.storage.dir:storage}") Path root) {
+        this.objectsDir = root.resolve("objects");
+        this.tmpDir = root.resolve("tmp");
+        try {
+            Files.createDirectories(objectsDir);
+            Files.createDirectories(tmpDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create attachment storage in " + root.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Сохраняет поток. Поток не закрывается.
+     * @param maxBytes Предельный размер; при превышении загрузка прерывается.
+     */
+    public StoredObject store(InputStream in, long maxBytes) throws IOException {
+        return store(Channels.newChannel(in), maxBytes);
+    }
+
+    public StoredObject store(ReadableByteChannel source, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        long size = 0;
+        try {
+            try (FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > maxBytes) {
+                        throw new PayloadTooLargeException("Attachment exceeds " + maxBytes + " bytes");
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                target.force(true);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path destination = pathOf(hash);
+            Files.createDirectories(destination.getParent());
+            try {
+                Files.move(tmp, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                log.debug("Object {} already stored, dropping duplicate upload", hash);
+            }
+            return new StoredObject(hash, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Сохраняет небольшой объект из памяти (например, сгенерированную миниатюру).
+     */
+    public StoredObject store(byte[] content) throws IOException {
+        return store(Channels.newChannel(new ByteArrayInputStream(content)), content.length);
+    }
+
+    /**
+     * Путь к файлу объекта или null, если идентификатор некорректен или объекта нет.
+     */
+    public Path find(String hash) {
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+        Path path = pathOf(hash);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * Удаляет объект. Вызывающий отвечает за то, что на объект больше нет ссылок.
+     * @return true, если файл был удален.
+     */
+    public boolean delete(String hash) throws IOException {
+        Path path = find(hash);
+        return path != null && Files.deleteIfExists(path);
+    }
+
+    /**
+     * Идентификаторы объектов, файлы которых не менялись с момента olderThan. Поток нужно закрыть.
+     */
+    public Stream<String> listObjects(Instant olderThan) throws IOException {
+        return Files.walk(objectsDir, 2)
+                .filter(path -> HASH_PATTERN.matcher(path.getFileName().toString()).matches())
+                .filter(path -> isOlderThan(path, olderThan))
+                .map(path -> path.getFileName().toString());
+    }
+
+    /**
+     * Удаляет временные файлы загрузок, оборванных падением процесса.
+     * @return Сколько файлов удалено.
+     */
+    public int deleteStaleUploads(Instant olderThan) throws IOException {
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (isOlderThan(path, olderThan) && Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean isOlderThan(Path path, Instant instant) {
+        try {
+            return Files.isRegularFile(path) && Files.getLastModifiedTime(path).toInstant().isBefore(instant);
+        } catch (IOException e) {
+            // Файл удален параллельно
+            return false;
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.chatverse.infrastructure.users;
+
+import com.example.chatverse.domain.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Множество ID существующих пользователей в памяти узла: проверка получателя сообщения
+ * и участников контакта без запроса в Postgres.
+ * Битовая карта разбита на блоки по 65536 ID (как в roaring bitmap): блок создается только
+ * для занятых диапазонов, 10 млн плотных ID занимают около 1,2 МБ.
+ * Карта строится потоковым чтением ID при старте и периодически перестраивается.
+ * Пользователи, созданные или удаленные на этом узле, учитываются сразу после коммита.
+ * Пользователь, созданный на другом узле, сначала отсутствует в карте: при промахе ID
+ * проверяется в БД и добавляется в карту, поэтому промах никогда не дает ложный отказ.
+ */
+@Component
+@Slf4j
+public class UserIdIndex {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / Long.SIZE;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate scanTemplate;
+    private final TransactionTemplate scanTransaction;
+    private volatile ConcurrentMap<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private final Counter hits;
+    private final Counter databaseFound;
+    private final Counter databaseAbsent;
+
+    public UserIdIndex(UserRepository userRepository,
+                       DataSource dataSource,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.users.id-index.scan-fetch-size:10000}") int fetchSize) {
+        this.userRepository = userRepository;
+        // Отдельный шаблон: курсор PostgreSQL читает ID порциями, а не всю таблицу в память
+        this.scanTemplate = new JdbcTemplate(dataSource);
+        this.scanTemplate.setFetchSize(fetchSize);
+        this.scanTransaction = new TransactionTemplate(transactionManager);
+        this.scanTransaction.setReadOnly(true);
+        this.hits = lookups(meterRegistry, "index");
+        this.databaseFound = lookups(meterRegistry, "database_found");
+        this.databaseAbsent = lookups(meterRegistry, "database_absent");
+        Gauge.builder("chat.users.id-index.chunks", this, index -> index.chunks.size())
+                .description("Allocated 65536-id chunks of the user id bitmap")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Существует ли пользователь. До первой загрузки карты и при промахе проверяет БД.
+     */
+    public boolean exists(Long userId) {
+        if (userId == null || userId <= 0) {
+            return false;
+        }
+        if (ready && contains(chunks, userId)) {
+            hits.increment();
+            return true;
+        }
+        boolean exists = userRepository.existsById(userId);
+        if (exists) {
+            databaseFound.increment();
+            set(chunks, userId);
+        } else {
+            databaseAbsent.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * Вызывается при создании пользователя; в транзакции ID попадает в карту только после коммита.
+     */
+    public void onUserCreated(Long userId) {
+        afterCommit(() -> set(chunks, userId));
+    }
+
+    public void onUserDeleted(Long userId) {
+        afterCommit(() -> clear(chunks, userId));
+    }
+
+    /**
+     * Убирает ID из карты сразу, без ожидания коммита: например, когда БД отвергла ссылку на пользователя,
+     * удаленного на другом узле. Следующая проверка этого ID пойдет в БД.
+     */
+    public void evict(Long userId) {
+        if (userId != null) {
+            clear(chunks, userId);
+        }
+    }
+
+    /**
+     * Полная перестройка: удаления на других узлах и пропущенные события исправляются здесь.
+     * Новая карта строится рядом и подменяет текущую целиком.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.users.id-index.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        long startedAt = System.nanoTime();
+        try {
+            ConcurrentMap<Long, AtomicLongArray> rebuilt = new ConcurrentHashMap<>();
+            long[] count = new long[1];
+            scanTransaction.executeWithoutResult(status ->
+                    scanTemplate.query("SELECT id FROM platform_users", rs -> {
+                        set(rebuilt, rs.getLong(1));
+                        count[0]++;
+                    }));
+            chunks = rebuilt;
+            ready = true;
+            log.info("User id index rebuilt: {} users in {} chunks ({} ms)", count[0], rebuilt.size(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (Exception e) {
+            // Остается предыдущая карта (или проверка через БД, если карты еще нет)
+            log.error("Failed to rebuild user id index: {}", e.getMessage(), e);
+        }
+    }
+
+    static boolean contains(ConcurrentMap<Long, AtomicLongArray> chunks, long userId) {
+        AtomicLongArray chunk = chunks.get(userId >>> CHUNK_BITS);
+        if (chunk == null) {
+            return false;
+        }
+        int bit = (int) (userId & ((1 << CHUNK_BITS) - 1));
+        return (chunk.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    static void set(ConcurrentMap<Long, AtomicLongArray> chunks, long userId) {
+        AtomicLongArray chunk = chunks.computeIfAbsent(userId >>> CHUNK_BITS, key -> new AtomicLongArray(WORDS_PER_CHUNK));
+        int bit = (int) (userId & ((1 << CHUNK_BITS) - 1));
+        long mask = 1L << bit;
+        chunk.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+    }
+
+    static void clear(ConcurrentMap<Long, AtomicLongArray> chunks, long userId) {
+        AtomicLongArray chunk = chunks.get(userId >>> CHUNK_BITS);
+        if (chunk != null) {
+            int bit = (int) (userId & ((1 << CHUNK_BITS) - 1));
+            long mask = ~(1L << bit);
+            chunk.getAndAccumulate(bit >>> 6, mask, (word, m) -> word & m);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chat.users.id-index.lookups")
+                .description("User existence checks by where they were answered")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.chatverse.infrastructure.websocket;
+
+import com.example.chatverse.application.dto.response.ErrorResponse;
+import com.example.chatverse.infrastructure.ephemeral.EphemeralEventService;
+import com.example.chatverse.infrastructure.ratelimit.MessageRateLimiter;
+import com.example.chatverse.infrastructure.resync.RoomResyncService;
+import com.example.chatverse.infrastructure.security.JwtUtils;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Аутентификация и авторизация STOMP-кадров. Токен разбирается один раз при CONNECT,
+ * после чего кадры несут готовый {@link StompSessionPrincipal}. Для остальных кадров
+ * тип читается прямо из заголовков, без создания accessor'а. Кадры SEND в /app/chat.sendMessage
+ * проходят лимит на пользователя: лишние отбрасываются, а клиент получает ошибку в /user/queue/errors.
+ * После регистрации подписки на комнату запускается догрузка пропущенных сообщений (см. {@link RoomResyncService}).
+ * <p>
+ * Подписки напрямую на адреса брокера (/topic, /queue) разрешены только на комнаты, в которых пользователь
+ * участвует, и на общие топики из {@link #PUBLIC_TOPICS}; личные очереди доступны только через /user/.
+ * SimpleBroker сопоставляет подписки как Ant-шаблоны, поэтому адреса с '*', '?' и '{' отклоняются:
+ * иначе подписка на /topic/** получала бы сообщения всех комнат.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StompAuthChannelInterceptor implements ExecutorChannelInterceptor {
+
+    private static final String ROOM_TOPIC_PREFIX = "/topic/messages/";
+    private static final String LEGACY_ROOM_TOPIC_PREFIX = "/topic/room/";
+    private static final String EVENTS_TOPIC_PREFIX = EphemeralEventService.EVENTS_TOPIC_PREFIX;
+    private static final List<String> BROKER_PREFIXES = List.of("/topic", "/queue");
+    private static final Set<String> PUBLIC_TOPICS = Set.of("/topic/user.status");
+    private static final String SEND_MESSAGE_DESTINATION = "/app/chat.sendMessage";
+    private static final String ERRORS_QUEUE = "/queue/errors";
+    private static final String RESUME_SEQ_HEADER = "resume-seq";
+    private static final int MAX_RESUME_ROOMS = 200;
+
+    private final JwtUtils jwtUtils;
+    private final StompSessionRegistry sessionRegistry;
+    private final MessageRateLimiter messageRateLimiter;
+    private final RoomResyncService roomResyncService;
+    // Шаблон зависит от брокера, который сам настраивается вместе с этим interceptor'ом
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = (SimpMessageType) headers.get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER);
+        if (type == null) {
+            return message;
+        }
+        return switch (type) {
+            case CONNECT -> authenticate(message);
+            case SUBSCRIBE -> authorizeSubscription(message, headers);
+            case MESSAGE -> limitSend(message, headers);
+            default -> message;
+        };
+    }
+
+    private Message<?> authenticate(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (!sessionRegistry.isAcceptingConnections()) {
+            // Под останавливается: клиент получит ERROR-кадр и переподключится к другому поду
+            throw new MessageDeliveryException(message, "Server is shutting down, reconnect to another node");
+        }
+        String authorizationHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            log.warn("STOMP CONNECT: No token found in STOMP header for session {}", accessor.getSessionId());
+            return message;
+        }
+        try {
+            Claims claims = jwtUtils.parseClaims(authorizationHeader.substring(7));
+            long userId = Long.parseLong(claims.getSubject());
+            Instant expiresAt = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+            StompSessionPrincipal principal = new StompSessionPrincipal(userId, accessor.getSessionId(), expiresAt,
+                    parseResumeSeqs(accessor.getFirstNativeHeader(RESUME_SEQ_HEADER)));
+            accessor.setUser(principal);
+            sessionRegistry.attachPrincipal(principal);
+            log.debug("STOMP CONNECT: Authenticated user {} for session {}", userId, accessor.getSessionId());
+            return message;
+        } catch (Exception e) {
+            log.warn("STOMP CONNECT: Invalid JWT token in STOMP header. {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Message<?> authorizeSubscription(Message<?> message, MessageHeaders headers) {
+        String destination = (String) headers.get(SimpMessageHeaderAccessor.DESTINATION_HEADER);
+        if (destination == null) {
+            return message;
+        }
+        if (isPattern(destination)) {
+            throw denySubscription(destination, headers, "Wildcard subscriptions are not allowed");
+        }
+        String roomId = roomIdOf(destination);
+        if (roomId == null) {
+            if (isBrokerDestination(destination) && !PUBLIC_TOPICS.contains(destination)) {
+                throw denySubscription(destination, headers, "Unknown destination " + destination);
+            }
+            return message;
+        }
+        if (!(headers.get(SimpMessageHeaderAccessor.USER_HEADER) instanceof StompSessionPrincipal principal)
+                || !principal.canAccessRoom(roomId)) {
+            throw denySubscription(destination, headers, "No access to room " + roomId);
+        }
+        return message;
+    }
+
+    private static AccessDeniedException denySubscription(String destination, MessageHeaders headers, String reason) {
+        log.warn("STOMP SUBSCRIBE to {} denied for session {}: {}", destination,
+                headers.get(SimpMessageHeaderAccessor.SESSION_ID_HEADER), reason);
+        return new AccessDeniedException(reason);
+    }
+
+    /**
+     * Подписка становится активной только после обработки кадра брокером, поэтому догрузка
+     * запускается здесь: сообщения, сохраненные после ее чтения, придут уже живой доставкой.
+     */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof SimpleBrokerMessageHandler)) {
+            return;
+        }
+        MessageHeaders headers = message.getHeaders();
+        if (headers.get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER) != SimpMessageType.SUBSCRIBE) {
+            return;
+        }
+        String destination = (String) headers.get(SimpMessageHeaderAccessor.DESTINATION_HEADER);
+        String roomId = roomIdOf(destination);
+        // Эфемерные события не догружаются
+        if (roomId != null && !destination.startsWith(EVENTS_TOPIC_PREFIX)
+                && headers.get(SimpMessageHeaderAccessor.USER_HEADER) instanceof StompSessionPrincipal principal) {
+            roomResyncService.onSubscribed(principal, roomId);
+        }
+    }
+
+    /**
+     * SEND-кадр клиента приходит во входящий канал с типом MESSAGE.
+     */
+    private Message<?> limitSend(Message<?> message, MessageHeaders headers) {
+        if (!SEND_MESSAGE_DESTINATION.equals(headers.get(SimpMessageHeaderAccessor.DESTINATION_HEADER))
+                || !(headers.get(SimpMessageHeaderAccessor.USER_HEADER) instanceof StompSessionPrincipal principal)
+                || messageRateLimiter.tryAcquireForUser(principal.getUserId())) {
+            return message;
+        }
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error(HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase())
+                .message("Message rate limit exceeded. Please slow down.")
+                .path(SEND_MESSAGE_DESTINATION)
+                .build();
+        messagingTemplate.getObject().convertAndSendToUser(principal.getName(), ERRORS_QUEUE, error);
+        return null;
+    }
+
+    /**
+     * Разбирает заголовок вида "roomId:seq,roomId:seq". Некорректные элементы пропускаются.
+     */
+    static Map<String, Long> parseResumeSeqs(String header) {
+        if (header == null || header.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Long> seqs = new HashMap<>();
+        for (String item : header.split(",")) {
+            if (seqs.size() >= MAX_RESUME_ROOMS) {
+                break;
+            }
+            int separator = item.lastIndexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String roomId = item.substring(0, separator).trim();
+            if (roomId.isEmpty()) {
+                continue;
+            }
+            try {
+                long seq = Long.parseLong(item.substring(separator + 1).trim());
+                if (seq >= 0) {
+                    seqs.put(roomId, seq);
+                }
+            } catch (NumberFormatException ignored) {
+                // Позиция комнаты не передана корректно — комната просто не догружается
+            }
+        }
+        return seqs;
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private static boolean isBrokerDestination(String destination) {
+        return BROKER_PREFIXES.stream().anyMatch(destination::startsWith);
+    }
+
+    private static String roomIdOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        if (destination.startsWith(ROOM_TOPIC_PREFIX)) {
+            return destination.substring(ROOM_TOPIC_PREFIX.length());
+        }
+        if (destination.startsWith(LEGACY_ROOM_TOPIC_PREFIX)) {
+            return destination.substring(LEGACY_ROOM_TOPIC_PREFIX.length());
+        }
+        if (destination.startsWith(EVENTS_TOPIC_PREFIX)) {
+            return destination.substring(EVENTS_TOPIC_PREFIX.length());
+        }
+        return null;
+    }
+}
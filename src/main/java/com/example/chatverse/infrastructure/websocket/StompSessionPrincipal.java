@@ -0,0 +1,90 @@
+package com.example.chatverse.infrastructure.websocket;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Контекст STOMP-сессии, создаваемый один раз при CONNECT: разобранный ID пользователя,
+ * срок действия токена, множество комнат, доступ к которым уже проверен, и позиции догрузки
+ * (последний увиденный клиентом roomSeq по комнатам из заголовка CONNECT resume-seq).
+ * Используется как Principal сессии, поэтому обработчики получают его без повторного разбора.
+ */
+public final class StompSessionPrincipal implements Principal {
+
+    private final long userId;
+    private final String name;
+    private final String sessionId;
+    private final Instant tokenExpiresAt;
+    private final Set<String> authorizedRooms = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> resumeSeqs;
+
+    public StompSessionPrincipal(long userId, String sessionId, Instant tokenExpiresAt) {
+        this(userId, sessionId, tokenExpiresAt, Map.of());
+    }
+
+    public StompSessionPrincipal(long userId, String sessionId, Instant tokenExpiresAt, Map<String, Long> resumeSeqs) {
+        this.userId = userId;
+        this.name = Long.toString(userId);
+        this.sessionId = sessionId;
+        this.tokenExpiresAt = tokenExpiresAt;
+        this.resumeSeqs = new ConcurrentHashMap<>(resumeSeqs);
+    }
+
+    /**
+     * Имя совпадает с ID пользователя: на нем строятся адреса /user/{id}/queue/...
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public Instant getTokenExpiresAt() {
+        return tokenExpiresAt;
+    }
+
+    public boolean isExpired(Instant now) {
+        return tokenExpiresAt != null && !now.isBefore(tokenExpiresAt);
+    }
+
+    /**
+     * Проверяет, что пользователь — участник комнаты (ID комнаты имеет вид "minId_maxId").
+     * Результат кэшируется на время сессии.
+     */
+    public boolean canAccessRoom(String roomId) {
+        if (authorizedRooms.contains(roomId)) {
+            return true;
+        }
+        int separator = roomId.indexOf('_');
+        if (separator <= 0 || separator != roomId.lastIndexOf('_')) {
+            return false;
+        }
+        boolean participant = name.equals(roomId.substring(0, separator)) || name.equals(roomId.substring(separator + 1));
+        if (participant) {
+            authorizedRooms.add(roomId);
+        }
+        return participant;
+    }
+
+    /**
+     * Возвращает и забирает позицию догрузки комнаты: повторная подписка в той же сессии догрузку не запускает.
+     */
+    public Long takeResumeSeq(String roomId) {
+        return resumeSeqs.remove(roomId);
+    }
+
+    @Override
+    public String toString() {
+        return "StompSessionPrincipal{userId=" + userId + ", sessionId=" + sessionId + '}';
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.chatverse.infrastructure.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Открытые WebSocket-сессии и их STOMP-контексты. Сессии регистрирует декоратор обработчика
+ * (см. WebSocketConfig), контекст привязывается при CONNECT. Периодическая проверка закрывает
+ * все сессии с истекшим токеном разом, вместо проверки токена на каждом кадре.
+ * При остановке пода реестр перестает принимать новые подключения (см. GracefulDrainCoordinator).
+ */
+@Component
+@Slf4j
+public class StompSessionRegistry {
+
+    /** Код закрытия для клиента: токен истек, нужно переподключиться с новым. */
+    public static final CloseStatus TOKEN_EXPIRED = new CloseStatus(4001, "Token expired");
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, StompSessionPrincipal> principals = new ConcurrentHashMap<>();
+    private volatile boolean acceptingConnections = true;
+
+    public void register(WebSocketSession session) {
+        sessions.put(session.getId(), session);
+    }
+
+    public void unregister(String sessionId) {
+        sessions.remove(sessionId);
+        principals.remove(sessionId);
+    }
+
+    public void attachPrincipal(StompSessionPrincipal principal) {
+        principals.put(principal.getSessionId(), principal);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public List<StompSessionPrincipal> getPrincipals() {
+        return List.copyOf(principals.values());
+    }
+
+    public List<String> getSessionIds() {
+        return List.copyOf(sessions.keySet());
+    }
+
+    public boolean isAcceptingConnections() {
+        return acceptingConnections;
+    }
+
+    public void stopAcceptingConnections() {
+        acceptingConnections = false;
+    }
+
+    /**
+     * Закрывает сессию с указанным кодом, если она еще открыта.
+     */
+    public void close(String sessionId, CloseStatus status) {
+        WebSocketSession session = sessions.get(sessionId);
+        unregister(sessionId);
+        if (session != null && session.isOpen()) {
+            try {
+                session.close(status);
+            } catch (IOException e) {
+                log.debug("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.expired-session-sweep-ms:30000}")
+    public void closeExpiredSessions() {
+        Instant now = Instant.now();
+        int closed = 0;
+        for (StompSessionPrincipal principal : principals.values()) {
+            if (!principal.isExpired(now)) {
+                continue;
+            }
+            WebSocketSession session = sessions.get(principal.getSessionId());
+            unregister(principal.getSessionId());
+            if (session != null && session.isOpen()) {
+                try {
+                    session.close(TOKEN_EXPIRED);
+                    closed++;
+                } catch (IOException e) {
+                    log.debug("Failed to close expired WebSocket session {}: {}", principal.getSessionId(), e.getMessage());
+                }
+            }
+        }
+        if (closed > 0) {
+            log.info("Closed {} WebSocket session(s) with expired tokens", closed);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.chatverse.presentation.controller;
+
+import com.example.chatverse.application.dto.response.DltReplayResponse;
+import com.example.chatverse.infrastructure.kafka.DeadLetterReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/admin/kafka")
+@RequiredArgsConstructor
+@Tag(name = "Admin", description = "Служебные операции (только для роли ADMIN)")
+@SecurityRequirement(name = "bearer-key")
+public class AdminKafkaController {
+
+    private final DeadLetterReplayService deadLetterReplayService;
+
+    @Value("${app.kafka.topic.chat-messages:chat-messages}")
+    private String chatTopicName;
+
+    @Operation(summary = "Переиграть DLT", description = "Возвращает пачку записей из chat-messages.DLT в основной топик.")
+    @ApiResponse(responseCode = "200", description = "Записи переиграны.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = DltReplayResponse.class)))
+    @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован.")
+    @ApiResponse(responseCode = "403", description = "Нет роли ADMIN.")
+    @PostMapping("/dlt/replay")
+    public ResponseEntity<DltReplayResponse> replayDeadLetters(
+            @RequestParam(name = "maxRecords", defaultValue = "100") @Parameter(description = "Сколько записей переиграть за вызов") int maxRecords) {
+        int replayed = deadLetterReplayService.replay(maxRecords);
+        return ResponseEntity.ok(DltReplayResponse.builder()
+                .sourceTopic(chatTopicName + ".DLT")
+                .replayed(replayed)
+                .build());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.chatverse.presentation.controller;
+
+import com.example.chatverse.application.dto.response.AttachmentResponse;
+import com.example.chatverse.application.dto.response.ErrorResponse;
+import com.example.chatverse.domain.service.AttachmentService;
+import com.example.chatverse.infrastructure.exception.InvalidTokenUserIdException;
+import com.example.chatverse.infrastructure.exception.UserNotAuthenticatedException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * Загрузка и скачивание вложений. Идентификатор вложения — SHA-256 содержимого, поэтому
+ * содержимое по идентификатору никогда не меняется: ETag равен идентификатору, а ответ кэшируется навсегда.
+ * Тип содержимого задает загрузивший, поэтому inline отдаются только растровые изображения из белого списка,
+ * остальное (в том числе SVG и HTML) — как файл для сохранения.
+ */
+@RestController
+@RequestMapping("/api/v1/attachments")
+@RequiredArgsConstructor
+@Tag(name = "Attachments", description = "API для загрузки и скачивания вложений")
+@SecurityRequirement(name = "bearer-key")
+public class AttachmentController {
+
+    // Атрибуты sendfile Tomcat: файл отдается ядром напрямую из page cache в сокет
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final Set<String> INLINE_CONTENT_TYPES = Set.of(
+            MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_GIF_VALUE, "image/webp");
+
+    private final AttachmentService attachmentService;
+
+    @Value("${app.storage.sendfile-min-size:48KB}")
+    private DataSize sendfileMinSize;
+
+    @Operation(summary = "Загрузить вложение", description = "Принимает файл как multipart/form-data (часть file). Файл пишется в хранилище потоком.")
+    @ApiResponse(responseCode = "200", description = "Вложение сохранено.",
+            content = @Content(schema = @Schema(implementation = AttachmentResponse.class)))
+    @ApiResponse(responseCode = "413", description = "Файл больше допустимого размера.",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<AttachmentResponse> upload(@RequestPart("file") MultipartFile file,
+                                                     Authentication authentication) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.ok(attachmentService.upload(getUserId(authentication), file.getContentType(), content));
+        }
+    }
+
+    @Operation(summary = "Загрузить вложение потоком",
+            description = "Тело запроса — содержимое файла (в том числе chunked), тип берется из Content-Type.")
+    @ApiResponse(responseCode = "200", description = "Вложение сохранено.",
+            content = @Content(schema = @Schema(implementation = AttachmentResponse.class)))
+    @ApiResponse(responseCode = "413", description = "Файл больше допустимого размера.",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    @PostMapping(consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, "image/*", "video/*", "audio/*", "application/pdf"})
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<AttachmentResponse> uploadStream(HttpServletRequest request,
+                                                           Authentication authentication) throws IOException {
+        return ResponseEntity.ok(attachmentService.upload(getUserId(authentication), request.getContentType(),
+                request.getInputStream()));
+    }
+
+    @Operation(summary = "Скачать вложение",
+            description = "Доступно загрузившему, участникам переписки с вложением, а для аватаров — всем. " +
+                    "Поддерживает If-None-Match: неизменившееся вложение возвращается как 304.")
+    @ApiResponse(responseCode = "200", description = "Содержимое вложения.")
+    @ApiResponse(responseCode = "304", description = "Вложение не изменилось.")
+    @ApiResponse(responseCode = "404", description = "Вложение не найдено или недоступно пользователю.",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    @GetMapping("/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public void download(@PathVariable @Parameter(description = "Идентификатор вложения") String id,
+                         HttpServletRequest request, HttpServletResponse response,
+                         Authentication authentication) throws IOException {
+        AttachmentService.StoredAttachment stored = attachmentService.open(id, getUserId(authentication));
+        String contentType = stored.attachment().getContentType();
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, isInline(contentType) ? "inline" : "attachment");
+        String etag = "\"" + id + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = stored.attachment().getSizeBytes();
+        response.setContentType(contentType);
+        response.setContentLengthLong(size);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (size >= sendfileMinSize.toBytes() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, stored.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        // Без sendfile: transferTo из FileChannel в поток ответа, без промежуточного буфера приложения
+        try (FileChannel file = FileChannel.open(stored.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += file.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static boolean isInline(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return INLINE_CONTENT_TYPES.contains(mediaType.getType() + "/" + mediaType.getSubtype());
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static Long getUserId(Authentication authentication) {
+        if (authentication == null || authentication.getName() == null) {
+            throw new UserNotAuthenticatedException("User not authenticated.");
+        }
+        try {
+            return Long.parseLong(authentication.getName());
+        } catch (NumberFormatException e) {
+            throw new InvalidTokenUserIdException("Invalid user ID format in token.");
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.chatverse.presentation.controller;
 
+import com.example.chatverse.application.dto.conversation.ConversationPageResponseDto;
 import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.MessageSearchPageResponseDto;
 import com.example.chatverse.application.dto.message.SendMessageRequestDto;
 import com.example.chatverse.domain.service.ChatService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,12 +13,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -28,20 +32,41 @@ public class ChatController {
 
     private final ChatService chatService;
 
-    @Operation(summary = "Отправить сообщение", description = "Отправляет сообщение указанному получателю.")
+    @Operation(summary = "Отправить сообщение", description = "Отправляет сообщение указанному получателю. " +
+            "Изображения и файлы сначала загружаются через POST /api/v1/attachments, в сообщении передается attachmentId; " +
+            "слишком длинный текст сохраняется вложением, в сообщении остается его начало.")
     @ApiResponse(responseCode = "200", description = "Сообщение успешно отправлено в очередь.")
     @ApiResponse(responseCode = "400", description = "Некорректные данные запроса (например, не указан получатель или контент).")
     @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован.")
     @ApiResponse(responseCode = "404", description = "Получатель не найден.")
+    @ApiResponse(responseCode = "429", description = "Превышен лимит отправки сообщений пользователем или в комнату.")
+    @ApiResponse(responseCode = "503", description = "Kafka недоступна или буфер отправки переполнен, повторите позже.")
     @PostMapping("/messages")
     @PreAuthorize("isAuthenticated()") // Только аутентифицированные пользователи
     public ResponseEntity<Void> sendMessage(
-            @Validated @RequestBody @Parameter(description = "Данные сообщения (требуются recipientId и content)") SendMessageRequestDto requestDto,
+            @Validated @RequestBody @Parameter(description = "Данные сообщения (требуются recipientId и content или attachmentId)") SendMessageRequestDto requestDto,
             Authentication authentication) {
         chatService.sendMessage(requestDto, authentication); // Передаем новое DTO в сервис
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Поиск по сообщениям", description = "Полнотекстовый поиск по сообщениям всех комнат пользователя с ранжированием и подсветкой.")
+    @ApiResponse(responseCode = "200", description = "Результаты поиска успешно получены.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = MessageSearchPageResponseDto.class)))
+    @ApiResponse(responseCode = "400", description = "Пустой или слишком длинный запрос.")
+    @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован.")
+    @GetMapping("/messages/search")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<MessageSearchPageResponseDto> searchMessages(
+            @RequestParam(name = "q") @Parameter(description = "Поисковый запрос") String query,
+            @RequestParam(name = "afterRank", required = false) @Parameter(description = "Курсор: nextAfterRank из предыдущей страницы") Float afterRank,
+            @RequestParam(name = "afterMessageId", required = false) @Parameter(description = "Курсор: nextAfterMessageId из предыдущей страницы") String afterMessageId,
+            @RequestParam(name = "limit", defaultValue = "20") @Parameter(description = "Размер страницы (не более 50)") int limit,
+            Authentication authentication) {
+        MessageSearchPageResponseDto page = chatService.searchMessages(query, afterRank, afterMessageId, limit, authentication);
+        return ResponseEntity.ok(page);
+    }
+
     @Operation(summary = "Получить историю сообщений", description = "Возвращает историю сообщений для указанной комнаты чата.")
     @ApiResponse(responseCode = "200", description = "История сообщений успешно получена.",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = ChatMessage.class)))
@@ -51,8 +76,38 @@ public class ChatController {
     @PreAuthorize("isAuthenticated()") // Только аутентифицированные пользователи
     public ResponseEntity<List<ChatMessage>> getMessageHistory(
             @PathVariable @Parameter(description = "ID комнаты чата (например, '1_2')") String roomId,
+            @RequestParam(name = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Вернуть сообщения начиная с этого момента (ISO-8601); по умолчанию весь срок хранения") Instant since,
             Authentication authentication) {
-        List<ChatMessage> history = chatService.getMessageHistory(roomId, authentication);
+        List<ChatMessage> history = chatService.getMessageHistory(roomId, since, authentication);
         return ResponseEntity.ok(history);
     }
+
+    @Operation(summary = "Получить список чатов", description = "Возвращает чаты пользователя, упорядоченные по времени последнего сообщения, с количеством непрочитанных.")
+    @ApiResponse(responseCode = "200", description = "Список чатов успешно получен.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ConversationPageResponseDto.class)))
+    @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован.")
+    @GetMapping("/conversations")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ConversationPageResponseDto> getConversations(
+            @RequestParam(name = "beforeTimestamp", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Курсор: nextBeforeTimestamp из предыдущей страницы") Instant beforeTimestamp,
+            @RequestParam(name = "beforeId", required = false) @Parameter(description = "Курсор: nextBeforeId из предыдущей страницы") Long beforeId,
+            @RequestParam(name = "limit", defaultValue = "20") @Parameter(description = "Размер страницы (не более 100)") int limit,
+            Authentication authentication) {
+        ConversationPageResponseDto page = chatService.getConversations(beforeTimestamp, beforeId, limit, authentication);
+        return ResponseEntity.ok(page);
+    }
+
+    @Operation(summary = "Отметить чат прочитанным", description = "Сбрасывает счетчик непрочитанных сообщений в комнате.")
+    @ApiResponse(responseCode = "204", description = "Счетчик непрочитанных сброшен.")
+    @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован.")
+    @PostMapping("/conversations/{roomId}/read")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> markRoomRead(
+            @PathVariable @Parameter(description = "ID комнаты чата (например, '1_2')") String roomId,
+            Authentication authentication) {
+        chatService.markRoomRead(roomId, authentication);
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.example.chatverse.application.dto.contact.PendingRequestResponseDto;
 import com.example.chatverse.application.dto.contact.SendContactRequestDto;
 import com.example.chatverse.application.dto.contact.ContactResponseDto;
 import com.example.chatverse.application.dto.contact.UpdateContactStatusRequestDto;
+import com.example.chatverse.application.dto.contact.UserSearchPageResponseDto;
 import com.example.chatverse.domain.entity.ContactStatus;
 import com.example.chatverse.domain.service.ContactService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -94,5 +95,20 @@ public class ContactController {
         return ResponseEntity.ok(requests);
     }
 
-    // TODO: Эндпоинты для блокировки/разблокировки, поиска пользователей
+    @Operation(summary = "Поиск пользователей", description = "Поиск по username и имени для подсказок при вводе. " +
+            "От трех символов — совпадение в любом месте, короче — по началу username.")
+    @ApiResponse(responseCode = "200", description = "Результаты поиска успешно получены.")
+    @ApiResponse(responseCode = "400", description = "Пустой или слишком длинный запрос.")
+    @GetMapping("/search")
+    public ResponseEntity<UserSearchPageResponseDto> searchUsers(
+            @RequestParam(name = "q") @Parameter(description = "Поисковый запрос") String query,
+            @RequestParam(name = "afterRank", required = false) @Parameter(description = "Курсор: nextAfterRank из предыдущей страницы") Float afterRank,
+            @RequestParam(name = "afterId", required = false) @Parameter(description = "Курсор: nextAfterId из предыдущей страницы") Long afterId,
+            @RequestParam(name = "limit", defaultValue = "20") @Parameter(description = "Размер страницы (не более 50)") int limit,
+            Authentication authentication) {
+        Long currentUserId = getCurrentUserId(authentication);
+        return ResponseEntity.ok(contactService.searchUsers(currentUserId, query, afterRank, afterId, limit));
+    }
+
+    // TODO: Эндпоинты для блокировки/разблокировки
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.example.chatverse.presentation.controller;
 import com.example.chatverse.application.dto.request.*;
 import com.example.chatverse.application.dto.response.*;
 import com.example.chatverse.domain.service.AuthService;
+import com.example.chatverse.domain.service.AvatarService;
 import com.example.chatverse.domain.service.UserService;
 import com.example.chatverse.infrastructure.exception.InvalidTokenUserIdException;
 import com.example.chatverse.infrastructure.exception.UserNotAuthenticatedException;
@@ -12,14 +13,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -28,11 +35,13 @@ public class UserController {
 
     private final UserService userService;
     private final AuthService authService;
+    private final AvatarService avatarService;
 
     @Autowired
-    public UserController(UserService userService, AuthService authService) {
+    public UserController(UserService userService, AuthService authService, AvatarService avatarService) {
         this.userService = userService;
         this.authService = authService;
+        this.avatarService = avatarService;
     }
 
     @Operation(summary = "Регистрация пользователя",
@@ -84,6 +93,38 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Загрузка аватара",
+            description = "Принимает изображение как multipart/form-data (часть file) или как тело запроса с типом image/*. " +
+                    "Файл пишется в хранилище потоком; миниатюры генерируются в фоне, до этого вместо них возвращается исходное изображение.",
+            security = { @SecurityRequirement(name = "bearer-key") })
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Аватар обновлён.",
+                    content = @Content(schema = @Schema(implementation = UserUpdateResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Файл не является изображением.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "413", description = "Файл больше допустимого размера.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PutMapping(value = "/me/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<UserUpdateResponse> uploadAvatar(Authentication authentication,
+                                                           @RequestPart("file") MultipartFile file) throws IOException {
+        Long currentUserId = getUserIdFromAuthentication(authentication);
+        try (InputStream content = file.getInputStream()) {
+            return ResponseEntity.ok(new UserUpdateResponse(
+                    avatarService.updateAvatar(currentUserId, file.getContentType(), content)));
+        }
+    }
+
+    @Operation(summary = "Загрузка аватара потоком", description = "То же, что и multipart-загрузка, но изображение передаётся телом запроса.",
+            security = { @SecurityRequirement(name = "bearer-key") })
+    @PutMapping(value = "/me/avatar", consumes = "image/*")
+    public ResponseEntity<UserUpdateResponse> uploadAvatarStream(Authentication authentication,
+                                                                 HttpServletRequest request) throws IOException {
+        Long currentUserId = getUserIdFromAuthentication(authentication);
+        return ResponseEntity.ok(new UserUpdateResponse(
+                avatarService.updateAvatar(currentUserId, request.getContentType(), request.getInputStream())));
+    }
+
     @Operation(summary = "Удаление пользователя", description = "Удаляет пользователя по ID.",
             security = { @SecurityRequirement(name = "bearer-key") })
     @ApiResponses({
@@ -103,6 +144,8 @@ public class UserController {
             @ApiResponse(responseCode = "201", description = "Код успешно отправлен.",
                     content = @Content(schema = @Schema(implementation = SuccessResponse.class))),
             @ApiResponse(responseCode = "400", description = "Некорректный номер телефона.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "429", description = "Слишком много запросов кода для этого номера.",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping("/send-auth-code")
@@ -116,6 +159,8 @@ public class UserController {
             @ApiResponse(responseCode = "200", description = "Код успешно проверен.",
                     content = @Content(schema = @Schema(implementation = LoginResponse.class))),
             @ApiResponse(responseCode = "400", description = "Неверный код авторизации.",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "429", description = "Слишком много попыток проверки кода для этого номера.",
                     content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PostMapping("/check-auth-code")
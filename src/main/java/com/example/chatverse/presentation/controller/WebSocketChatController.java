@@ -1,17 +1,26 @@
 package com.example.chatverse.presentation.controller;
 
 import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.SendEphemeralEventRequestDto;
 import com.example.chatverse.application.dto.message.SendMessageRequestDto;
 import com.example.chatverse.domain.service.ChatService;
+import com.example.chatverse.domain.service.MessagePayloadService;
+import com.example.chatverse.infrastructure.contacts.ContactGraph;
+import com.example.chatverse.infrastructure.ephemeral.EphemeralEventService;
+import com.example.chatverse.infrastructure.exception.ResourceNotFoundException;
+import com.example.chatverse.infrastructure.exception.ServiceUnavailableException;
+import com.example.chatverse.infrastructure.exception.TooManyRequestsException;
+import com.example.chatverse.infrastructure.exception.UserNotFoundException;
+import com.example.chatverse.infrastructure.websocket.StompSessionPrincipal;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Controller;
 
-import java.security.Principal;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -22,12 +31,15 @@ public class WebSocketChatController {
     private static final Logger log = LoggerFactory.getLogger(WebSocketChatController.class);
 
     private final ChatService chatService;
+    private final MessagePayloadService messagePayloadService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final EphemeralEventService ephemeralEventService;
+    private final ContactGraph contactGraph;
 
     @MessageMapping("/chat.sendMessage")
     public void sendMessageViaWebSocket(
             @Payload SendMessageRequestDto requestDto,
-            Principal principal
+            StompSessionPrincipal principal // Контекст сессии, созданный при CONNECT
     ) {
 
         if (principal == null) {
@@ -35,20 +47,12 @@ public class WebSocketChatController {
             return;
         }
 
-        if (requestDto.getRecipientId() == null || requestDto.getContent() == null || requestDto.getContent().trim().isEmpty()) {
+        if (requestDto.getRecipientId() == null) {
             log.error("Invalid SendMessageRequestDto received via WebSocket. Principal: {}, Request: {}", principal.getName(), requestDto);
             return;
         }
 
-        String principalName = principal.getName();
-        Long senderId;
-        try {
-            senderId = Long.parseLong(principalName);
-        } catch (NumberFormatException e) {
-            log.error("Could not parse senderId from principal name '{}' for WebSocket message. Request: {}",
-                    principalName, requestDto, e);
-            return;
-        }
+        Long senderId = principal.getUserId();
 
         Long recipientId = requestDto.getRecipientId();
         String roomId;
@@ -67,24 +71,61 @@ public class WebSocketChatController {
                 .senderId(senderId)
                 .recipientId(recipientId)
                 .roomId(roomId)
-                .content(requestDto.getContent())
                 .timestamp(Instant.now())
                 .build();
+        try {
+            messagePayloadService.applyPayload(fullChatMessage, requestDto);
+        } catch (IllegalArgumentException | ResourceNotFoundException e) {
+            log.debug("Invalid message payload from user {}: {}", senderId, e.getMessage());
+            messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", e.getMessage());
+            return;
+        }
 
-        log.info("Processing WebSocket message via SendMessageRequestDto: ID={}, Room={}, Sender={}, Recipient={}, Content='{}'",
+        log.debug("Processing WebSocket message via SendMessageRequestDto: ID={}, Room={}, Sender={}, Recipient={}",
                 fullChatMessage.getMessageId(),
                 fullChatMessage.getRoomId(),
                 fullChatMessage.getSenderId(),
-                fullChatMessage.getRecipientId(),
-                fullChatMessage.getContent()
+                fullChatMessage.getRecipientId()
         );
 
         try {
             chatService.sendWebSocketChatMessage(fullChatMessage);
+        } catch (UserNotFoundException | AccessDeniedException e) {
+            log.debug("Message from user {} to recipient {} rejected: {}", senderId, recipientId, e.getMessage());
+            messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", e.getMessage());
+        } catch (TooManyRequestsException | ServiceUnavailableException e) {
+            // Сообщение не принято (лимит комнаты или перегрузка Kafka) — клиент может повторить позже
+            log.debug("Message for room {} rejected: {}", roomId, e.getMessage());
+            messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", e.getMessage());
         } catch (Exception e) {
             log.error("Error calling ChatService to send WebSocket message: {}", fullChatMessage, e);
             // messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors", "Failed to send message");
             return;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Эфемерные события (печатает, записывает). Не сохраняются и не проходят через Kafka;
+     * подписчики комнаты получают их в /topic/events/{roomId}. Как и сообщения, не отправляются
+     * при блокировке в любую сторону; отказ молчаливый — это только индикатор.
+     */
+    @MessageMapping("/chat.event")
+    public void sendEphemeralEvent(@Payload SendEphemeralEventRequestDto requestDto, StompSessionPrincipal principal) {
+        if (principal == null || requestDto.getRecipientId() == null || requestDto.getType() == null) {
+            log.debug("Invalid ephemeral event received via WebSocket: {}", requestDto);
+            return;
+        }
+        String roomId;
+        try {
+            roomId = chatService.generateRoomId(principal.getUserId(), requestDto.getRecipientId());
+        } catch (IllegalArgumentException e) {
+            log.debug("Ephemeral event with invalid recipient {} from user {}", requestDto.getRecipientId(), principal.getUserId());
+            return;
+        }
+        if (contactGraph.isBlockedEitherWay(principal.getUserId(), requestDto.getRecipientId())) {
+            log.debug("Ephemeral event from user {} to {} skipped: blocked", principal.getUserId(), requestDto.getRecipientId());
+            return;
+        }
+        ephemeralEventService.publish(principal.getUserId(), roomId, requestDto.getType());
+    }
+}
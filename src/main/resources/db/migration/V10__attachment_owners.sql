@@ -0,0 +1,18 @@
+-- Кто загружал вложение. Одинаковое содержимое хранится одной записью attachments, но отправлять
+-- и скачивать его может каждый, кто его загрузил; created обновляется при повторной загрузке
+-- и защищает вложение от очистки неиспользуемых.
+CREATE TABLE IF NOT EXISTS attachment_owners (
+    hash VARCHAR(64) NOT NULL REFERENCES attachments (hash) ON DELETE CASCADE,
+    owner_id BIGINT NOT NULL,
+    created TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (hash, owner_id)
+);
+
+INSERT INTO attachment_owners (hash, owner_id, created)
+SELECT hash, owner_id, created FROM attachments WHERE owner_id IS NOT NULL
+ON CONFLICT DO NOTHING;
+
+-- Проверка, что вложение — чей-то аватар (доступ на чтение и очистка замененных аватаров)
+CREATE INDEX IF NOT EXISTS idx_platform_users_avatar_hash ON platform_users (avatar_hash) WHERE avatar_hash IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_platform_users_avatar_big_hash ON platform_users (avatar_big_hash) WHERE avatar_big_hash IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_platform_users_avatar_mini_hash ON platform_users (avatar_mini_hash) WHERE avatar_mini_hash IS NOT NULL;
@@ -0,0 +1,16 @@
+-- Миграция без транзакции (V12__contacts_indexes_concurrently.sql.conf): индексы строятся CONCURRENTLY,
+-- не блокируя запись в contacts (заявки, принятие, блокировки).
+-- Если построение прервалось, индекс остается INVALID: его нужно удалить (DROP INDEX CONCURRENTLY)
+-- и повторить миграцию.
+
+-- Контакты пользователя выбираются двумя ветками UNION ALL (он userOne / он userTwo), каждая по своему индексу.
+-- INCLUDE делает индексы покрывающими для графа контактов (собеседник, статус, инициатор): index-only scan
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_contacts_user_one_status
+    ON contacts (user_one_id, status) INCLUDE (user_two_id, action_user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_contacts_user_two_status
+    ON contacts (user_two_id, status) INCLUDE (user_one_id, action_user_id);
+
+-- Проверка строк, записанных до ограничения из V8: ветки UNION ALL не пересекаются, только если порядок
+-- канонический во всей таблице. VALIDATE берет SHARE UPDATE EXCLUSIVE и не блокирует запись.
+-- Если проверка упала, пары с user_one_id >= user_two_id нужно исправить и повторить миграцию
+ALTER TABLE contacts VALIDATE CONSTRAINT chk_contacts_canonical_order;
@@ -0,0 +1,14 @@
+-- Вложения хранятся вне БД в контентно-адресуемом хранилище (имя файла — SHA-256 содержимого);
+-- в таблице только метаданные. Одинаковые файлы хранятся один раз.
+CREATE TABLE IF NOT EXISTS attachments (
+    hash VARCHAR(64) PRIMARY KEY,
+    content_type VARCHAR(127) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    owner_id BIGINT,
+    created TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+-- Аватар и его миниатюры (миниатюры появляются после асинхронной обработки)
+ALTER TABLE platform_users ADD COLUMN IF NOT EXISTS avatar_hash VARCHAR(64);
+ALTER TABLE platform_users ADD COLUMN IF NOT EXISTS avatar_big_hash VARCHAR(64);
+ALTER TABLE platform_users ADD COLUMN IF NOT EXISTS avatar_mini_hash VARCHAR(64);
@@ -0,0 +1,17 @@
+-- Поиск пользователей по username и имени (type-ahead).
+-- Миграция без транзакции (V7__platform_users_search.sql.conf): индексы строятся CONCURRENTLY,
+-- не блокируя запись в platform_users (входы, регистрация). Отдельная колонка не добавляется:
+-- сохраняемая генерируемая колонка переписала бы всю таблицу под ACCESS EXCLUSIVE.
+-- Если построение прервалось, индекс остается INVALID: его нужно удалить (DROP INDEX CONCURRENTLY)
+-- и повторить миграцию.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Триграммный индекс по выражению: LIKE '%фрагмент%' от трех символов без полного просмотра таблицы.
+-- Запросы должны использовать ровно это выражение (см. UserRepository.SEARCH_TEXT)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_platform_users_search_trgm
+    ON platform_users USING GIN ((lower(username || ' ' || coalesce(name, ''))) gin_trgm_ops);
+
+-- Поиск по началу username (короткие запросы и первые кандидаты длинных).
+-- Побайтовое сравнение (COLLATE "C") позволяет индексу обслуживать и LIKE 'x%', и ORDER BY
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_platform_users_username_prefix
+    ON platform_users ((lower(username) COLLATE "C"));
@@ -0,0 +1,18 @@
+-- Таблица контактов раньше создавалась только через ddl-auto; на существующих базах CREATE пропускается.
+-- Пара хранится в каноническом порядке: user_one_id — меньший ID, user_two_id — больший.
+CREATE TABLE IF NOT EXISTS contacts (
+                                        id BIGSERIAL PRIMARY KEY,
+                                        user_one_id BIGINT NOT NULL REFERENCES platform_users (id),
+                                        user_two_id BIGINT NOT NULL REFERENCES platform_users (id),
+                                        status VARCHAR(255) NOT NULL,
+                                        action_user_id BIGINT NOT NULL REFERENCES platform_users (id),
+                                        created_at TIMESTAMP(6) NOT NULL,
+                                        updated_at TIMESTAMP(6) NOT NULL,
+                                        UNIQUE (user_one_id, user_two_id)
+);
+
+-- Канонический порядок теперь проверяет база: поиск пары идет одним условием по уникальному индексу.
+-- NOT VALID не проверяет старые строки и не блокирует таблицу на время полного просмотра
+ALTER TABLE contacts ADD CONSTRAINT chk_contacts_canonical_order CHECK (user_one_id < user_two_id) NOT VALID;
+
+-- Индексы для выборок контактов пользователя и проверка старых строк — в V12 без транзакции (CONCURRENTLY)
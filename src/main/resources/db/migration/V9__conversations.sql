@@ -0,0 +1,26 @@
+-- Сводки чатов раньше создавались только через ddl-auto; на существующих базах CREATE пропускается.
+CREATE TABLE IF NOT EXISTS conversations (
+                                             id BIGSERIAL PRIMARY KEY,
+                                             user_id BIGINT NOT NULL,
+                                             room_id VARCHAR(255) NOT NULL,
+                                             peer_id BIGINT NOT NULL,
+                                             last_message_id VARCHAR(255) NOT NULL,
+                                             last_sender_id BIGINT NOT NULL,
+                                             last_message_snippet VARCHAR(200) NOT NULL,
+                                             last_message_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+                                             unread_count INTEGER NOT NULL
+);
+
+-- upsertLastMessage опирается на ON CONFLICT (user_id, room_id). На базах, созданных ddl-auto,
+-- ограничение с этим именем уже есть (и индекс под ним), поэтому CREATE пропускается.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_conversations_user_room ON conversations (user_id, room_id);
+CREATE INDEX IF NOT EXISTS idx_conversations_user_recency ON conversations (user_id, last_message_at DESC, id DESC);
+
+-- Сообщения, уже учтенные в сводках. Сообщение сохраняется в шард отдельной транзакцией, поэтому
+-- повторная доставка из Kafka снова обновляет сводки, а эта таблица не дает учесть сообщение дважды.
+CREATE TABLE IF NOT EXISTS conversation_applied_messages (
+                                                             message_id VARCHAR(255) PRIMARY KEY,
+                                                             applied_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_applied_messages_applied_at ON conversation_applied_messages (applied_at);
@@ -0,0 +1,3 @@
+-- Сообщения со ссылкой на вложение: проверка доступа к вложению и очистка неиспользуемых.
+-- Индексы на родительской таблице автоматически создаются в каждой партиции
+CREATE INDEX IF NOT EXISTS idx_chat_messages_attachment ON chat_messages (attachment_id) WHERE attachment_id IS NOT NULL;
@@ -0,0 +1,25 @@
+-- Таблица сообщений раньше создавалась только через ddl-auto; на существующих базах CREATE пропускается.
+CREATE TABLE IF NOT EXISTS chat_messages (
+                                             id BIGSERIAL PRIMARY KEY,
+                                             message_id VARCHAR(255) NOT NULL UNIQUE,
+                                             sender_id BIGINT NOT NULL,
+                                             recipient_id BIGINT NOT NULL,
+                                             room_id VARCHAR(255) NOT NULL,
+                                             content TEXT NOT NULL,
+                                             timestamp TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_room_timestamp ON chat_messages (room_id, timestamp);
+
+-- Полнотекстовый поиск: tsvector поддерживается самой базой и не маппится в сущность.
+-- Конфигурация 'simple' не зависит от языка (сообщения бывают и на русском, и на английском).
+ALTER TABLE chat_messages
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED;
+
+-- btree_gin позволяет положить ID участника и tsvector в один GIN-индекс,
+-- поэтому поиск по сообщениям пользователя не фильтрует совпадения чужих комнат после сканирования.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_sender_search ON chat_messages USING GIN (sender_id, search_vector);
+CREATE INDEX IF NOT EXISTS idx_chat_messages_recipient_search ON chat_messages USING GIN (recipient_id, search_vector);
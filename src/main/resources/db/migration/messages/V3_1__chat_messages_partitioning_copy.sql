@@ -0,0 +1,42 @@
+-- Перенос сообщений из chat_messages_legacy в партиционированную chat_messages.
+-- Скрипт выполняется вне транзакции (см. .conf): каждая порция фиксируется отдельно, поэтому
+-- копирование большой таблицы не держит одну транзакцию, блокировки и WAL до конца переноса.
+-- Повторный запуск после сбоя безопасен: уже перенесенные строки пропускаются (ON CONFLICT DO NOTHING).
+DO $$
+DECLARE
+    batch_size CONSTANT BIGINT := 50000;
+    from_id BIGINT;
+    max_id BIGINT;
+BEGIN
+    IF to_regclass('chat_messages_legacy') IS NULL THEN
+        RETURN;
+    END IF;
+    EXECUTE 'SELECT min(id), max(id) FROM chat_messages_legacy' INTO from_id, max_id;
+    WHILE from_id <= max_id LOOP
+        EXECUTE 'INSERT INTO chat_messages (id, message_id, sender_id, recipient_id, room_id, content, timestamp)
+                 SELECT id, message_id, sender_id, recipient_id, room_id, content, timestamp
+                 FROM chat_messages_legacy WHERE id >= $1 AND id < $2
+                 ON CONFLICT DO NOTHING'
+            USING from_id, from_id + batch_size;
+        COMMIT;
+        from_id := from_id + batch_size;
+    END LOOP;
+END;
+$$;
+
+-- Сообщения с датой позже заранее созданных партиций попали в партицию по умолчанию:
+-- создаем их месяцы (функция переносит строки из DEFAULT в новую партицию)
+DO $$
+DECLARE
+    m DATE;
+BEGIN
+    FOR m IN SELECT DISTINCT date_trunc('month', timestamp AT TIME ZONE 'UTC')::date FROM chat_messages_default LOOP
+        PERFORM chat_messages_ensure_partition(m);
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+SELECT setval('chat_messages_id_seq_v3', COALESCE((SELECT max(id) FROM chat_messages), 0) + 1, false);
+
+DROP TABLE IF EXISTS chat_messages_legacy;
@@ -0,0 +1,99 @@
+-- Помесячное декларативное партиционирование chat_messages по timestamp.
+-- Первичный ключ и уникальность message_id обязаны включать ключ партиционирования.
+
+CREATE SEQUENCE IF NOT EXISTS chat_messages_id_seq_v3;
+
+ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+-- Имена ограничений не меняются вместе с таблицей: освобождаем их для новой таблицы
+ALTER INDEX IF EXISTS chat_messages_pkey RENAME TO chat_messages_legacy_pkey;
+ALTER INDEX IF EXISTS chat_messages_message_id_key RENAME TO chat_messages_legacy_message_id_key;
+DROP INDEX IF EXISTS idx_chat_messages_room_timestamp;
+DROP INDEX IF EXISTS idx_chat_messages_sender_search;
+DROP INDEX IF EXISTS idx_chat_messages_recipient_search;
+
+CREATE TABLE chat_messages (
+                               id BIGINT NOT NULL DEFAULT nextval('chat_messages_id_seq_v3'),
+                               message_id VARCHAR(255) NOT NULL,
+                               sender_id BIGINT NOT NULL,
+                               recipient_id BIGINT NOT NULL,
+                               room_id VARCHAR(255) NOT NULL,
+                               content TEXT NOT NULL,
+                               timestamp TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+                               search_vector tsvector GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED,
+                               PRIMARY KEY (id, timestamp),
+                               UNIQUE (message_id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER SEQUENCE chat_messages_id_seq_v3 OWNED BY chat_messages.id;
+
+-- Индексы на родительской таблице автоматически создаются в каждой партиции
+CREATE INDEX idx_chat_messages_room_timestamp ON chat_messages (room_id, timestamp);
+CREATE INDEX idx_chat_messages_sender_search ON chat_messages USING GIN (sender_id, search_vector);
+CREATE INDEX idx_chat_messages_recipient_search ON chat_messages USING GIN (recipient_id, search_vector);
+
+-- Создает партицию на календарный месяц (UTC), если ее еще нет. Вызывается и из приложения.
+-- Строки этого месяца, попавшие в партицию по умолчанию, не дают создать партицию месяца
+-- (ограничение DEFAULT стало бы нарушено): перед созданием они переносятся в новую партицию.
+CREATE OR REPLACE FUNCTION chat_messages_ensure_partition(month_start DATE) RETURNS TEXT AS $$
+DECLARE
+    start_ts TIMESTAMPTZ := date_trunc('month', month_start::timestamp) AT TIME ZONE 'UTC';
+    end_ts TIMESTAMPTZ := (date_trunc('month', month_start::timestamp) + INTERVAL '1 month') AT TIME ZONE 'UTC';
+    partition_name TEXT := 'chat_messages_p' || to_char(month_start, 'YYYYMM');
+    has_default_rows BOOLEAN := FALSE;
+    moved_columns TEXT;
+    moved_rows BIGINT;
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+
+    IF to_regclass('chat_messages_default') IS NOT NULL THEN
+        EXECUTE 'SELECT EXISTS (SELECT 1 FROM chat_messages_default WHERE timestamp >= $1 AND timestamp < $2)'
+            INTO has_default_rows USING start_ts, end_ts;
+    END IF;
+
+    IF NOT has_default_rows THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, start_ts, end_ts);
+        RETURN partition_name;
+    END IF;
+
+    -- Список колонок берется из каталога: набор колонок меняется миграциями, генерируемые не копируются
+    SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO moved_columns
+    FROM pg_attribute
+    WHERE attrelid = 'chat_messages'::regclass AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+
+    ALTER TABLE chat_messages DETACH PARTITION chat_messages_default;
+    EXECUTE format('CREATE TABLE %I PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, start_ts, end_ts);
+    EXECUTE format('INSERT INTO chat_messages (%s) SELECT %s FROM chat_messages_default WHERE timestamp >= $1 AND timestamp < $2',
+                   moved_columns, moved_columns) USING start_ts, end_ts;
+    EXECUTE 'DELETE FROM chat_messages_default WHERE timestamp >= $1 AND timestamp < $2' USING start_ts, end_ts;
+    GET DIAGNOSTICS moved_rows = ROW_COUNT;
+    ALTER TABLE chat_messages ATTACH PARTITION chat_messages_default DEFAULT;
+
+    RAISE NOTICE 'Moved % rows from chat_messages_default to %', moved_rows, partition_name;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Партиции для уже накопленных сообщений и на несколько месяцев вперед
+DO $$
+DECLARE
+    first_month DATE := COALESCE((SELECT date_trunc('month', min(timestamp) AT TIME ZONE 'UTC')::date FROM chat_messages_legacy),
+                                 date_trunc('month', now() AT TIME ZONE 'UTC')::date);
+    last_month DATE := (date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '3 months')::date;
+    m DATE := first_month;
+BEGIN
+    WHILE m <= last_month LOOP
+        PERFORM chat_messages_ensure_partition(m);
+        m := (m + INTERVAL '1 month')::date;
+    END LOOP;
+END;
+$$;
+
+-- Страховка: строки вне созданных диапазонов не теряются. Приложение создает партиции заранее,
+-- поэтому партиция по умолчанию должна оставаться пустой.
+CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT;
+
+-- Перенос накопленных сообщений из chat_messages_legacy идет порциями в V3_1 (вне одной транзакции).
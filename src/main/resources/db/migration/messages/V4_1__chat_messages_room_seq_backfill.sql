@@ -0,0 +1,36 @@
+-- Нумерация уже сохраненных сообщений в порядке сохранения (id), как их нумерует consumer.
+-- Скрипт выполняется вне транзакции (см. .conf): каждая порция по диапазону id фиксируется отдельно,
+-- поэтому UPDATE большой таблицы не держит блокировки строк и WAL до конца нумерации.
+-- Номера порции продолжают chat_room_sequences, куда после каждой порции записывается последний номер
+-- комнаты. Повторный запуск после сбоя безопасен: пронумерованные строки (room_seq IS NOT NULL) пропускаются.
+DO $$
+DECLARE
+    batch_size CONSTANT BIGINT := 50000;
+    from_id BIGINT;
+    max_id BIGINT;
+BEGIN
+    SELECT min(id), max(id) INTO from_id, max_id FROM chat_messages WHERE room_seq IS NULL;
+    WHILE from_id <= max_id LOOP
+        WITH numbered AS (
+            SELECT m.id, m.timestamp, m.room_id,
+                   COALESCE(s.last_seq, 0) + row_number() OVER (PARTITION BY m.room_id ORDER BY m.id) AS seq
+            FROM chat_messages m
+                     LEFT JOIN chat_room_sequences s ON s.room_id = m.room_id
+            WHERE m.id >= from_id AND m.id < from_id + batch_size AND m.room_seq IS NULL
+        ), last_seqs AS (
+            INSERT INTO chat_room_sequences (room_id, last_seq)
+            SELECT room_id, max(seq) FROM numbered GROUP BY room_id
+            ON CONFLICT (room_id) DO UPDATE SET last_seq = EXCLUDED.last_seq
+        )
+        UPDATE chat_messages m
+        SET room_seq = numbered.seq
+        FROM numbered
+        WHERE m.id = numbered.id AND m.timestamp = numbered.timestamp;
+        COMMIT;
+        from_id := from_id + batch_size;
+    END LOOP;
+END;
+$$;
+
+-- Индексы на родительской таблице автоматически создаются в каждой партиции
+CREATE INDEX IF NOT EXISTS idx_chat_messages_room_seq ON chat_messages (room_id, room_seq);
@@ -0,0 +1,11 @@
+-- Порядковый номер сообщения внутри комнаты (room_seq). Номер выдает consumer при сохранении,
+-- клиент после переподключения запрашивает только сообщения с room_seq больше последнего увиденного.
+-- Уже сохраненные сообщения нумеруются порциями в V4_1.
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS room_seq BIGINT;
+
+-- Последний выданный номер по каждой комнате; строка блокируется на время выдачи номера
+CREATE TABLE IF NOT EXISTS chat_room_sequences (
+    room_id VARCHAR(255) PRIMARY KEY,
+    last_seq BIGINT NOT NULL
+);
@@ -0,0 +1,8 @@
+-- Типизированные сообщения: вложения хранятся вне chat_messages (см. V5), в строке только ссылка
+-- и метаданные, поэтому размер строки не зависит от размера вложения.
+-- Колонки добавляются в родительскую таблицу и появляются во всех партициях.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS message_type VARCHAR(16) NOT NULL DEFAULT 'TEXT';
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS attachment_id VARCHAR(64);
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS attachment_name VARCHAR(255);
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS attachment_content_type VARCHAR(127);
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS attachment_size BIGINT;
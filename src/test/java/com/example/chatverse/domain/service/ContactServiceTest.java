@@ -0,0 +1,175 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.contact.UserSearchPageResponseDto;
+import com.example.chatverse.application.dto.contact.UserSearchResultDto;
+import com.example.chatverse.application.mapper.ContactMapper;
+import com.example.chatverse.domain.entity.Contact;
+import com.example.chatverse.domain.entity.PlatformUser;
+import com.example.chatverse.domain.repository.ContactRepository;
+import com.example.chatverse.domain.repository.UserRepository;
+import com.example.chatverse.domain.repository.UserSearchHit;
+import com.example.chatverse.infrastructure.contacts.ContactGraph;
+import com.example.chatverse.infrastructure.exception.UserNotFoundException;
+import com.example.chatverse.infrastructure.users.UserIdIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ContactServiceTest {
+
+    private static final Long CURRENT_USER_ID = 1L;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ContactRepository contactRepository = mock(ContactRepository.class);
+    private final UserIdIndex userIdIndex = mock(UserIdIndex.class);
+    private final ContactService contactService = new ContactService(userRepository, contactRepository,
+            mock(ContactMapper.class), mock(UserService.class), mock(SimpMessagingTemplate.class),
+            userIdIndex, mock(ContactGraph.class));
+
+    @Test
+    void contactRequestToUserDeletedOnAnotherNodeIsNotFound() {
+        stubUsers(1L, 2L);
+        when(contactRepository.saveAndFlush(any(Contact.class))).thenThrow(integrityViolation("23503"));
+
+        assertThatThrownBy(() -> contactService.sendContactRequest(1L, 2L))
+                .isInstanceOf(UserNotFoundException.class);
+        verify(userIdIndex).evict(1L);
+        verify(userIdIndex).evict(2L);
+    }
+
+    @Test
+    void otherIntegrityViolationsArePropagated() {
+        stubUsers(1L, 2L);
+        DataIntegrityViolationException duplicate = integrityViolation("23505");
+        when(contactRepository.saveAndFlush(any(Contact.class))).thenThrow(duplicate);
+
+        assertThatThrownBy(() -> contactService.sendContactRequest(1L, 2L)).isSameAs(duplicate);
+        verify(userIdIndex, never()).evict(anyLong());
+    }
+
+    @Test
+    void firstPageReturnsCursorOfLastItemWhenMoreResultsExist() {
+        // Запрашивается на один результат больше страницы
+        when(userRepository.searchFirstPage(eq(CURRENT_USER_ID), eq("ann"), eq("ann%"), eq("%ann%"), anyInt(), eq(3)))
+                .thenReturn(hits(2.5f, 2.5f, 1.2f));
+
+        UserSearchPageResponseDto page = contactService.searchUsers(CURRENT_USER_ID, " Ann ", null, null, 2);
+
+        assertThat(page.getItems()).extracting(UserSearchResultDto::getUserId).containsExactly(10L, 11L);
+        assertThat(page.getNextAfterRank()).isEqualTo(2.5f);
+        assertThat(page.getNextAfterId()).isEqualTo(11L);
+    }
+
+    @Test
+    void nextPageIsRequestedAfterCursorAndLastPageHasNoCursor() {
+        when(userRepository.searchPageAfter(eq(CURRENT_USER_ID), eq("ann"), eq("ann%"), eq("%ann%"), anyInt(),
+                eq(2.5f), eq(11L), eq(3)))
+                .thenReturn(hits(1.2f));
+
+        UserSearchPageResponseDto page = contactService.searchUsers(CURRENT_USER_ID, "ann", 2.5f, 11L, 2);
+
+        assertThat(page.getItems()).extracting(UserSearchResultDto::getUserId).containsExactly(10L);
+        assertThat(page.getNextAfterRank()).isNull();
+        assertThat(page.getNextAfterId()).isNull();
+        verify(userRepository, never()).searchFirstPage(anyLong(), anyString(), anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void shortQueryUsesUsernamePrefixOnly() {
+        when(userRepository.searchByPrefixPageAfter(eq(CURRENT_USER_ID), eq("an"), eq("an%"), anyInt(),
+                eq(2.0f), eq(7L), eq(2)))
+                .thenReturn(hits(2.0f, 2.0f));
+
+        UserSearchPageResponseDto page = contactService.searchUsers(CURRENT_USER_ID, "An", 2.0f, 7L, 1);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextAfterId()).isEqualTo(10L);
+        verify(userRepository, never()).searchPageAfter(anyLong(), anyString(), anyString(), anyString(), anyInt(),
+                anyFloat(), anyLong(), anyInt());
+    }
+
+    @Test
+    void escapesLikeWildcards() {
+        when(userRepository.searchFirstPage(eq(CURRENT_USER_ID), eq("a_%"), eq("a\\_\\%%"), eq("%a\\_\\%%"), anyInt(), anyInt()))
+                .thenReturn(List.of());
+
+        assertThat(contactService.searchUsers(CURRENT_USER_ID, "a_%", null, null, 10).getItems()).isEmpty();
+    }
+
+    @Test
+    void rejectsEmptyAndTooLongQueries() {
+        assertThatThrownBy(() -> contactService.searchUsers(CURRENT_USER_ID, "  ", null, null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> contactService.searchUsers(CURRENT_USER_ID, "x".repeat(101), null, null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void stubUsers(Long... ids) {
+        for (Long id : ids) {
+            when(userIdIndex.exists(id)).thenReturn(true);
+            when(userRepository.getReferenceById(id)).thenReturn(PlatformUser.builder().id(id).build());
+        }
+    }
+
+    private static DataIntegrityViolationException integrityViolation(String sqlState) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new SQLException("constraint violation", sqlState));
+    }
+
+    private static List<UserSearchHit> hits(float... ranks) {
+        return IntStream.range(0, ranks.length)
+                .mapToObj(i -> hit(10L + i, ranks[i]))
+                .toList();
+    }
+
+    private static UserSearchHit hit(Long id, float rank) {
+        return new UserSearchHit() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return "user" + id;
+            }
+
+            @Override
+            public String getName() {
+                return "Name " + id;
+            }
+
+            @Override
+            public String getAvatarHash() {
+                return null;
+            }
+
+            @Override
+            public String getAvatarMiniHash() {
+                return null;
+            }
+
+            @Override
+            public Float getRank() {
+                return rank;
+            }
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.chatverse.domain.service;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.example.chatverse.application.dto.message.MessageType;
+import com.example.chatverse.application.dto.message.SendMessageRequestDto;
+import com.example.chatverse.domain.entity.Attachment;
+import com.example.chatverse.infrastructure.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessagePayloadServiceTest {
+
+    private static final Long SENDER_ID = 1L;
+    private static final String IMAGE_ID = "a".repeat(64);
+    private static final String FILE_ID = "b".repeat(64);
+
+    private final AttachmentService attachmentService = mock(AttachmentService.class);
+    private MessagePayloadService payloadService;
+
+    @BeforeEach
+    void setUp() {
+        payloadService = new MessagePayloadService(attachmentService, DataSize.ofBytes(16), 5);
+        when(attachmentService.describeOwned(eq(IMAGE_ID), eq(SENDER_ID))).thenReturn(attachment(IMAGE_ID, "image/png"));
+        when(attachmentService.describeOwned(eq(FILE_ID), eq(SENDER_ID))).thenReturn(attachment(FILE_ID, "application/pdf"));
+    }
+
+    @Test
+    void keepsShortTextInline() {
+        ChatMessage message = message();
+
+        payloadService.applyPayload(message, request(null, "hello", null));
+
+        assertThat(message.getType()).isEqualTo(MessageType.TEXT);
+        assertThat(message.getContent()).isEqualTo("hello");
+        assertThat(message.getAttachment()).isNull();
+    }
+
+    @Test
+    void movesLongTextToAttachmentAndKeepsPreview() throws IOException {
+        when(attachmentService.upload(eq(SENDER_ID), anyString(), any(byte[].class)))
+                .thenReturn(attachment(FILE_ID, "text/plain;charset=UTF-8"));
+        ChatMessage message = message();
+        String content = "0123456789abcdefghij";
+
+        payloadService.applyPayload(message, request(MessageType.TEXT, content, null));
+
+        verify(attachmentService).upload(SENDER_ID, "text/plain;charset=UTF-8", content.getBytes(StandardCharsets.UTF_8));
+        assertThat(message.getContent()).isEqualTo("01234");
+        assertThat(message.getAttachment().getId()).isEqualTo(FILE_ID);
+        assertThat(message.getAttachment().getName()).isEqualTo("message.txt");
+    }
+
+    @Test
+    void rejectsInvalidTextMessages() {
+        assertThatThrownBy(() -> payloadService.applyPayload(message(), request(MessageType.TEXT, "  ", null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> payloadService.applyPayload(message(), request(MessageType.TEXT, "hi", FILE_ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void attachesOwnFileWithSanitizedName() {
+        ChatMessage message = message();
+        SendMessageRequestDto request = request(null, "caption", FILE_ID);
+        request.setAttachmentName("C:\\Users\\me\\report.pdf");
+
+        payloadService.applyPayload(message, request);
+
+        assertThat(message.getType()).isEqualTo(MessageType.FILE);
+        assertThat(message.getContent()).isEqualTo("caption");
+        assertThat(message.getAttachment().getId()).isEqualTo(FILE_ID);
+        assertThat(message.getAttachment().getName()).isEqualTo("report.pdf");
+        assertThat(message.getAttachment().getUrl()).isEqualTo(AttachmentService.urlOf(FILE_ID));
+    }
+
+    @Test
+    void rejectsAttachmentOfAnotherUser() {
+        when(attachmentService.describeOwned(eq(FILE_ID), eq(2L)))
+                .thenThrow(new ResourceNotFoundException("Attachment not found: " + FILE_ID));
+        ChatMessage message = message();
+        message.setSenderId(2L);
+
+        assertThatThrownBy(() -> payloadService.applyPayload(message, request(MessageType.FILE, null, FILE_ID)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(message.getAttachment()).isNull();
+    }
+
+    @Test
+    void rejectsInvalidAttachmentMessages() {
+        assertThatThrownBy(() -> payloadService.applyPayload(message(), request(MessageType.FILE, null, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> payloadService.applyPayload(message(), request(MessageType.IMAGE, null, FILE_ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> payloadService.applyPayload(message(), request(MessageType.IMAGE, "x".repeat(17), IMAGE_ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void acceptsOwnImage() {
+        ChatMessage message = message();
+
+        payloadService.applyPayload(message, request(MessageType.IMAGE, null, IMAGE_ID));
+
+        assertThat(message.getType()).isEqualTo(MessageType.IMAGE);
+        assertThat(message.getContent()).isEmpty();
+        assertThat(message.getAttachment().getContentType()).isEqualTo("image/png");
+    }
+
+    private static ChatMessage message() {
+        return ChatMessage.builder()
+                .senderId(SENDER_ID)
+                .recipientId(2L)
+                .roomId("1_2")
+                .build();
+    }
+
+    private static SendMessageRequestDto request(MessageType type, String content, String attachmentId) {
+        SendMessageRequestDto request = new SendMessageRequestDto();
+        request.setRecipientId(2L);
+        request.setType(type);
+        request.setContent(content);
+        request.setAttachmentId(attachmentId);
+        return request;
+    }
+
+    private static Attachment attachment(String hash, String contentType) {
+        return Attachment.builder()
+                .hash(hash)
+                .contentType(contentType)
+                .sizeBytes(42)
+                .ownerId(SENDER_ID)
+                .created(LocalDateTime.now())
+                .build();
+    }
+}
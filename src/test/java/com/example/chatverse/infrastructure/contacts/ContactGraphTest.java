@@ -0,0 +1,136 @@
+package com.example.chatverse.infrastructure.contacts;
+
+import com.example.chatverse.domain.entity.ContactStatus;
+import com.example.chatverse.domain.repository.ContactEdge;
+import com.example.chatverse.domain.repository.ContactRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ContactGraphTest {
+
+    private static final long OWNER = 100;
+
+    private final ContactRepository contactRepository = mock(ContactRepository.class);
+    private final ContactGraph graph = new ContactGraph(contactRepository, mock(StringRedisTemplate.class),
+            mock(RedisConnectionFactory.class), new SimpleMeterRegistry(), Duration.ofMinutes(10), 1000);
+
+    @Test
+    void encodesEdgesFromOwnersPointOfView() {
+        when(contactRepository.findEdgesOfUser(OWNER)).thenReturn(List.of(
+                edge(1, ContactStatus.PENDING, OWNER),
+                edge(2, ContactStatus.PENDING, 2L),
+                edge(3, ContactStatus.ACCEPTED, 3L),
+                edge(4, ContactStatus.DECLINED, 4L),
+                edge(5, ContactStatus.BLOCKED, OWNER),
+                edge(6, ContactStatus.BLOCKED, 6L),
+                edge(7, ContactStatus.ACCEPTED, null)));
+
+        assertThat(graph.edge(OWNER, 1)).isEqualTo(ContactGraph.PENDING_OUTGOING);
+        assertThat(graph.edge(OWNER, 2)).isEqualTo(ContactGraph.PENDING_INCOMING);
+        assertThat(graph.edge(OWNER, 3)).isEqualTo(ContactGraph.ACCEPTED);
+        assertThat(graph.edge(OWNER, 4)).isEqualTo(ContactGraph.DECLINED);
+        assertThat(graph.edge(OWNER, 5)).isEqualTo(ContactGraph.BLOCKED_BY_OWNER);
+        assertThat(graph.edge(OWNER, 6)).isEqualTo(ContactGraph.BLOCKED_BY_PEER);
+        assertThat(graph.edge(OWNER, 7)).isEqualTo(ContactGraph.ACCEPTED);
+        assertThat(graph.edge(OWNER, 8)).isEqualTo(ContactGraph.NONE);
+        // Смежность загружается один раз
+        verify(contactRepository, times(1)).findEdgesOfUser(OWNER);
+    }
+
+    @Test
+    void findsPeersWithLargeIdsInUnsortedRows() {
+        long largePeer = 1L << 40;
+        when(contactRepository.findEdgesOfUser(OWNER)).thenReturn(List.of(
+                edge(largePeer, ContactStatus.BLOCKED, largePeer),
+                edge(50, ContactStatus.ACCEPTED, OWNER),
+                edge(9, ContactStatus.PENDING, OWNER)));
+
+        assertThat(graph.edge(OWNER, 9)).isEqualTo(ContactGraph.PENDING_OUTGOING);
+        assertThat(graph.edge(OWNER, 50)).isEqualTo(ContactGraph.ACCEPTED);
+        assertThat(graph.edge(OWNER, largePeer)).isEqualTo(ContactGraph.BLOCKED_BY_PEER);
+        assertThat(graph.edge(OWNER, largePeer + 1)).isEqualTo(ContactGraph.NONE);
+    }
+
+    @Test
+    void answersHighLevelQuestions() {
+        when(contactRepository.findEdgesOfUser(OWNER)).thenReturn(List.of(
+                edge(3, ContactStatus.ACCEPTED, 3L),
+                edge(5, ContactStatus.BLOCKED, OWNER),
+                edge(6, ContactStatus.BLOCKED, 6L)));
+
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        assertThat(graph.areContacts(OWNER, 5)).isFalse();
+        assertThat(graph.hasBlocked(OWNER, 5)).isTrue();
+        assertThat(graph.hasBlocked(OWNER, 6)).isFalse();
+        assertThat(graph.isBlockedEitherWay(OWNER, 5)).isTrue();
+        assertThat(graph.isBlockedEitherWay(OWNER, 6)).isTrue();
+        assertThat(graph.isBlockedEitherWay(OWNER, 3)).isFalse();
+    }
+
+    @Test
+    void contactChangeEvictsBothUsers() {
+        when(contactRepository.findEdgesOfUser(OWNER)).thenReturn(List.of())
+                .thenReturn(List.of(edge(3, ContactStatus.ACCEPTED, 3L)));
+        assertThat(graph.areContacts(OWNER, 3)).isFalse();
+
+        graph.onContactChanged(3, OWNER);
+
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        verify(contactRepository, times(2)).findEdgesOfUser(OWNER);
+    }
+
+    @Test
+    void changeOfSameUserDuringLoadPreventsCaching() {
+        when(contactRepository.findEdgesOfUser(OWNER)).thenAnswer(invocation -> {
+            graph.onContactChanged(OWNER, 3);
+            return List.of();
+        }).thenReturn(List.of(edge(3, ContactStatus.ACCEPTED, 3L)));
+
+        assertThat(graph.areContacts(OWNER, 3)).isFalse();
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        verify(contactRepository, times(2)).findEdgesOfUser(OWNER);
+    }
+
+    @Test
+    void changeOfOtherUsersDuringLoadKeepsCaching() {
+        when(contactRepository.findEdgesOfUser(OWNER)).thenAnswer(invocation -> {
+            graph.onContactChanged(7, 8);
+            return List.of(edge(3, ContactStatus.ACCEPTED, 3L));
+        });
+
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        assertThat(graph.areContacts(OWNER, 3)).isTrue();
+        verify(contactRepository, times(1)).findEdgesOfUser(OWNER);
+    }
+
+    private static ContactEdge edge(long peerId, ContactStatus status, Long actionUserId) {
+        return new ContactEdge() {
+            @Override
+            public Long getPeerId() {
+                return peerId;
+            }
+
+            @Override
+            public String getStatus() {
+                return status.name();
+            }
+
+            @Override
+            public Long getActionUserId() {
+                return actionUserId;
+            }
+        };
+    }
+}
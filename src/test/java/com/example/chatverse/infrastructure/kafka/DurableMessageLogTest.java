@@ -0,0 +1,167 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import com.example.chatverse.application.dto.message.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DurableMessageLogTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    private final List<DurableMessageLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() throws IOException {
+        for (DurableMessageLog log : opened) {
+            log.close();
+        }
+    }
+
+    @Test
+    void readsAppendedMessagesInOrderAndForgetsAcknowledged() throws IOException {
+        DurableMessageLog log = open(1, 4);
+        assertThat(log.append("room-1", message("m1", 10))).isTrue();
+        assertThat(log.append("room-2", message("m2", 10))).isTrue();
+        assertThat(log.append("room-1", message("m3", 10))).isTrue();
+
+        List<DurableMessageLog.Entry> entries = log.read(10);
+        assertThat(entries).extracting(entry -> entry.message().getMessageId()).containsExactly("m1", "m2", "m3");
+        assertThat(entries).extracting(DurableMessageLog.Entry::key).containsExactly("room-1", "room-2", "room-1");
+        assertThat(log.hasPending("room-1")).isTrue();
+
+        log.acknowledge(entries.subList(0, 2));
+
+        assertThat(log.getPendingCount()).isEqualTo(1);
+        assertThat(log.hasPending("room-1")).isTrue();
+        assertThat(log.hasPending("room-2")).isFalse();
+        assertThat(log.read(10)).extracting(entry -> entry.message().getMessageId()).containsExactly("m3");
+
+        log.acknowledge(log.read(10));
+        assertThat(log.hasPending()).isFalse();
+        assertThat(log.hasPending("room-1")).isFalse();
+        assertThat(log.read(10)).isEmpty();
+    }
+
+    @Test
+    void recoversPendingMessagesFromCheckpointAfterRestart() throws IOException {
+        DurableMessageLog log = open(1, 4);
+        log.append("room-1", message("m1", 10));
+        log.append("room-1", message("m2", 10));
+        log.append("room-2", message("m3", 10));
+        log.acknowledge(log.read(1));
+        reopen(log);
+
+        DurableMessageLog recovered = open(1, 4);
+
+        assertThat(recovered.getPendingCount()).isEqualTo(2);
+        assertThat(recovered.hasPending("room-1")).isTrue();
+        assertThat(recovered.hasPending("room-2")).isTrue();
+        assertThat(recovered.read(10)).extracting(entry -> entry.message().getMessageId()).containsExactly("m2", "m3");
+
+        // Новые записи дописываются после восстановленного конца журнала
+        assertThat(recovered.append("room-3", message("m4", 10))).isTrue();
+        assertThat(recovered.read(10)).extracting(entry -> entry.message().getMessageId())
+                .containsExactly("m2", "m3", "m4");
+    }
+
+    @Test
+    void treatsRecordWithBadCrcAsEndOfLog() throws IOException {
+        DurableMessageLog log = open(1, 4);
+        log.append("room-1", message("m1", 10));
+        log.append("room-1", message("m2", 10));
+        DurableMessageLog.Position second = log.read(1).get(0).next();
+        reopen(log);
+
+        // Портим байт в теле второй записи, как при сбое посреди записи
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), second.offset() + 12);
+        }
+
+        DurableMessageLog recovered = open(1, 4);
+
+        assertThat(recovered.getPendingCount()).isEqualTo(1);
+        assertThat(recovered.read(10)).extracting(entry -> entry.message().getMessageId()).containsExactly("m1");
+        // Испорченная запись перезаписывается следующей
+        assertThat(recovered.append("room-1", message("m3", 10))).isTrue();
+        assertThat(recovered.read(10)).extracting(entry -> entry.message().getMessageId()).containsExactly("m1", "m3");
+    }
+
+    @Test
+    void rollsSegmentsAndRejectsAppendsWhenFull() throws IOException {
+        DurableMessageLog log = open(1, 2);
+        int contentSize = 400 * 1024; // Две записи на сегмент в 1 МБ
+        for (int i = 1; i <= 4; i++) {
+            assertThat(log.append("room-1", message("m" + i, contentSize))).isTrue();
+        }
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(log.isNearlyFull()).isTrue();
+        assertThat(log.append("room-1", message("m5", contentSize))).isFalse();
+
+        List<DurableMessageLog.Entry> entries = log.read(10);
+        assertThat(entries).extracting(entry -> entry.message().getMessageId()).containsExactly("m1", "m2", "m3", "m4");
+        assertThat(entries.get(2).next().segment()).isEqualTo(entries.get(0).next().segment() + 1);
+
+        // Полностью вычитанный сегмент удаляется и освобождает место под новый
+        log.acknowledge(entries.subList(0, 3));
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(log.isNearlyFull()).isFalse();
+        assertThat(log.append("room-1", message("m5", contentSize))).isTrue();
+        assertThat(log.read(10)).extracting(entry -> entry.message().getMessageId()).containsExactly("m4", "m5");
+    }
+
+    @Test
+    void disabledLogRejectsAppends() throws IOException {
+        DurableMessageLog log = new DurableMessageLog(OBJECT_MAPPER, new SimpleMeterRegistry(), false, directory, 1, 4);
+        log.open();
+
+        assertThat(log.append("room-1", message("m1", 10))).isFalse();
+        assertThat(log.hasPending()).isFalse();
+        assertThat(log.isNearlyFull()).isTrue();
+    }
+
+    private DurableMessageLog open(int segmentSizeMb, int maxSegments) throws IOException {
+        DurableMessageLog log = new DurableMessageLog(OBJECT_MAPPER, new SimpleMeterRegistry(), true,
+                directory, segmentSizeMb, maxSegments);
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    private void reopen(DurableMessageLog log) throws IOException {
+        log.close();
+        opened.remove(log);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static ChatMessage message(String id, int contentSize) {
+        return ChatMessage.builder()
+                .messageId(id)
+                .senderId(1L)
+                .roomId("room")
+                .content("x".repeat(contentSize))
+                .build();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyOrderedExecutorTest {
+
+    private final RecordingFlowControl flowControl = new RecordingFlowControl();
+    private KeyOrderedExecutor executor;
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void keepsOrderWithinKey() throws Exception {
+        executor = new KeyOrderedExecutor(4, 1000, Duration.ofSeconds(1), flowControl, new SimpleMeterRegistry());
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = "room-" + (i % 7);
+            int sequence = i;
+            futures.add(executor.submit(key, () -> {
+                sleepMicros(ThreadLocalRandom.current().nextInt(200));
+                processed.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(processed).hasSize(7);
+        processed.values().forEach(sequence -> assertThat(sequence).isSorted());
+    }
+
+    @Test
+    void futureCompletesWithTaskException() {
+        executor = new KeyOrderedExecutor(2, 10, Duration.ofSeconds(1), flowControl, new SimpleMeterRegistry());
+
+        CompletableFuture<Void> future = executor.submit("room-1", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThat(future).failsWithin(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void pausesListenersWhenSaturatedAndResumesAfterDrain() throws Exception {
+        executor = new KeyOrderedExecutor(2, 4, Duration.ofMillis(50), flowControl, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit("room-" + i, () -> await(release)));
+        }
+        assertThat(flowControl.pauses.get()).isZero();
+
+        // Пятая запись ждет saturation-timeout и принимается сверх лимита, listener'ы на паузе
+        long startedAt = System.nanoTime();
+        futures.add(executor.submit("room-4", () -> await(release)));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(50);
+        assertThat(executor.getInFlight()).isEqualTo(5);
+        assertThat(executor.isPaused()).isTrue();
+        assertThat(flowControl.pauses.get()).isEqualTo(1);
+
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(executor.awaitIdle(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.isPaused()).isFalse();
+        assertThat(flowControl.resumes.get()).isEqualTo(1);
+    }
+
+    @Test
+    void waitsForCapacityWithoutPausingWhenSlotFreesInTime() throws Exception {
+        executor = new KeyOrderedExecutor(2, 1, Duration.ofSeconds(5), flowControl, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = executor.submit("room-1", () -> await(release));
+
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(release::countDown);
+        CompletableFuture<Void> second = executor.submit("room-2", () -> {
+        });
+
+        second.get(5, TimeUnit.SECONDS);
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(flowControl.pauses.get()).isZero();
+    }
+
+    @Test
+    void frozenExecutorDoesNotResumeListeners() throws Exception {
+        executor = new KeyOrderedExecutor(1, 1, Duration.ofMillis(10), flowControl, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> first = executor.submit("room-1", () -> await(release));
+        CompletableFuture<Void> second = executor.submit("room-1", () -> {
+        });
+        assertThat(flowControl.pauses.get()).isEqualTo(1);
+
+        executor.freeze();
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        assertThat(executor.awaitIdle(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(flowControl.resumes.get()).isZero();
+    }
+
+    @Test
+    void awaitIdleTimesOutWhileTasksRun() throws Exception {
+        executor = new KeyOrderedExecutor(1, 10, Duration.ofSeconds(1), flowControl, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("room-1", () -> await(release));
+
+        assertThat(executor.awaitIdle(50, TimeUnit.MILLISECONDS)).isFalse();
+
+        release.countDown();
+        assertThat(executor.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepMicros(long micros) {
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class RecordingFlowControl implements KeyOrderedExecutor.FlowControl {
+        private final AtomicInteger pauses = new AtomicInteger();
+        private final AtomicInteger resumes = new AtomicInteger();
+
+        @Override
+        public void pause() {
+            pauses.incrementAndGet();
+        }
+
+        @Override
+        public void resume() {
+            resumes.incrementAndGet();
+        }
+    }
+}
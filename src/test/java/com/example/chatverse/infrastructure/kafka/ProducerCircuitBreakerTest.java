@@ -0,0 +1,119 @@
+package com.example.chatverse.infrastructure.kafka;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProducerCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+
+    private final ProducerCircuitBreaker breaker =
+            new ProducerCircuitBreaker(10, 4, 0.5, OPEN_DURATION, new SimpleMeterRegistry());
+
+    @Test
+    void staysClosedUntilMinimumCallsRecorded() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    void staysClosedBelowThreshold() {
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        for (int i = 0; i < 10; i++) {
+            breaker.recordSuccess();
+        }
+        // Три ранние ошибки вытеснены из окна в 10 вызовов: 4 новые ошибки — это 40%, а не 70%
+        for (int i = 0; i < 4; i++) {
+            breaker.recordFailure();
+        }
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenAdmitsSingleProbe() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    void successfulProbeClosesBreaker() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isTrue();
+    }
+
+    @Test
+    void failedProbeReopensBreaker() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure();
+
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    void probePermitIsReissuedWhenProbeResultNeverArrives() throws InterruptedException {
+        open();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isFalse();
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(ProducerCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chatverse.infrastructure.maintenance;
+
+import com.example.chatverse.domain.entity.ChatMessageEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Id;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMessagePartitionManagerTest {
+
+    @Test
+    void archiveHeaderContainsEveryMappedColumn() {
+        List<String> mappedColumns = Arrays.stream(ChatMessageEntity.class.getDeclaredFields())
+                .filter(field -> field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(Column.class))
+                .map(ChatMessagePartitionManagerTest::columnName)
+                .toList();
+
+        List<String> header = List.of(ChatMessagePartitionManager.ARCHIVE_HEADER.trim().split(","));
+
+        assertThat(header).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(mappedColumns);
+        assertThat(ChatMessagePartitionManager.ARCHIVE_HEADER).endsWith("\n");
+    }
+
+    @Test
+    void archiveHeaderKeepsColumnsOfEarlierArchivesFirst() {
+        assertThat(ChatMessagePartitionManager.ARCHIVE_HEADER)
+                .startsWith("id,message_id,sender_id,recipient_id,room_id,timestamp,content,")
+                .doesNotContain("search_vector");
+    }
+
+    private static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        return column != null && !column.name().isEmpty() ? column.name() : field.getName();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.chatverse.infrastructure.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalTokenBucketBackendTest {
+
+    private final LocalTokenBucketBackend backend = new LocalTokenBucketBackend();
+
+    @Test
+    void allowsBurstThenRejects() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(backend.tryConsume("user:1", 1, 5)).isTrue();
+        }
+        assertThat(backend.tryConsume("user:1", 1, 5)).isFalse();
+    }
+
+    @Test
+    void refillsAtConfiguredRate() throws InterruptedException {
+        assertThat(backend.tryConsume("user:1", 100, 2)).isTrue();
+        assertThat(backend.tryConsume("user:1", 100, 2)).isTrue();
+        assertThat(backend.tryConsume("user:1", 100, 2)).isFalse();
+
+        Thread.sleep(30); // 10 мс на токен
+
+        assertThat(backend.tryConsume("user:1", 100, 2)).isTrue();
+    }
+
+    @Test
+    void keysHaveSeparateBuckets() {
+        assertThat(backend.tryConsume("user:1", 1, 1)).isTrue();
+        assertThat(backend.tryConsume("user:1", 1, 1)).isFalse();
+
+        assertThat(backend.tryConsume("user:2", 1, 1)).isTrue();
+        assertThat(backend.tryConsume("room:1", 1, 1)).isTrue();
+    }
+
+    @Test
+    void evictionKeepsBucketsThatAreNotRefilled() {
+        assertThat(backend.tryConsume("user:1", 1, 2)).isTrue();
+        assertThat(backend.tryConsume("user:1", 1, 2)).isTrue();
+
+        backend.evictIdle();
+
+        assertThat(backend.tryConsume("user:1", 1, 2)).isFalse();
+    }
+
+    @Test
+    void concurrentCallersNeverExceedBurst() throws Exception {
+        int threads = 8;
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (backend.tryConsume("room:1", 0.001, 50)) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(granted.get()).isEqualTo(50);
+    }
+
+    @Test
+    void limiterCountsRejectionsPerScope() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MessageRateLimiter limiter = new MessageRateLimiter(backend, registry, true, 1, 1, 1, 2);
+
+        assertThat(limiter.tryAcquireForUser(7)).isTrue();
+        assertThat(limiter.tryAcquireForUser(7)).isFalse();
+        assertThat(limiter.tryAcquireForRoom("r")).isTrue();
+        assertThat(limiter.tryAcquireForRoom("r")).isTrue();
+        assertThat(limiter.tryAcquireForRoom("r")).isFalse();
+
+        assertThat(registry.get("chat.ratelimit.rejected").tag("scope", "user").counter().count()).isEqualTo(1);
+        assertThat(registry.get("chat.ratelimit.rejected").tag("scope", "room").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledLimiterAllowsEverything() {
+        MessageRateLimiter limiter = new MessageRateLimiter(backend, new SimpleMeterRegistry(), false, 1, 1, 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquireForUser(7)).isTrue();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.chatverse.infrastructure.storage;
+
+import com.example.chatverse.infrastructure.exception.PayloadTooLargeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentAddressedFileStoreTest {
+
+    // SHA-256 от "hello"
+    private static final String HELLO_HASH = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @TempDir
+    Path root;
+
+    private ContentAddressedFileStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ContentAddressedFileStore(root);
+    }
+
+    @Test
+    void storesObjectUnderItsHash() throws IOException {
+        ContentAddressedFileStore.StoredObject stored = store.store(bytes("hello"));
+
+        assertThat(stored.hash()).isEqualTo(HELLO_HASH);
+        assertThat(stored.size()).isEqualTo(5);
+        Path path = store.find(HELLO_HASH);
+        assertThat(path).isEqualTo(root.resolve("objects").resolve("2c").resolve(HELLO_HASH));
+        assertThat(Files.readString(path)).isEqualTo("hello");
+    }
+
+    @Test
+    void deduplicatesSameContent() throws IOException {
+        ContentAddressedFileStore.StoredObject first = store.store(new ByteArrayInputStream(bytes("hello")), 1024);
+        ContentAddressedFileStore.StoredObject second = store.store(new ByteArrayInputStream(bytes("hello")), 1024);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(objectFiles()).hasSize(1);
+        assertThat(tmpFiles()).isEmpty();
+    }
+
+    @Test
+    void rejectsUploadOverLimitAndLeavesNoFiles() throws IOException {
+        assertThatThrownBy(() -> store.store(new ByteArrayInputStream(new byte[100]), 99))
+                .isInstanceOf(PayloadTooLargeException.class);
+
+        assertThat(objectFiles()).isEmpty();
+        assertThat(tmpFiles()).isEmpty();
+    }
+
+    @Test
+    void findRejectsInvalidAndMissingIds() throws IOException {
+        store.store(bytes("hello"));
+
+        assertThat(store.find(null)).isNull();
+        assertThat(store.find("../" + HELLO_HASH)).isNull();
+        assertThat(store.find(HELLO_HASH.toUpperCase())).isNull();
+        assertThat(store.find("0".repeat(64))).isNull();
+    }
+
+    @Test
+    void deletesObject() throws IOException {
+        store.store(bytes("hello"));
+
+        assertThat(store.delete(HELLO_HASH)).isTrue();
+        assertThat(store.find(HELLO_HASH)).isNull();
+        assertThat(store.delete(HELLO_HASH)).isFalse();
+        assertThat(store.delete("not-a-hash")).isFalse();
+    }
+
+    @Test
+    void listsOnlyObjectsOlderThanGivenInstant() throws IOException {
+        String oldHash = store.store(bytes("old")).hash();
+        String newHash = store.store(bytes("new")).hash();
+        Instant now = Instant.now();
+        Files.setLastModifiedTime(store.find(oldHash), FileTime.from(now.minus(Duration.ofDays(2))));
+
+        try (Stream<String> objects = store.listObjects(now.minus(Duration.ofDays(1)))) {
+            assertThat(objects.toList()).containsExactly(oldHash);
+        }
+        try (Stream<String> objects = store.listObjects(now.plus(Duration.ofMinutes(1)))) {
+            assertThat(objects.toList()).containsExactlyInAnyOrder(oldHash, newHash);
+        }
+    }
+
+    @Test
+    void deletesOnlyStaleUploads() throws IOException {
+        Instant now = Instant.now();
+        Path stale = Files.createFile(root.resolve("tmp").resolve("upload-stale.part"));
+        Path active = Files.createFile(root.resolve("tmp").resolve("upload-active.part"));
+        Files.setLastModifiedTime(stale, FileTime.from(now.minus(Duration.ofDays(2))));
+
+        assertThat(store.deleteStaleUploads(now.minus(Duration.ofDays(1)))).isEqualTo(1);
+        assertThat(stale).doesNotExist();
+        assertThat(active).exists();
+    }
+
+    private List<Path> objectFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root.resolve("objects"))) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private List<Path> tmpFiles() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve("tmp"))) {
+            return files.toList();
+        }
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
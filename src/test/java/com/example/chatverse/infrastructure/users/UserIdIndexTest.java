@@ -0,0 +1,87 @@
+package com.example.chatverse.infrastructure.users;
+
+import com.example.chatverse.domain.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserIdIndexTest {
+
+    private final ConcurrentMap<Long, AtomicLongArray> chunks = new ConcurrentHashMap<>();
+
+    @Test
+    void setsAndClearsBitsAcrossChunkBoundaries() {
+        long[] ids = {1, 63, 64, 65_535, 65_536, 65_537, 131_071, 131_072, 10_000_000_000L};
+        for (long id : ids) {
+            UserIdIndex.set(chunks, id);
+        }
+
+        for (long id : ids) {
+            assertThat(UserIdIndex.contains(chunks, id)).as("id %d", id).isTrue();
+        }
+        assertThat(UserIdIndex.contains(chunks, 2)).isFalse();
+        assertThat(UserIdIndex.contains(chunks, 65_534)).isFalse();
+        assertThat(UserIdIndex.contains(chunks, 196_608)).isFalse();
+        assertThat(chunks).containsOnlyKeys(0L, 1L, 2L, 10_000_000_000L >>> 16);
+
+        UserIdIndex.clear(chunks, 65_535);
+        UserIdIndex.clear(chunks, 65_536);
+
+        assertThat(UserIdIndex.contains(chunks, 65_535)).isFalse();
+        assertThat(UserIdIndex.contains(chunks, 65_536)).isFalse();
+        assertThat(UserIdIndex.contains(chunks, 63)).isTrue();
+        assertThat(UserIdIndex.contains(chunks, 65_537)).isTrue();
+    }
+
+    @Test
+    void keepsNeighbouringBitsInSameWord() {
+        UserIdIndex.set(chunks, 128);
+        UserIdIndex.set(chunks, 129);
+        UserIdIndex.set(chunks, 191);
+
+        UserIdIndex.clear(chunks, 129);
+
+        assertThat(UserIdIndex.contains(chunks, 128)).isTrue();
+        assertThat(UserIdIndex.contains(chunks, 129)).isFalse();
+        assertThat(UserIdIndex.contains(chunks, 191)).isTrue();
+    }
+
+    @Test
+    void clearingAbsentIdDoesNotAllocateChunk() {
+        UserIdIndex.clear(chunks, 1_000_000);
+
+        assertThat(chunks).isEmpty();
+        assertThat(UserIdIndex.contains(chunks, 1_000_000)).isFalse();
+    }
+
+    @Test
+    void checksDatabaseUntilIndexIsBuilt() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.existsById(5L)).thenReturn(true);
+        UserIdIndex index = new UserIdIndex(userRepository, mock(DataSource.class), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 100);
+
+        assertThat(index.exists(5L)).isTrue();
+        assertThat(index.exists(5L)).isTrue();
+        assertThat(index.exists(6L)).isFalse();
+        verify(userRepository, times(2)).existsById(5L);
+
+        assertThat(index.exists(null)).isFalse();
+        assertThat(index.exists(0L)).isFalse();
+        verify(userRepository, never()).existsById(0L);
+        verify(userRepository, times(3)).existsById(anyLong());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.chatverse.infrastructure.websocket;
+
+import com.example.chatverse.infrastructure.ratelimit.MessageRateLimiter;
+import com.example.chatverse.infrastructure.resync.RoomResyncService;
+import com.example.chatverse.infrastructure.security.JwtUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class StompAuthChannelInterceptorTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    @SuppressWarnings("unchecked")
+    private final StompAuthChannelInterceptor interceptor = new StompAuthChannelInterceptor(mock(JwtUtils.class),
+            mock(StompSessionRegistry.class), mock(MessageRateLimiter.class), mock(RoomResyncService.class),
+            mock(ObjectProvider.class));
+    private final StompSessionPrincipal principal = new StompSessionPrincipal(1L, SESSION_ID, null);
+
+    @Test
+    void allowsSubscriptionToOwnRooms() {
+        assertAllowed("/topic/messages/1_2");
+        assertAllowed("/topic/room/1_3");
+        assertAllowed("/topic/events/1_2");
+    }
+
+    @Test
+    void deniesSubscriptionToForeignRooms() {
+        assertDenied("/topic/messages/2_3");
+        assertDenied("/topic/room/2_3");
+        assertDenied("/topic/events/2_3");
+        assertDenied("/topic/messages/");
+        assertDenied("/topic/messages/1_2/x");
+    }
+
+    @Test
+    void deniesWildcardSubscriptions() {
+        assertDenied("/topic/**");
+        assertDenied("/topic/*/1_2");
+        assertDenied("/topic/messages/1_?");
+        assertDenied("/topic/messages/{room}");
+        assertDenied("/queue/**");
+        assertDenied("/user/queue/*");
+    }
+
+    @Test
+    void deniesUnknownBrokerDestinations() {
+        assertDenied("/topic/other/1_2");
+        assertDenied("/topic");
+        assertDenied("/queue/messages");
+        assertDenied("/queue/messages-usersession-2");
+        assertDenied("/queuex");
+    }
+
+    @Test
+    void allowsPublicTopicsAndUserQueues() {
+        assertAllowed("/topic/user.status");
+        assertAllowed("/user/queue/messages");
+        assertAllowed("/user/queue/errors");
+    }
+
+    @Test
+    void deniesRoomSubscriptionWithoutPrincipal() {
+        Message<?> message = subscribe("/topic/messages/1_2", null);
+
+        assertThatThrownBy(() -> interceptor.preSend(message, mock(MessageChannel.class)))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void parsesRoomPositions() {
+        assertThat(StompAuthChannelInterceptor.parseResumeSeqs("room-1:10, room-2:0"))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("room-1", 10L, "room-2", 0L));
+    }
+
+    @Test
+    void usesLastColonSoRoomIdsMayContainColons() {
+        assertThat(StompAuthChannelInterceptor.parseResumeSeqs("dm:1:2:42"))
+                .containsExactlyEntriesOf(Map.of("dm:1:2", 42L));
+    }
+
+    @Test
+    void skipsMalformedItems() {
+        assertThat(StompAuthChannelInterceptor.parseResumeSeqs("room-1:abc,:5,room-2,room-3:-1,room-4:7,,  :3"))
+                .containsExactlyEntriesOf(Map.of("room-4", 7L));
+    }
+
+    @Test
+    void returnsEmptyMapForMissingHeader() {
+        assertThat(StompAuthChannelInterceptor.parseResumeSeqs(null)).isEmpty();
+        assertThat(StompAuthChannelInterceptor.parseResumeSeqs("  ")).isEmpty();
+    }
+
+    @Test
+    void limitsNumberOfRooms() {
+        String header = IntStream.range(0, 500)
+                .mapToObj(i -> "room-" + i + ":" + i)
+                .collect(Collectors.joining(","));
+
+        Map<String, Long> seqs = StompAuthChannelInterceptor.parseResumeSeqs(header);
+
+        assertThat(seqs).hasSize(200).containsEntry("room-0", 0L).doesNotContainKey("room-200");
+    }
+
+    private void assertAllowed(String destination) {
+        Message<?> message = subscribe(destination, principal);
+
+        assertThat(interceptor.preSend(message, mock(MessageChannel.class))).isSameAs(message);
+    }
+
+    private void assertDenied(String destination) {
+        Message<?> message = subscribe(destination, principal);
+
+        assertThatThrownBy(() -> interceptor.preSend(message, mock(MessageChannel.class)))
+                .as(destination)
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    private static Message<?> subscribe(String destination, StompSessionPrincipal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setUser(user);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}